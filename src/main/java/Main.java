@@ -1,4 +1,7 @@
+import checker.C4.C4;
+import checker.C4.C4Online;
 import checker.Checker;
+import checker.ComponentChecker;
 import checker.IsolationLevel;
 import collector.Collector;
 import config.Config;
@@ -86,10 +89,22 @@ public class Main implements Callable<Integer> {
             checkerIsoList.add(Triple.of(checkers.get(checkerIso.getKey().toLowerCase()), checkerIso.getRight(), isolationStr));
         }
 
+        long c4Levels = checkerIsoList.stream().filter(triple -> triple.getLeft() == C4.class).count();
+        // the online checker checks the level of the first C4 checker while the history is collected
+        var onlineLevel = checkerIsoList.stream().filter(triple -> triple.getLeft() == C4.class).map(Triple::getMiddle).findFirst();
+
         // TODO: remove ENABLE_PROFILER
         var enableProfile = Boolean.parseBoolean(config.getProperty(Config.PROFILER_ENABLE));
         var profiler = Profiler.getInstance();
         var skipGeneration = Boolean.parseBoolean(config.getProperty(Config.WORKLOAD_SKIP_GENERATION));
+        var decompose = Boolean.parseBoolean(config.getProperty(Config.CHECKER_DECOMPOSE));
+        var online = Boolean.parseBoolean(config.getProperty(Config.CHECKER_ONLINE));
+        if (online && onlineLevel.isEmpty()) {
+            log.warn("Online checking needs the C4 checker");
+            online = false;
+        }
+        // profile tag and CSV name of the online checker
+        var onlineTag = online ? C4Online.NAME + "-" + onlineLevel.get() : null;
         int historyNum = 1;
         if (!skipGeneration) {
             historyNum = Integer.parseInt(config.getProperty(Config.WORKLOAD_HISTORY));
@@ -110,22 +125,43 @@ public class Main implements Callable<Integer> {
         Map<String, Map<String, Long>> profileInfo = new HashMap<>();
         TriFunction<Integer, Integer, Integer, Void> runOneShot = (Integer currentBatch, Integer totalBatch, Integer nHist) -> {
             for (int i = 1; i <= nHist; i++) {
-                History history = null;
+                History<?, ?> history = null;
                 if (!skipGeneration) {
                     // generate history
                     log.info("Start workload generation {} of {}", i + nHist * currentBatch, nHist * totalBatch);
                     RuntimeStageRecorder.updateStage("History Collection");
-                    history = new GeneralGenerator(config).generate();
+                    var generated = new GeneralGenerator(config).generate();
 
                     // collect result
                     log.info("Start history collection");
+                    C4Online<Long, Long> onlineChecker = null;
                     try {
-                        var collectorInstance = collector.getDeclaredConstructor(Properties.class).newInstance(config);
-                        history = collectorInstance.collect(history);
+                        var collectorInstance = newCollector(collector, config);
+                        if (onlineTag != null) {
+                            if (enableProfile) {
+                                profiler.startTick(onlineTag);
+                            }
+                            onlineChecker = startOnlineChecker(config, onlineLevel.get());
+                        }
+                        collectorInstance.setOnlineChecker(onlineChecker);
+                        history = collectorInstance.collect(generated);
                         collectorInstance.close();
+                        if (onlineChecker != null) {
+                            if (!onlineChecker.finish()) {
+                                log.info("Online checker finds bug: {}", onlineChecker.getTapCount());
+                            }
+                            if (enableProfile) {
+                                profiler.endTick(onlineTag);
+                                profileInfo.put(onlineTag, onlineChecker.getProfileInfo());
+                            }
+                        }
                     } catch (InstantiationException | InvocationTargetException | NoSuchMethodException |
                              IllegalAccessException e) {
                         throw new RuntimeException(e);
+                    } finally {
+                        if (onlineChecker != null) {
+                            onlineChecker.stop();
+                        }
                     }
                 } else {
                     var historyPath = config.getProperty(Config.HISTORY_PATH).toLowerCase();
@@ -133,28 +169,63 @@ public class Main implements Callable<Integer> {
                     history = HistoryLoaderFactory.getHistoryLoader(historyType).loadHistory(historyPath);
                 }
 
-                // verify history
+                // verify history, with one pass of C4 for all its levels, which each level reports as its own run
+                C4<?, ?> sharedC4 = null;
+                if (!decompose && c4Levels > 1) {
+                    var c4Isolations = checkerIsoList.stream()
+                            .filter(triple -> triple.getLeft() == C4.class)
+                            .map(Triple::getMiddle)
+                            .collect(Collectors.toList());
+                    var c4Tags = c4Isolations.stream()
+                            .map(isolation -> C4.class.getName() + "-" + isolation)
+                            .collect(Collectors.toList());
+                    config.setProperty(Config.CHECKER_ISOLATION, c4Isolations.get(0).toString());
+                    log.info("Start history verification using checkers {}", c4Tags);
+                    if (enableProfile) {
+                        c4Tags.forEach(profiler::startTick);
+                    }
+                    RuntimeStageRecorder.updateStage("C4 Verification");
+                    sharedC4 = verifyC4Levels(history, config);
+                    if (enableProfile) {
+                        // endTick resets the peak memory, which all the levels share
+                        var maxMemory = profiler.getMaxMemory();
+                        for (var tag : c4Tags) {
+                            Profiler.updateMemory(maxMemory);
+                            profiler.endTick(tag);
+                            profileInfo.put(tag, sharedC4.getProfileInfo());
+                        }
+                        profiler.resetMaxMemory();
+                        System.gc();
+                    }
+                }
                 for (var checkerAndIsolation : checkerIsoList) {
                     var checker = checkerAndIsolation.getLeft();
                     var isolation = checkerAndIsolation.getMiddle();
                     config.setProperty(Config.CHECKER_ISOLATION, isolation.toString());
-                    log.info("Start history verification using checker {}", checker.getName() + "-" + isolation);
                     String tag = checker.getName() + "-" + isolation;
-                    if (enableProfile) {
-                        profiler.startTick(tag);
-                    }
-                    RuntimeStageRecorder.updateStage(ConfigParser.getCheckerIsolationAbbreviation(checkerAndIsolation.getRight()) + " Verification");
                     boolean result;
                     try {
-                        var checkerInstance = checker.getDeclaredConstructor(Properties.class).newInstance(config);
-                        result = checkerInstance.verify(history);
-                        if (enableProfile) {
-                            profiler.endTick(tag);
-                            if (checkerInstance.getProfileInfo() != null) {
-                                profileInfo.put(tag, checkerInstance.getProfileInfo());
+                        Checker checkerInstance = null;
+                        if (checker == C4.class && sharedC4 != null) {
+                            result = sharedC4.satisfies(isolation);
+                        } else {
+                            log.info("Start history verification using checker {}", tag);
+                            if (enableProfile) {
+                                profiler.startTick(tag);
+                            }
+                            RuntimeStageRecorder.updateStage(ConfigParser.getCheckerIsolationAbbreviation(checkerAndIsolation.getRight()) + " Verification");
+                            checkerInstance = decompose
+                                    ? new ComponentChecker<>(checker, config)
+                                    : checker.getDeclaredConstructor(Properties.class).newInstance(config);
+                            result = checkerInstance.verify(history);
+                            if (enableProfile) {
+                                profiler.endTick(tag);
+                                if (checkerInstance.getProfileInfo() != null) {
+                                    profileInfo.put(tag, checkerInstance.getProfileInfo());
+                                }
+                                profiler.resetMaxMemory();
+                                System.gc();
                             }
-                            profiler.resetMaxMemory();
-                            System.gc();
                         }
                         if (!result) {
                             log.info("FIND BUG!");
@@ -166,9 +237,17 @@ public class Main implements Callable<Integer> {
                                 // do nothing
                             }
                             if (config.getOrDefault(Config.HISTORY_TYPE, Config.DEFAULT_HISTORY_TYPE) == Config.DEFAULT_HISTORY_TYPE) {
-                                new TextHistorySerializer().serializeHistory(history, Paths.get(bugDir.toString(), "bug_hist.txt").toString());
+                                // text histories have Long keys and values
+                                @SuppressWarnings("unchecked")
+                                var textHistory = (History<Long, Long>) history;
+                                new TextHistorySerializer().serializeHistory(textHistory, Paths.get(bugDir.toString(), "bug_hist.txt").toString());
+                            }
+                            var dotPath = Paths.get(bugDir.toString(), "conflict.dot").toString();
+                            if (checkerInstance != null) {
+                                checkerInstance.outputDotFile(dotPath);
+                            } else {
+                                sharedC4.outputDotFile(dotPath, isolation);
                             }
-                            checkerInstance.outputDotFile(Paths.get(bugDir.toString(), "conflict.dot").toString());
                         } else {
                             log.info("NO BUG");
                         }
@@ -188,17 +267,27 @@ public class Main implements Callable<Integer> {
                     .flatMap(Set::stream)
                     .distinct()
                     .collect(Collectors.toList());
-            Profiler.createCSV(var, checkerIsoList.stream().map(Triple::getRight).collect(Collectors.toList()), stages);
-            for (var triple : checkerIsoList) {
-                var checkerIsolation = triple.getLeft().getName() + "-" + triple.getMiddle();
+            // profile tag -> CSV name, with the online checker after the offline ones
+            var csvNames = new LinkedHashMap<String, String>();
+            checkerIsoList.forEach(triple -> csvNames.put(triple.getLeft().getName() + "-" + triple.getMiddle(), triple.getRight()));
+            if (onlineTag != null && profileInfo.containsKey(onlineTag)) {
+                csvNames.put(onlineTag, onlineTag);
+            }
+            Profiler.createCSV(var, new ArrayList<>(csvNames.values()), stages);
+            csvNames.forEach((checkerIsolation, csvName) -> {
                 var avgTime = profiler.getAvgTime(checkerIsolation);
                 var maxMemory = profiler.getMemory(checkerIsolation);
                 var profileMap = profileInfo.getOrDefault(checkerIsolation, new HashMap<String, Long>());
                 var stageTimeList = new ArrayList<Long>();
                 stages.forEach(stage -> stageTimeList.add(profileMap.getOrDefault(stage, 0L)));
-                Profiler.appendToCSV(val, Math.min(avgTime, stageTimeList.stream().reduce(0L, Long::sum)), maxMemory, triple.getRight(), stageTimeList);
+                // the online checker also reports counts, which are not times
+                var stageTime = stages.stream()
+                        .filter(stage -> !C4Online.COUNT_STAGES.contains(stage))
+                        .mapToLong(stage -> profileMap.getOrDefault(stage, 0L))
+                        .sum();
+                Profiler.appendToCSV(val, Math.min(avgTime, stageTime), maxMemory, csvName, stageTimeList);
                 profiler.removeTag(checkerIsolation);
-            }
+            });
         };
         if (variable != null && !variable.isBlank()) {
             var fullVariable = "workload." + variable;
@@ -240,6 +329,36 @@ public class Main implements Callable<Integer> {
         RuntimeDataSerializer.getInstance(outputPath).outputToPath(historyNum * nBatch, bugCount.get(), config, enableProfile);
     }
 
+    /**
+     * Verify a history at every C4 level in a single pass, see {@link C4#verifyLevels}.
+     */
+    private static <KeyType, ValType> C4<KeyType, ValType> verifyC4Levels(History<KeyType, ValType> history, Properties config) {
+        var c4 = new C4<KeyType, ValType>(config);
+        c4.verifyLevels(history);
+        return c4;
+    }
+
+    /**
+     * All collectors extend {@code Collector<Long, Long>}, the type of the generated histories.
+     */
+    @SuppressWarnings("unchecked")
+    private static Collector<Long, Long> newCollector(Class<? extends Collector> collector, Properties config)
+            throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        return collector.getDeclaredConstructor(Properties.class).newInstance(config);
+    }
+
+    /**
+     * Start an online C4 checker at the given isolation level.
+     */
+    private static C4Online<Long, Long> startOnlineChecker(Properties config, IsolationLevel isolation) {
+        var onlineConfig = new Properties();
+        onlineConfig.putAll(config);
+        onlineConfig.setProperty(Config.CHECKER_ISOLATION, isolation.toString());
+        var onlineChecker = new C4Online<Long, Long>(onlineConfig);
+        onlineChecker.start();
+        return onlineChecker;
+    }
+
     @SneakyThrows
     public static void main(String... args) {
         int exitCode = new CommandLine(new Main()).execute(args);
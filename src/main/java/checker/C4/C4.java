@@ -3,17 +3,23 @@ package checker.C4;
 import checker.C4.graph.Edge;
 import checker.C4.graph.Graph;
 import checker.C4.graph.Node;
+import checker.C4.graph.SparseClockNode;
 import checker.C4.graph.TCNode;
+import checker.C4.graph.VectorClockNode;
+import checker.C4.graph.WriterIndex;
 import checker.C4.taps.TAP;
+import checker.C4.util.TreeClockArena;
 import checker.Checker;
 import checker.IsolationLevel;
 import com.google.common.collect.Sets;
 import config.Config;
 import history.History;
+import history.HistoryInterner;
 import history.Operation;
 import history.Transaction;
 import history.loader.ElleHistoryLoader;
 import javafx.util.Pair;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.SneakyThrows;
 import org.apache.commons.lang3.tuple.Triple;
@@ -23,10 +29,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 @Data
@@ -35,19 +46,77 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
 
     protected final Set<TAP> taps = new HashSet<>();
     protected final Map<String, Integer> tapCount = new HashMap<>();
+    // every TAP found, prohibited at ISOLATION_LEVEL or not
+    protected final Map<TAP, Integer> foundTapCount = new EnumMap<>(TAP.class);
+    // check all levels of PROHIBITED_TAPS, see verifyLevels
+    protected boolean allLevels = false;
     protected final List<String> bugGraphs = new ArrayList<>();
+    // the TAP of each graph of bugGraphs
+    protected final List<TAP> bugGraphTaps = new ArrayList<>();
+    // witnesses of the TAPs found, the first renderedCount of them rendered into bugGraphs
+    private final List<Witness> witnesses = new ArrayList<>();
+    private final int[] witnessCount = new int[TAP.values().length];
+    private int renderedCount = 0;
+    // witnesses kept per TAP besides the first one, see Config.CHECKER_WITNESS_LIMIT
+    private final int witnessLimit;
     protected final Graph<VarType, ValType> graph = new Graph<>();
 
     protected final Map<Pair<VarType, ValType>, Operation<VarType, ValType>> writes = new HashMap<>();
     protected final Map<Pair<VarType, ValType>, List<Operation<VarType, ValType>>> reads = new HashMap<>();
     protected final Map<Pair<VarType, ValType>, List<Operation<VarType, ValType>>> readsWithoutWrites = new HashMap<>();
-    protected final Map<VarType, Set<Node<VarType, ValType>>> writeNodes = new HashMap<>();
-    protected final Map<VarType, Set<Pair<Node<VarType, ValType>, Node<VarType, ValType>>>> WREdges = new HashMap<>();
+    // insertion ordered, so buildCM adds CM edges in the same order on every run and in C4Long
+    protected final Map<VarType, Set<Node<VarType, ValType>>> writeNodes = new LinkedHashMap<>();
+    protected final Map<VarType, Set<Pair<Node<VarType, ValType>, Node<VarType, ValType>>>> WREdges = new LinkedHashMap<>();
     protected final Map<Pair<Node<VarType, ValType>, Node<VarType, ValType>>, List<Pair<Operation<VarType, ValType>, Operation<VarType, ValType>>>> WRNodesToOp = new HashMap<>();
     protected final Map<Operation<VarType, ValType>, Node<VarType, ValType>> op2node = new HashMap<>();
     protected final Set<Operation<VarType, ValType>> internalWrites = new HashSet<>();
+    // when verify is given the whole history, the node of each transaction and the write of each version by their
+    // interned ids, and the reads in the order they are resolved, instead of op2node, writes and reads; a streamed
+    // history keeps the maps
+    private HistoryInterner<VarType, ValType> interner;
+    private Node<VarType, ValType>[] transactionNodes;
+    private Operation<VarType, ValType>[] versionWrites;
+    private List<Operation<VarType, ValType>> readOps;
     // triple <t1, t2, t3>
     protected final Map<Pair<Node<VarType, ValType>, Node<VarType, ValType>>, Node<VarType, ValType>> CMCauses = new HashMap<>();
+    // last node of each session added to the CO graph
+    protected final Map<Long, Node<VarType, ValType>> prevNodes = new HashMap<>();
+    // dimension of the clocks, one more than the largest session id
+    protected int dim;
+    // clocks of all nodes, created with the first node
+    protected TreeClockArena clockArena;
+    // writers of each variable by session, built once the CO clocks are final
+    protected Map<VarType, WriterIndex<VarType, ValType>> writerIndex;
+    // tree, sparse or vector, see Config.CHECKER_CLOCK
+    protected String clockType;
+    // tree clocks up to this many sessions, see chooseClock
+    private static final int TREE_CLOCK_MAX_DIM = 1024;
+    // visited stamps and DFS stack of updateVec, indexed by node id
+    private int[] visitedEpoch = new int[16];
+    private int epoch = 0;
+    private int[] stackNodes = new int[16];
+    private int[] stackNext = new int[16];
+    // threads of the TAP checks, see forEachParallel
+    private final int parallelism;
+    // the chunk of forEachParallel running on this thread, if any
+    private final ThreadLocal<TAPChunk> currentChunk = new ThreadLocal<>();
+    // items of a chunk of forEachParallel at least
+    private static final int MIN_CHUNK_SIZE = 256;
+    // the pool of forEachParallel, shared by all checkers and replaced when the parallelism changes
+    private static ForkJoinPool tapPool;
+    // hits of the TAPs to record before the checks stop, see Config.CHECKER_STOP
+    private final int tapBudget;
+    // whether tapBudget counts the hits of each TAP apart or of all TAPs together
+    private final boolean budgetPerType;
+    // hits recorded against tapBudget by TAP, and of all TAPs at the end, shared by the chunks of forEachParallel
+    private final AtomicIntegerArray budgetHits = new AtomicIntegerArray(TAP.values().length + 1);
+
+    // TAPs each check can find, so that a check stops once the budget of all of them is spent
+    protected static final Set<TAP> READ_TAPS = EnumSet.of(TAP.NonMonoReadCO, TAP.FracturedReadCO,
+            TAP.COConflictCM, TAP.IntermediateRead, TAP.FutureRead);
+    protected static final Set<TAP> CYCLIC_CO_TAPS = EnumSet.of(TAP.CyclicCO);
+    protected static final Set<TAP> CM_TAPS = EnumSet.of(TAP.NonMonoReadCO, TAP.FracturedReadCO, TAP.COConflictCM,
+            TAP.NonMonoReadCM, TAP.FracturedReadCM, TAP.ConflictCM);
 
     protected Object ZERO = 0L;
     protected static final Map<IsolationLevel, Set<TAP>> PROHIBITED_TAPS = new HashMap<>();
@@ -97,25 +166,101 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
     public C4(Properties config) {
         this.config = config;
         ISOLATION_LEVEL = IsolationLevel.valueOf(config.getProperty(Config.CHECKER_ISOLATION));
+        int threads = Integer.parseInt(config.getProperty(Config.CHECKER_PARALLELISM, Config.DEFAULT_CHECKER_PARALLELISM));
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.witnessLimit = Integer.parseInt(config.getProperty(Config.CHECKER_WITNESS_LIMIT, Config.DEFAULT_CHECKER_WITNESS_LIMIT));
+        var stop = config.getProperty(Config.CHECKER_STOP, Config.DEFAULT_CHECKER_STOP);
+        if (stop.equals("all")) {
+            this.tapBudget = Integer.MAX_VALUE;
+            this.budgetPerType = true;
+        } else if (stop.equals("first")) {
+            this.tapBudget = 1;
+            this.budgetPerType = false;
+        } else if (stop.startsWith("per-type:")) {
+            this.tapBudget = Integer.parseInt(stop.substring("per-type:".length()));
+            this.budgetPerType = true;
+        } else {
+            throw new IllegalArgumentException("Unknown " + Config.CHECKER_STOP + ": " + stop);
+        }
     }
 
     public boolean verify(History<VarType, ValType> history) {
         if (config.getProperty(Config.HISTORY_TYPE, Config.DEFAULT_HISTORY_TYPE).equals("elle") && config.getProperty(Config.WORKLOAD_SKIP_GENERATION).equals("true")) {
-            return new C4List<>(config).verify((History<Object, ElleHistoryLoader.ElleValue>) history);
+            var checker = new C4List<>(config);
+            checker.allLevels = allLevels;
+            return adopt(checker, checker.verify((History<Object, ElleHistoryLoader.ElleValue>) history));
+        }
+        if (getClass() == C4.class && isLongHistory(history)) {
+            var checker = new C4Long(config);
+            checker.allLevels = allLevels;
+            return adopt(checker, checker.verify((History<Long, Long>) history));
         }
         this.history = history;
         profiler.startTick(constructionTag);
+        intern(history);
         buildCO();
         constructionTime = profiler.endTick(constructionTag);
+        return checkTAPs();
+    }
+
+    /**
+     * Verify a history at every isolation level of PROHIBITED_TAPS in a single pass.
+     *
+     * The pass records every TAP it finds and runs the traversal of the strongest level, so the verdict of each level
+     * is whether none of its prohibited TAPs was found. tapCount and the result of verify still follow ISOLATION_LEVEL.
+     *
+     * @param history the history to verify
+     * @return for each isolation level, true if the history satisfies it
+     */
+    public Map<IsolationLevel, Boolean> verifyLevels(History<VarType, ValType> history) {
+        allLevels = true;
+        verify(history);
+        var verdicts = new EnumMap<IsolationLevel, Boolean>(IsolationLevel.class);
+        PROHIBITED_TAPS.keySet().forEach(level -> verdicts.put(level, satisfies(level)));
+        return verdicts;
+    }
+
+    /**
+     * @return true if none of the TAPs prohibited at level was found, which after verifyLevels is the verdict of level
+     */
+    public boolean satisfies(IsolationLevel level) {
+        return Collections.disjoint(foundTapCount.keySet(), PROHIBITED_TAPS.get(level));
+    }
+
+    private static boolean isLongHistory(History<?, ?> history) {
+        return history.getTransactions().values().stream()
+                .flatMap(txn -> txn.getOps().stream())
+                .findFirst()
+                .map(op -> op.getKey() instanceof Long && op.getValue() instanceof Long)
+                .orElse(false);
+    }
+
+    /**
+     * Take over the results of the specialized checker this one delegated to.
+     */
+    private boolean adopt(C4<?, ?> checker, boolean result) {
+        taps.addAll(checker.taps);
+        tapCount.putAll(checker.tapCount);
+        foundTapCount.putAll(checker.foundTapCount);
+        bugGraphs.addAll(checker.getBugGraphs());
+        bugGraphTaps.addAll(checker.bugGraphTaps);
+        constructionTime = checker.constructionTime;
+        traversalTime = checker.traversalTime;
+        return result;
+    }
+
+    protected boolean checkTAPs() {
         profiler.startTick(traversalTag);
+        graph.freeze();
         checkCOTAP();
-        if (ISOLATION_LEVEL == IsolationLevel.REPEATABLE_READ) {
+        if ((ISOLATION_LEVEL == IsolationLevel.REPEATABLE_READ && !allLevels) || budgetSpent(CM_TAPS)) {
 //            System.out.println(badPatternCount);
             traversalTime = profiler.endTick(traversalTag);
             return tapCount.isEmpty();
         }
         syncClock();
         buildCM();
+        graph.freeze();
         if (!hasCircle(Edge.Type.CM)) {
 //            System.out.println(badPatternCount);
             traversalTime = profiler.endTick(traversalTag);
@@ -127,13 +272,36 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
         return tapCount.isEmpty();
     }
 
-    @SneakyThrows
     @Override
     public void outputDotFile(String path) {
-        if (bugGraphs.isEmpty()) {
+        outputDotFiles(path, getBugGraphs());
+    }
+
+    /**
+     * Output the witnesses of the TAPs prohibited at level, as after verifyLevels the witnesses of all levels are kept.
+     */
+    public void outputDotFile(String path, IsolationLevel level) {
+        var graphs = new ArrayList<String>();
+        var allGraphs = getBugGraphs();
+        for (int i = 0; i < allGraphs.size(); i++) {
+            if (PROHIBITED_TAPS.get(level).contains(bugGraphTaps.get(i))) {
+                graphs.add(allGraphs.get(i));
+            }
+        }
+        outputDotFiles(path, graphs);
+    }
+
+    @SneakyThrows
+    private static void outputDotFiles(String path, List<String> graphs) {
+        if (graphs.isEmpty()) {
             return;
         }
-        Files.writeString(Path.of(path), bugGraphs.get(0), StandardOpenOption.CREATE);
+        Files.writeString(Path.of(path), graphs.get(0), StandardOpenOption.CREATE);
+        // the other witnesses go next to the first one, as conflict_1.dot, conflict_2.dot and so on
+        var base = path.endsWith(".dot") ? path.substring(0, path.length() - 4) : path;
+        for (int i = 1; i < graphs.size(); i++) {
+            Files.writeString(Path.of(base + "_" + i + ".dot"), graphs.get(i), StandardOpenOption.CREATE);
+        }
     }
 
     @Override
@@ -145,111 +313,160 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
     }
 
 
+    /**
+     * Index the nodes and writes of the transactions and versions of history by their interned ids.
+     */
+    @SuppressWarnings("unchecked")
+    protected void intern(History<VarType, ValType> history) {
+        interner = history.getInterner();
+        transactionNodes = new Node[interner.transactionCount()];
+        versionWrites = new Operation[interner.versionCount()];
+        readOps = new ArrayList<>();
+    }
+
+    protected Node<VarType, ValType> nodeOf(Operation<VarType, ValType> op) {
+        if (interner != null) {
+            return transactionNodes[interner.transactionId(op.getTransaction())];
+        }
+        return op2node.get(op);
+    }
+
+    private Operation<VarType, ValType> writeOf(Operation<VarType, ValType> read) {
+        if (interner != null) {
+            return versionWrites[interner.versionIdOf(read)];
+        }
+        return writes.get(new Pair<>(read.getKey(), read.getValue()));
+    }
+
+    private void addRead(Pair<VarType, ValType> key, Operation<VarType, ValType> read) {
+        if (interner != null) {
+            readOps.add(read);
+        } else {
+            reads.computeIfAbsent(key, k -> new ArrayList<>()).add(read);
+        }
+    }
+
     protected void buildCO() {
-        var hist = history.getFlatTransactions();
-        Map<Long, Node<VarType, ValType>> prevNodes = new HashMap<>();
-
-        for (var txn: hist) {
-
-            // update node with prev node
-            var prev = prevNodes.get(txn.getSession().getId());
-            var node = constructNode(txn, prev);
-            graph.addVertex(node);
-            prevNodes.put(txn.getSession().getId(), node);
-            if (prev != null) {
-                graph.addEdge(prev, node, new Edge<>(Edge.Type.SO, null));
-            }
+        dim = history.getIndex().getSessionDim();
+        clockType = chooseClock();
+        for (var txn: history.getFlatTransactions()) {
+            buildCO(txn);
+        }
+    }
 
-            var nearestRW = new HashMap<VarType, Operation<VarType, ValType>>();
-            var writesInTxn = new HashMap<VarType, Operation<VarType, ValType>>();
+    /**
+     * Add one transaction to the CO graph. Transactions of a session must be added in session order.
+     */
+    protected void buildCO(Transaction<VarType, ValType> txn) {
+        // update node with prev node
+        var prev = prevNodes.get(txn.getSession().getId());
+        var node = constructNode(txn, prev);
+        graph.addVertex(node);
+        prevNodes.put(txn.getSession().getId(), node);
+        if (prev != null) {
+            graph.addEdge(prev, node, Edge.Type.SO, null);
+        }
 
-            for (var op: txn.getOps()) {
-                var key = new Pair<>(op.getKey(), op.getValue());
+        var nearestRW = new HashMap<VarType, Operation<VarType, ValType>>();
+        var writesInTxn = new HashMap<VarType, Operation<VarType, ValType>>();
+
+        if (interner != null) {
+            transactionNodes[interner.transactionId(txn)] = node;
+        }
+        for (var op: txn.getOps()) {
+            var key = new Pair<>(op.getKey(), op.getValue());
+            if (interner == null) {
                 op2node.put(op, node);
+            }
 
-                // if op is a read
-                if (op.getType() == Operation.Type.READ) {
-
-                    // check NonRepeatableRead and NotMyOwnWrite
-                    var prevRW = nearestRW.get(op.getKey());
-                    if (prevRW != null && !op.getValue().equals(prevRW.getValue())) {
-                        if (prevRW.getType() == Operation.Type.READ) {
-                            findTAP(TAP.NonRepeatableRead, node);
-                        } else {
-                            boolean findNotMyLastWrite = false;
-                            for (var prevOp: txn.getOps()) {
-                                if (prevOp.getId() < prevRW.getId() &&
-                                        prevOp.getType() == Operation.Type.WRITE &&
-                                        prevOp.getKey().equals(op.getKey()) &&
-                                        prevOp.getValue().equals(op.getValue())
-                                ) {
-                                    findNotMyLastWrite = true;
-                                    findTAP(TAP.NotMyLastWrite, node);
-                                }
-                            }
-                            if (!findNotMyLastWrite) {
-                                findTAP(TAP.NotMyOwnWrite, node);
+            // if op is a read
+            if (op.getType() == Operation.Type.READ) {
+
+                // check NonRepeatableRead and NotMyOwnWrite
+                var prevRW = nearestRW.get(op.getKey());
+                if (prevRW != null && !op.getValue().equals(prevRW.getValue())) {
+                    if (prevRW.getType() == Operation.Type.READ) {
+                        findTAP(TAP.NonRepeatableRead, node);
+                    } else {
+                        boolean findNotMyLastWrite = false;
+                        for (var prevOp: txn.getOps()) {
+                            if (prevOp.getId() < prevRW.getId() &&
+                                    prevOp.getType() == Operation.Type.WRITE &&
+                                    prevOp.getKey().equals(op.getKey()) &&
+                                    prevOp.getValue().equals(op.getValue())
+                            ) {
+                                findNotMyLastWrite = true;
+                                findTAP(TAP.NotMyLastWrite, node);
                             }
                         }
+                        if (!findNotMyLastWrite) {
+                            findTAP(TAP.NotMyOwnWrite, node);
+                        }
                     }
-                    nearestRW.put(op.getKey(), op);
-
-                    var write = writes.get(key);
-                    if (write != null) {
-                        // if write -> op
-                        // add op to reads
-                        reads.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
-
-                        var writeNode = op2node.get(write);
-                        if (!writeNode.equals(node)) {
-                            if (!writeNode.canReachByCO(node)) {
-                                node.updateCOReachability(writeNode);
-                            }
-                            graph.addEdge(writeNode, node, new Edge<>(Edge.Type.WR, op.getKey()));
-                            WREdges.computeIfAbsent(op.getKey(), k -> new HashSet<>()).add(new Pair<>(writeNode, node));
-                            WRNodesToOp.computeIfAbsent(new Pair<>(writeNode, node), wr -> new ArrayList<>()).add(new Pair<>(write, op));
+                }
+                nearestRW.put(op.getKey(), op);
+
+                var write = writeOf(op);
+                if (write != null) {
+                    // if write -> op
+                    // add op to reads
+                    addRead(key, op);
+
+                    var writeNode = nodeOf(write);
+                    if (!writeNode.equals(node)) {
+                        if (!writeNode.canReachByCO(node)) {
+                            node.updateCOReachability(writeNode);
                         }
-                    } else if (op.getValue().equals(ZERO)) {
-                        // if no write -> op, but op reads zero
-                        reads.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
-                    } else {
-                        readsWithoutWrites.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
+                        graph.addEdge(writeNode, node, Edge.Type.WR, op.getKey());
+                        WREdges.computeIfAbsent(op.getKey(), k -> new LinkedHashSet<>()).add(new Pair<>(writeNode, node));
+                        WRNodesToOp.computeIfAbsent(new Pair<>(writeNode, node), wr -> new ArrayList<>()).add(new Pair<>(write, op));
                     }
+                } else if (op.getValue().equals(ZERO)) {
+                    // if no write -> op, but op reads zero
+                    addRead(key, op);
+                } else {
+                    readsWithoutWrites.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
+                }
+            } else {
+                // if op is a write
+                if (op.getValue().equals(ZERO)) {
+                    // ignore write 0
+                    continue;
+                }
+                if (interner != null) {
+                    versionWrites[interner.versionIdOf(op)] = op;
                 } else {
-                    // if op is a write
-                    if (op.getValue().equals(ZERO)) {
-                        // ignore write 0
-                        continue;
-                    }
                     writes.put(key, op);
-                    writeNodes.computeIfAbsent(op.getKey(), k -> new HashSet<>()).add(node);
+                }
+                writeNodes.computeIfAbsent(op.getKey(), k -> new LinkedHashSet<>()).add(node);
 
-                    nearestRW.put(op.getKey(), op);
+                nearestRW.put(op.getKey(), op);
 
-                    // check internal write
-                    var internalWrite = writesInTxn.get(op.getKey());
-                    if (internalWrite != null) {
-                        internalWrites.add(internalWrite);
+                // check internal write
+                var internalWrite = writesInTxn.get(op.getKey());
+                if (internalWrite != null) {
+                    internalWrites.add(internalWrite);
+                }
+                writesInTxn.put(op.getKey(), op);
+
+                var pendingReads = readsWithoutWrites.get(key);
+                if (pendingReads != null) {
+                    for (var pendingRead: pendingReads) {
+                        addRead(key, pendingRead);
                     }
-                    writesInTxn.put(op.getKey(), op);
-
-                    var pendingReads = readsWithoutWrites.get(key);
-                    if (pendingReads != null) {
-                        reads.computeIfAbsent(key, k -> new ArrayList<>()).addAll(pendingReads);
-                        for (var pendingRead: pendingReads) {
-                            var pendingReadNode = op2node.get(pendingRead);
-                            if (!node.equals(pendingReadNode)) {
-                                graph.addEdge(node, pendingReadNode, new Edge<>(Edge.Type.WR, op.getKey()));
-                                WREdges.computeIfAbsent(op.getKey(), k -> new HashSet<>()).add(new Pair<>(node, pendingReadNode));
-                                WRNodesToOp.computeIfAbsent(new Pair<>(node, pendingReadNode), wr -> new ArrayList<>()).add(new Pair<>(op, pendingRead));
-                            }
+                    for (var pendingRead: pendingReads) {
+                        var pendingReadNode = nodeOf(pendingRead);
+                        if (!node.equals(pendingReadNode)) {
+                            graph.addEdge(node, pendingReadNode, Edge.Type.WR, op.getKey());
+                            WREdges.computeIfAbsent(op.getKey(), k -> new LinkedHashSet<>()).add(new Pair<>(node, pendingReadNode));
+                            WRNodesToOp.computeIfAbsent(new Pair<>(node, pendingReadNode), wr -> new ArrayList<>()).add(new Pair<>(op, pendingRead));
                         }
                     }
-                    readsWithoutWrites.remove(key);
                 }
+                readsWithoutWrites.remove(key);
             }
-            updateVec(new HashSet<>(), node, node, Edge.Type.CO);
         }
+        updateVec(node, Edge.Type.CO);
     }
 
     protected void checkCOTAP() {
@@ -269,95 +486,116 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
             }
         }
 
+        buildWriterIndex();
+
         // for each read
-        reads.values().forEach((readList) -> {
-            readList.forEach((read) -> {
-                var key = new Pair<>(read.getKey(), read.getValue());
-                var node = op2node.get(read);
-
-                // read(x, 0)
-                if (read.getValue().equals(ZERO)) {
-                    var writeRelNodes = writeNodes.get(read.getKey());
-
-                    // no write(x, k)
-                    if (writeRelNodes == null) {
-                        return;
-                    }
+        forEachParallel(READ_TAPS, readList(), this::checkCOTAP);
 
-                    // check if write(x, k) co-> read
-                    writeRelNodes.forEach((writeNode) -> {
-                        if (writeNode.equals(node)) {
-                            return;
-                        }
-                        if (writeNode.canReachByCO(node)) {
-                            // there are 3 cases: initReadMono initReadWR or writeCOInitRead
-                            boolean findSubTap = false;
-                            for (var writeY : writeNode.getTransaction().getOps()) {
-                                for (var readY : node.getTransaction().getOps()) {
-                                    if (!writeY.getKey().equals(read.getKey()) &&
-                                            writeY.getType().equals(Operation.Type.WRITE) &&
-                                            readY.getType().equals(Operation.Type.READ) &&
-                                            writeY.getKey().equals(readY.getKey()) &&
-                                            writeY.getValue().equals(readY.getValue())) {
-                                        // find w(y, v_y) wr-> r(y, v_y)
-                                        findSubTap = true;
-                                        if (readY.getId() < read.getId()) {
-                                            // find nonMonoReadCO  if read y precedes read x
-                                            findTAP(TAP.NonMonoReadCO);
-                                        } else {
-                                            // find initReadWR
-                                            findTAP(TAP.FracturedReadCO);
-                                        }
-                                    }
-                                }
-                            }
-                            if (!findSubTap) {
-                                // find initReadCO if not InitReadMono or InitReadWR
-                                findTAP(TAP.COConflictCM);
-                            }
-                        }
-                    });
-                    return;
-                }
+        // check CyclicCO
+        // iter wr edge (t1 wr-> t2)
+        forEachParallel(CYCLIC_CO_TAPS, WREdgeList(), (edge) -> {
+            var t1 = edge.getKey();
+            var t2 = edge.getValue();
+            if (t1.canReachByCO(t2) && t2.canReachByCO(t1)) {
+                // find cyclicCO
+                findTAP(TAP.CyclicCO);
+//                print2TxnBp(t1, t2);
+            }
+        });
+    }
+
+    /**
+     * @return all reads, in the order of reads
+     */
+    protected List<Operation<VarType, ValType>> readList() {
+        if (interner != null) {
+            return readOps;
+        }
+        var result = new ArrayList<Operation<VarType, ValType>>();
+        reads.values().forEach(result::addAll);
+        return result;
+    }
 
-                // write wr-> read
-                var write = writes.get(key);
-                var writeNode = op2node.get(write);
+    /**
+     * @return all WR edges between nodes, in the order of WREdges
+     */
+    protected List<Pair<Node<VarType, ValType>, Node<VarType, ValType>>> WREdgeList() {
+        var result = new ArrayList<Pair<Node<VarType, ValType>, Node<VarType, ValType>>>();
+        WREdges.values().forEach(result::addAll);
+        return result;
+    }
 
-                if (!writeNode.equals(node)) {
-                    // in different txn
-                    if (internalWrites.contains(write)) {
-                        // find intermediate write
-                        // TODO: viz 2 txn tap
-                        findTAP(TAP.IntermediateRead, writeNode);
-                    }
-                } else {
-                    // in same txn
-                    if (write.getId() > read.getId()) {
-                        // find future read
-                        findTAP(TAP.FutureRead, node);
+    /**
+     * Check the TAPs of one read that only need CO, except CyclicCO.
+     */
+    protected void checkCOTAP(Operation<VarType, ValType> read) {
+        var node = nodeOf(read);
+
+        // read(x, 0)
+        if (read.getValue().equals(ZERO)) {
+            var writeRelNodes = writeNodes.get(read.getKey());
+
+            // no write(x, k)
+            if (writeRelNodes == null) {
+                return;
+            }
+
+            // check if write(x, k) co-> read
+            forEachWriterReaching(read.getKey(), node, (writeNode) -> {
+                if (writeNode.equals(node)) {
+                    return;
+                }
+                // there are 3 cases: initReadMono initReadWR or writeCOInitRead
+                boolean findSubTap = false;
+                for (var writeY : writeNode.getTransaction().getOps()) {
+                    for (var readY : node.getTransaction().getOps()) {
+                        if (!writeY.getKey().equals(read.getKey()) &&
+                                writeY.getType().equals(Operation.Type.WRITE) &&
+                                readY.getType().equals(Operation.Type.READ) &&
+                                writeY.getKey().equals(readY.getKey()) &&
+                                writeY.getValue().equals(readY.getValue())) {
+                            // find w(y, v_y) wr-> r(y, v_y)
+                            findSubTap = true;
+                            if (readY.getId() < read.getId()) {
+                                // find nonMonoReadCO  if read y precedes read x
+                                findTAP(TAP.NonMonoReadCO);
+                            } else {
+                                // find initReadWR
+                                findTAP(TAP.FracturedReadCO);
+                            }
+                        }
                     }
                 }
-            });
-        });
-
-        // check CyclicCO
-        // iter wr edge (t1 wr-> t2)
-        WREdges.forEach((varX, edgesX) -> {
-            edgesX.forEach((edge) -> {
-                var t1 = edge.getKey();
-                var t2 = edge.getValue();
-                if (t1.canReachByCO(t2) && t2.canReachByCO(t1)) {
-                    // find cyclicCO
-                    findTAP(TAP.CyclicCO);
-//                    print2TxnBp(t1, t2);
+                if (!findSubTap) {
+                    // find initReadCO if not InitReadMono or InitReadWR
+                    findTAP(TAP.COConflictCM);
                 }
             });
-        });
+            return;
+        }
+
+        // write wr-> read
+        var write = writeOf(read);
+        var writeNode = nodeOf(write);
+
+        if (!writeNode.equals(node)) {
+            // in different txn
+            if (internalWrites.contains(write)) {
+                // find intermediate write
+                // TODO: viz 2 txn tap
+                findTAP(TAP.IntermediateRead, writeNode);
+            }
+        } else {
+            // in same txn
+            if (write.getId() > read.getId()) {
+                // find future read
+                findTAP(TAP.FutureRead, node);
+            }
+        }
     }
 
     protected void buildCM() {
-        var pendingNodes = new HashSet<Node<VarType, ValType>>();
+        var pendingNodes = new LinkedHashSet<Node<VarType, ValType>>();
 
         WREdges.forEach((variable, edges) -> {
             edges.forEach((edge) -> {
@@ -369,7 +607,7 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
 //                        if (t.canReachByCO(t1)) {
 //                            return;
 //                        }
-                        graph.addEdge(t, t1, new Edge<>(Edge.Type.CM, variable));
+                        graph.addEdge(t, t1, Edge.Type.CM, variable);
                         CMCauses.put(new Pair<>(t, t1), t2);
                         pendingNodes.add(t);
                     }
@@ -379,162 +617,492 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
 
         // update downstream nodes
         pendingNodes.forEach((node) -> {
-            updateVec(new HashSet<>(), node, node, Edge.Type.CM);
+            updateVec(node, Edge.Type.CM);
         });
     }
 
     protected void checkCMTAP() {
         // iter wr edge (t1 wr-> t3)
-        WRNodesToOp.forEach((WRNodePair, WROpPairList) -> {
-            var t1 = WRNodePair.getKey();
-            var t3 = WRNodePair.getValue();
-            WROpPairList.forEach((WROpPair) -> {
-                var varX = WROpPair.getKey().getKey();
-                writeNodes.get(varX).forEach((t2) -> {
-                    if (!t2.equals(t1) && !t2.equals(t3) && t2.canReachByCO(t3) && t1.canReachByCO(t2)) {
-                        // find tap triangle
-                        boolean findSubTAP = false;
-                        var edges = graph.getEdge(t2, t3);
-                        if (edges != null) {
-                            for (var edge: edges) {
-                                if (edge.getType() == Edge.Type.SO) {
-                                    findTAP(TAP.FracturedReadCO, varX, t1, t2, t3);
-                                    findSubTAP = true;
-                                }
+        forEachParallel(CM_TAPS, new ArrayList<>(WRNodesToOp.entrySet()),
+                (entry) -> checkCMTAP(entry.getKey().getKey(), entry.getKey().getValue(), entry.getValue()));
+    }
+
+    /**
+     * Check the TAPs of the operations t3 reads from t1 that need CM.
+     */
+    protected void checkCMTAP(Node<VarType, ValType> t1, Node<VarType, ValType> t3, List<Pair<Operation<VarType, ValType>, Operation<VarType, ValType>>> WROpPairList) {
+        WROpPairList.forEach((WROpPair) -> {
+            var varX = WROpPair.getKey().getKey();
+            forEachWriterBetween(varX, t1, t3, (t2) -> {
+                if (!t2.equals(t1) && !t2.equals(t3)) {
+                    // find tap triangle
+                    boolean findSubTAP = false;
+                    for (int i = graph.countEdges(t2, t3, Edge.Type.SO); i > 0; i--) {
+                        findTAP(TAP.FracturedReadCO, varX, t1, t2, t3);
+                        findSubTAP = true;
+                    }
+                    if (WRNodesToOp.containsKey(new Pair<>(t2, t3))) {
+                        findSubTAP = true;
+                        var WRYOpPairList = WRNodesToOp.get(new Pair<>(t2, t3));
+                        for (var WRYOpPair : WRYOpPairList) {
+                            var readY = WRYOpPair.getValue();
+                            var varY = readY.getKey();
+                            if (varY == varX) {
+                                continue;
                             }
-                        }
-                        if (WRNodesToOp.containsKey(new Pair<>(t2, t3))) {
-                            findSubTAP = true;
-                            var WRYOpPairList = WRNodesToOp.get(new Pair<>(t2, t3));
-                            for (var WRYOpPair : WRYOpPairList) {
-                                var readY = WRYOpPair.getValue();
-                                var varY = readY.getKey();
-                                if (varY == varX) {
-                                    continue;
-                                }
-                                if (readY.getId() < WROpPair.getValue().getId()) {
-                                    // find NonMonoReadCO
-                                    findTAP(TAP.NonMonoReadCO, varX, t1, t2, t3);
-                                } else {
-                                    // find FracturedReadCO
-                                    findTAP(TAP.FracturedReadCO, varX, t1, t2, t3);
-                                }
+                            if (readY.getId() < WROpPair.getValue().getId()) {
+                                // find NonMonoReadCO
+                                findTAP(TAP.NonMonoReadCO, varX, t1, t2, t3);
+                            } else {
+                                // find FracturedReadCO
+                                findTAP(TAP.FracturedReadCO, varX, t1, t2, t3);
                             }
                         }
-                        if (!findSubTAP) {
-                            // find COConflictCM
-                            findTAP(TAP.COConflictCM, varX, t1, t2, t3);
-                        }
                     }
-                    if (!t2.equals(t1) && !t2.equals(t3) && t2.canReachByCO(t3) && !t1.canReachByCO(t2) && t1.canReachByCM(t2)) {
-                        // find tap triangle
-                        boolean findSubTAP = false;
-                        var edges = graph.getEdge(t2, t3);
-                        if (edges != null) {
-                            for (var edge: edges) {
-                                if (edge.getType() == Edge.Type.SO) {
-                                    findTAP(TAP.FracturedReadCM, varX, t1, t2, t3);
-                                    findSubTAP = true;
-                                }
-                            }
-                        }
-                        if (WRNodesToOp.containsKey(new Pair<>(t2, t3))) {
-                            findSubTAP = true;
-                            var WRYOpPairList = WRNodesToOp.get(new Pair<>(t2, t3));
-                            for (var WRYOpPair : WRYOpPairList) {
-                                var readY = WRYOpPair.getValue();
-                                if (readY.getId() < WROpPair.getValue().getId()) {
-                                    // find NonMonoReadCM
-                                    findTAP(TAP.NonMonoReadCM, varX, t1, t2, t3);
-                                } else {
-                                    // find FracturedReadCM
-                                    findTAP(TAP.FracturedReadCM, varX, t1, t2, t3);
-                                }
+                    if (!findSubTAP) {
+                        // find COConflictCM
+                        findTAP(TAP.COConflictCM, varX, t1, t2, t3);
+                    }
+                }
+            }, (t2) -> {
+                if (!t2.equals(t1) && !t2.equals(t3)) {
+                    // find tap triangle
+                    boolean findSubTAP = false;
+                    for (int i = graph.countEdges(t2, t3, Edge.Type.SO); i > 0; i--) {
+                        findTAP(TAP.FracturedReadCM, varX, t1, t2, t3);
+                        findSubTAP = true;
+                    }
+                    if (WRNodesToOp.containsKey(new Pair<>(t2, t3))) {
+                        findSubTAP = true;
+                        var WRYOpPairList = WRNodesToOp.get(new Pair<>(t2, t3));
+                        for (var WRYOpPair : WRYOpPairList) {
+                            var readY = WRYOpPair.getValue();
+                            if (readY.getId() < WROpPair.getValue().getId()) {
+                                // find NonMonoReadCM
+                                findTAP(TAP.NonMonoReadCM, varX, t1, t2, t3);
+                            } else {
+                                // find FracturedReadCM
+                                findTAP(TAP.FracturedReadCM, varX, t1, t2, t3);
                             }
                         }
-                        if (!findSubTAP) {
-                            // find ConflictCM
-                            findTAP(TAP.ConflictCM, varX, t1, t2, t3);
-                        }
                     }
-                });
+                    if (!findSubTAP) {
+                        // find ConflictCM
+                        findTAP(TAP.ConflictCM, varX, t1, t2, t3);
+                    }
+                }
             });
         });
     }
 
-    protected void updateVec(Set<Node<VarType, ValType>> visited, Node<VarType, ValType> cur, Node<VarType, ValType> upNode, Edge.Type edgeType) {
-        visited.add(cur);
+    /**
+     * Index the writers of each variable by session, once the CO clocks are final.
+     */
+    protected void buildWriterIndex() {
+        writerIndex = new HashMap<>();
+        writeNodes.forEach((variable, nodes) -> writerIndex.put(variable, new WriterIndex<>(nodes)));
+    }
+
+    /**
+     * Run the action on each writer of the variable that CO-reaches the node.
+     */
+    protected void forEachWriterReaching(VarType variable, Node<VarType, ValType> node, Consumer<Node<VarType, ValType>> action) {
+        if (writerIndex != null) {
+            writerIndex.get(variable).forEachReaching(node, action);
+            return;
+        }
+        writeNodes.get(variable).forEach((writeNode) -> {
+            if (writeNode.canReachByCO(node)) {
+                action.accept(writeNode);
+            }
+        });
+    }
+
+    /**
+     * Run the actions on each writer t2 of the variable that CO-reaches t3: coAction if t1 CO-reaches t2, otherwise
+     * cmAction if t1 reaches t2 by CM.
+     */
+    protected void forEachWriterBetween(VarType variable, Node<VarType, ValType> t1, Node<VarType, ValType> t3,
+                                        Consumer<Node<VarType, ValType>> coAction, Consumer<Node<VarType, ValType>> cmAction) {
+        if (writerIndex != null) {
+            writerIndex.get(variable).forEachBetween(t1, t3, coAction, cmAction);
+            return;
+        }
+        writeNodes.get(variable).forEach((t2) -> {
+            if (!t2.canReachByCO(t3)) {
+                return;
+            }
+            if (t1.canReachByCO(t2)) {
+                coAction.accept(t2);
+            } else if (t1.canReachByCM(t2)) {
+                cmAction.accept(t2);
+            }
+        });
+    }
+
+    /**
+     * Propagate the CO or CM clock of upNode to every node reachable from it whose clock does not cover it yet.
+     *
+     * The walk is an iterative depth-first search that visits successors in the same order as a recursive one, with
+     * the visited set kept as epoch stamps indexed by node id, so a propagation allocates nothing.
+     */
+    protected void updateVec(Node<VarType, ValType> upNode, Edge.Type edgeType) {
+        int limit = graph.idLimit();
+        if (visitedEpoch.length < limit) {
+            visitedEpoch = Arrays.copyOf(visitedEpoch, Math.max(limit, visitedEpoch.length * 2));
+        }
+        if (++epoch == 0) {
+            Arrays.fill(visitedEpoch, 0);
+            epoch = 1;
+        }
 
-        var nextNodes = graph.get(cur);
-        for (var next: nextNodes) {
+        int top = 0;
+        stackNodes[0] = upNode.getId();
+        stackNext[0] = 0;
+        visitedEpoch[upNode.getId()] = epoch;
+        while (top >= 0) {
+            int cur = stackNodes[top];
+            if (stackNext[top] == graph.outDegree(cur)) {
+                top--;
+                continue;
+            }
+            int nextId = graph.successor(cur, stackNext[top]++);
+            if (visitedEpoch[nextId] == epoch) {
+                continue;
+            }
+            var next = graph.getNode(nextId);
             if (edgeType == Edge.Type.CO) {
-                if (visited.contains(next) || upNode.canReachByCO(next)) {
+                if (upNode.canReachByCO(next)) {
                     continue;
                 }
                 next.updateCOReachability(upNode);
-                updateVec(visited, next, upNode, edgeType);
             } else if (edgeType == Edge.Type.CM) {
-                if (visited.contains(next) || upNode.canReachByCM(next)) {
+                if (upNode.canReachByCM(next)) {
                     continue;
                 }
                 next.updateCMReachability(upNode);
-                updateVec(visited, next, upNode, edgeType);
+            } else {
+                continue;
             }
+            visitedEpoch[nextId] = epoch;
+            if (++top == stackNodes.length) {
+                stackNodes = Arrays.copyOf(stackNodes, top * 2);
+                stackNext = Arrays.copyOf(stackNext, top * 2);
+            }
+            stackNodes[top] = nextId;
+            stackNext[top] = 0;
+        }
+    }
+
+    /**
+     * Run the check on the items, in parallel chunks when there are enough of them, until the budget of the TAPs the
+     * check can find is spent.
+     *
+     * The clocks and the graph must not change during the checks. Each chunk counts its own TAPs and keeps its own
+     * witnesses; both are merged in the order of the chunks at the end, so without a budget the witnesses kept are
+     * the same as in a sequential run.
+     */
+    protected final <T> void forEachParallel(Set<TAP> found, List<T> items, Consumer<T> check) {
+        forEachParallel(found, items.size(), (i) -> check.accept(items.get(i)));
+    }
+
+    protected final void forEachParallel(Set<TAP> found, int count, IntConsumer check) {
+        if (budgetSpent(found)) {
+            return;
+        }
+        int chunks = Math.min(parallelism * 4, count / MIN_CHUNK_SIZE);
+        if (parallelism == 1 || chunks < 2) {
+            for (int i = 0; i < count && !budgetSpent(found); i++) {
+                check.accept(i);
+            }
+            return;
+        }
+
+        var results = new ArrayList<TAPChunk>(Collections.nCopies(chunks, null));
+        tapPool(parallelism).submit(() -> IntStream.range(0, chunks).parallel().forEach((c) -> {
+            var chunk = new TAPChunk();
+            currentChunk.set(chunk);
+            try {
+                int end = (int) ((long) (c + 1) * count / chunks);
+                for (int i = (int) ((long) c * count / chunks); i < end && !budgetSpent(found); i++) {
+                    check.accept(i);
+                }
+            } finally {
+                currentChunk.remove();
+            }
+            results.set(c, chunk);
+        })).join();
+
+        for (var chunk : results) {
+            for (var tap : TAP.values()) {
+                if (chunk.counts[tap.ordinal()] > 0) {
+                    countTAP(tap, chunk.counts[tap.ordinal()]);
+                }
+            }
+            chunk.witnesses.forEach((witness) -> addWitness(witnesses, witnessCount, witness));
         }
     }
 
+    private static synchronized ForkJoinPool tapPool(int threads) {
+        if (tapPool == null || tapPool.getParallelism() != threads) {
+            tapPool = new ForkJoinPool(threads);
+        }
+        return tapPool;
+    }
+
+    /**
+     * TAPs found by a chunk of forEachParallel.
+     */
+    private class TAPChunk {
+        private final int[] counts = new int[TAP.values().length];
+        private final List<Witness> witnesses = new ArrayList<>();
+        private final int[] witnessCount = new int[TAP.values().length];
+    }
+
+    /**
+     * A TAP with the ids of the nodes that show it.
+     */
+    @AllArgsConstructor
+    private class Witness {
+        private final TAP tap;
+        private final VarType variable;
+        private final int[] nodeIds;
+    }
+
     protected void findTAP(TAP tap) {
+        if (admit(tap)) {
+            recordTAP(tap);
+        }
+    }
+
+    /**
+     * Count a TAP that is within the budget.
+     */
+    protected void recordTAP(TAP tap) {
+        var chunk = currentChunk.get();
+        if (chunk != null) {
+            chunk.counts[tap.ordinal()]++;
+            return;
+        }
+        countTAP(tap, 1);
+    }
+
+    /**
+     * @return true if the hit of the TAP is within the budget and should be recorded
+     */
+    private boolean admit(TAP tap) {
+        if (tapBudget == Integer.MAX_VALUE || !isBudgeted(tap)) {
+            return true;
+        }
+        return budgetHits.getAndUpdate(budgetSlot(tap), (hits) -> Math.min(hits + 1, tapBudget)) < tapBudget;
+    }
+
+    /**
+     * @return true if the budget of every TAP counted against it is spent, so checks finding only these TAPs can stop
+     */
+    protected boolean budgetSpent(Set<TAP> found) {
+        if (tapBudget == Integer.MAX_VALUE) {
+            return false;
+        }
+        for (var tap : found) {
+            if (isBudgeted(tap) && budgetHits.get(budgetSlot(tap)) < tapBudget) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * TAPs that decide the verdict count against the budget, and every TAP does when checking all levels. The other
+     * TAPs are always recorded, but no check runs only for them.
+     */
+    private boolean isBudgeted(TAP tap) {
+        return allLevels || PROHIBITED_TAPS.get(ISOLATION_LEVEL).contains(tap);
+    }
+
+    private int budgetSlot(TAP tap) {
+        // the verdict of each level needs a hit of each TAP, so all levels stop per type
+        return budgetPerType || allLevels ? tap.ordinal() : TAP.values().length;
+    }
+
+    private void countTAP(TAP tap, int count) {
+        foundTapCount.merge(tap, count, Integer::sum);
         if (!PROHIBITED_TAPS.get(ISOLATION_LEVEL).contains(tap)) {
             return;
         }
         taps.add(tap);
-        tapCount.merge(tap.getCode(), 1, Integer::sum);
+        tapCount.merge(tap.getCode(), count, Integer::sum);
     }
 
     protected void findTAP(TAP tap, Node<VarType, ValType> node) {
-        findTAP(tap);
-        vizTap(tap, null, node);
+        if (admit(tap)) {
+            recordTAP(tap);
+            vizTap(tap, null, node);
+        }
     }
 
     @SafeVarargs
     protected final void findTAP(TAP tap, VarType varX, Node<VarType, ValType>... nodes) {
-        findTAP(tap);
-        vizTap(tap, varX, nodes);
+        if (admit(tap)) {
+            recordTAP(tap);
+            vizTap(tap, varX, nodes);
+        }
     }
 
     protected Node<VarType, ValType> constructNode(Transaction<VarType, ValType> transaction, Node<VarType, ValType> prev) {
         short tid = (short) transaction.getSession().getId();
-        int dim = Math.toIntExact(Collections.max(history.getSessions().keySet())) + 1;
-        return new TCNode<>(graph, transaction, tid, dim, prev);
+        if (clockType == null) {
+            // a streamed history is not known in advance
+            var setting = config.getProperty(Config.CHECKER_CLOCK, Config.DEFAULT_CHECKER_CLOCK);
+            clockType = setting.equals("auto") ? "tree" : setting;
+        }
+        if (clockType.equals("sparse")) {
+            return new SparseClockNode<>(graph, transaction, tid, prev);
+        }
+        if (clockType.equals("vector")) {
+            return new VectorClockNode<>(graph, transaction, tid, dim, prev);
+        }
+        if (clockArena == null) {
+            clockArena = new TreeClockArena(dim);
+        } else {
+            clockArena.ensureDim(dim);
+        }
+        return new TCNode<>(graph, clockArena, transaction, tid, prev);
+    }
+
+    /**
+     * Choose the clocks of the nodes.
+     *
+     * Tree clocks take two longs per session and node, which does not fit memory with thousands of sessions. Beyond
+     * TREE_CLOCK_MAX_DIM sessions, the sessions that reach the last transactions of a few sampled sessions are found
+     * in the graph of WR edges between sessions. Sparse clocks pay two ints per reaching session and vector clocks one
+     * int per session, and sparse joins are slower, so sparse clocks are only used when fewer than an eighth of the
+     * sessions reach a sampled one on average.
+     */
+    private String chooseClock() {
+        var setting = config.getProperty(Config.CHECKER_CLOCK, Config.DEFAULT_CHECKER_CLOCK);
+        if (!setting.equals("auto")) {
+            return setting;
+        }
+        if (dim <= TREE_CLOCK_MAX_DIM) {
+            return "tree";
+        }
+
+        // writer sessions of the reads of each session
+        var index = history.getIndex();
+        var readsFrom = new HashMap<Long, Set<Long>>();
+        for (var txn : history.getTransactions().values()) {
+            for (var op : txn.getOps()) {
+                var write = op.getType() == Operation.Type.READ ? index.writeOf(op) : null;
+                if (write != null && write.getTransaction().getSession() != txn.getSession()) {
+                    readsFrom.computeIfAbsent(txn.getSession().getId(), k -> new HashSet<>())
+                            .add(write.getTransaction().getSession().getId());
+                }
+            }
+        }
+
+        var sessions = new ArrayList<>(history.getSessions().keySet());
+        int samples = Math.min(32, sessions.size());
+        long reaching = 0;
+        var visited = new boolean[dim];
+        var queue = new ArrayDeque<Long>();
+        for (int i = 0; i < samples; i++) {
+            Arrays.fill(visited, false);
+            long start = sessions.get((int) ((long) i * sessions.size() / samples));
+            visited[(int) start] = true;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                reaching++;
+                for (var writer : readsFrom.getOrDefault(queue.poll(), Set.of())) {
+                    if (!visited[writer.intValue()]) {
+                        visited[writer.intValue()] = true;
+                        queue.add(writer);
+                    }
+                }
+            }
+        }
+        return reaching < samples * (dim / 8.0) ? "sparse" : "vector";
     }
 
     protected void syncClock() {
-        graph.getAdjMap().keySet().forEach(Node::syncCOCM);
+        graph.getNodes().forEach(Node::syncCOCM);
     }
 
     protected boolean hasCircle(Edge.Type edgeType) {
-        return graph.getAdjMap().entrySet().stream().anyMatch((entry) -> {
-            var from = entry.getKey();
-            var toNodes = entry.getValue();
-            return toNodes.stream().anyMatch((node) -> (edgeType == Edge.Type.CO && node.canReachByCO(from)) ||
-                    (edgeType == Edge.Type.CM && node.canReachByCM(from)));
-        });
+        for (var from : graph.getNodes()) {
+            int fromId = from.getId();
+            for (int i = 0, n = graph.outDegree(fromId); i < n; i++) {
+                var node = graph.getNode(graph.successor(fromId, i));
+                if ((edgeType == Edge.Type.CO && node.canReachByCO(from)) ||
+                        (edgeType == Edge.Type.CM && node.canReachByCM(from))) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
+    /**
+     * Record the witness of a TAP, to be rendered into a dot graph when the bug graphs are asked for.
+     */
     @SafeVarargs
     protected final void vizTap(TAP tap, VarType varX, Node<VarType, ValType>... nodes) {
-        if (!bugGraphs.isEmpty()) {
+        if (nodes.length < 1) {
             return;
         }
-        if (nodes.length < 1) {
-            // do nothing
-        } else if (nodes.length == 1) {
-            String builder = "digraph " +
+        var nodeIds = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodeIds[i] = nodes[i].getId();
+        }
+        var witness = new Witness(tap, varX, nodeIds);
+        var chunk = currentChunk.get();
+        if (chunk != null) {
+            addWitness(chunk.witnesses, chunk.witnessCount, witness);
+        } else {
+            addWitness(witnesses, witnessCount, witness);
+        }
+    }
+
+    /**
+     * Keep the first witness, and the first witnessLimit ones of each TAP.
+     */
+    private void addWitness(List<Witness> kept, int[] count, Witness witness) {
+        if (kept.isEmpty() || count[witness.tap.ordinal()] < witnessLimit) {
+            kept.add(witness);
+            count[witness.tap.ordinal()]++;
+        }
+    }
+
+    /**
+     * Render the recorded witnesses into bugGraphs. The nodes of a witness must still be in the graph.
+     */
+    protected void renderWitnesses() {
+        for (; renderedCount < witnesses.size(); renderedCount++) {
+            var witness = witnesses.get(renderedCount);
+            var nodes = new ArrayList<Node<VarType, ValType>>();
+            for (int id : witness.nodeIds) {
+                nodes.add(graph.getNode(id));
+            }
+            bugGraphs.add(render(witness.tap, witness.variable, nodes));
+            bugGraphTaps.add(witness.tap);
+        }
+    }
+
+    /**
+     * @return the dot graphs of the witnesses, the first one found first
+     */
+    public List<String> getBugGraphs() {
+        renderWitnesses();
+        return bugGraphs;
+    }
+
+    private String render(TAP tap, VarType varX, List<Node<VarType, ValType>> nodes) {
+        if (nodes.size() == 1) {
+            return "digraph " +
                     tap +
                     " {\n" +
-                    String.format("\"%s\" [id=\"%s\" ops=\"%s\" relate_to=\"\"];\n", nodes[0].getTransaction(), nodes[0].getTransaction(), nodes[0].getTransaction().getOps()) +
+                    String.format("\"%s\" [id=\"%s\" ops=\"%s\" relate_to=\"\"];\n", nodes.get(0).getTransaction(), nodes.get(0).getTransaction(), nodes.get(0).getTransaction().getOps()) +
                     "}\n";
-            bugGraphs.add(builder);
         } else {
             Map<Node<VarType, ValType>, Set<Triple<Node<VarType, ValType>, Node<VarType, ValType>, Edge<VarType>>>> nodeMap = new HashMap<>();
             Map<Triple<Node<VarType, ValType>, Node<VarType, ValType>, Edge<VarType>>, Set<Triple<Node<VarType, ValType>, Node<VarType, ValType>, Edge<VarType>>>> edgeMap = new HashMap<>();
@@ -578,23 +1146,23 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
                 return null;
             };
 
-            var CMEdge = Triple.of(nodes[1], nodes[0], new Edge<VarType>(Edge.Type.CM, varX));
+            var CMEdge = Triple.of(nodes.get(1), nodes.get(0), new Edge<VarType>(Edge.Type.CM, varX));
             edgeMap.put(CMEdge, null);
-            edgeMap.put(Triple.of(nodes[0], nodes[2], new Edge<>(Edge.Type.WR, varX)), Sets.newHashSet(CMEdge));
+            edgeMap.put(Triple.of(nodes.get(0), nodes.get(2), new Edge<>(Edge.Type.WR, varX)), Sets.newHashSet(CMEdge));
 
             Pair<List<Node<VarType, ValType>>, List<Edge<VarType>>> pathFromT1ToT2 = null;
             if (tap.equals(TAP.NonMonoReadCO) || tap.equals(TAP.FracturedReadCO) || tap.equals(TAP.COConflictCM)) {
-                pathFromT1ToT2 = path(nodes[0], nodes[1], Sets.newHashSet(Edge.Type.SO, Edge.Type.WR));
+                pathFromT1ToT2 = path(nodes.get(0), nodes.get(1), Sets.newHashSet(Edge.Type.SO, Edge.Type.WR));
             } else if (tap.equals(TAP.NonMonoReadCM) || tap.equals(TAP.FracturedReadCM) || tap.equals(TAP.ConflictCM)) {
-                pathFromT1ToT2 = path(nodes[0], nodes[1], Sets.newHashSet(Edge.Type.SO, Edge.Type.WR, Edge.Type.CM));
+                pathFromT1ToT2 = path(nodes.get(0), nodes.get(1), Sets.newHashSet(Edge.Type.SO, Edge.Type.WR, Edge.Type.CM));
             }
             addNodesAndEdges.apply(pathFromT1ToT2, null);
 
             Pair<List<Node<VarType, ValType>>, List<Edge<VarType>>> pathFromT2ToT3;
             if (tap.equals(TAP.NonMonoReadCO) || tap.equals(TAP.NonMonoReadCM)) {
-                pathFromT2ToT3 = path(nodes[1], nodes[2], Sets.newHashSet(Edge.Type.WR));
+                pathFromT2ToT3 = path(nodes.get(1), nodes.get(2), Sets.newHashSet(Edge.Type.WR));
             } else {
-                pathFromT2ToT3 = path(nodes[1], nodes[2], Sets.newHashSet(Edge.Type.SO, Edge.Type.WR));
+                pathFromT2ToT3 = path(nodes.get(1), nodes.get(2), Sets.newHashSet(Edge.Type.SO, Edge.Type.WR));
             }
             addNodesAndEdges.apply(pathFromT2ToT3, CMEdge);
 
@@ -633,32 +1201,32 @@ public class C4<VarType, ValType> implements Checker<VarType, ValType> {
                         e.getKey().getRight().toString(), CMListToString.apply(e.getValue())));
             }
             builder.append("}\n");
-            bugGraphs.add(builder.toString());
+            return builder.toString();
         }
     }
 
     private Pair<List<Node<VarType, ValType>>, List<Edge<VarType>>> path(Node<VarType, ValType> from, Node<VarType, ValType> to, Set<Edge.Type> edgeTypes) {
-        List<Node<VarType, ValType>> queue = new LinkedList<>();
+        var queue = new ArrayDeque<Node<VarType, ValType>>();
         Map<Node<VarType, ValType>, Node<VarType, ValType>> parentNodeMap = new HashMap<>();
         Map<Node<VarType, ValType>, Edge<VarType>> parentEdgeMap = new HashMap<>();
         queue.add(from);
         parentNodeMap.put(from, null);
         do {
-            var node = queue.remove(0);
+            var node = queue.poll();
             if (node.equals(to)) {
                 break;
             }
-            for (var next : graph.get(node)) {
-                var edges = graph.getEdge(node, next).stream()
-                        .filter(e -> edgeTypes.contains(e.getType()))
-                        .collect(Collectors.toList());
-                if (edges.isEmpty()) {
+            int nodeId = node.getId();
+            for (int i = 0, n = graph.outDegree(nodeId); i < n; i++) {
+                int label = graph.label(nodeId, i);
+                if (!edgeTypes.contains(Graph.type(label))) {
                     continue;
                 }
+                var next = graph.getNode(graph.successor(nodeId, i));
                 if (!parentNodeMap.containsKey(next)) {
                     queue.add(next);
                     parentNodeMap.put(next, node);
-                    parentEdgeMap.put(next, edges.get(0));
+                    parentEdgeMap.put(next, new Edge<>(Graph.type(label), graph.variable(label)));
                 }
             }
         } while (!queue.isEmpty());
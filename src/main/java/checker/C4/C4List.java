@@ -6,6 +6,7 @@ import checker.C4.taps.TAP;
 import checker.IsolationLevel;
 import history.History;
 import history.Operation;
+import history.Transaction;
 import history.loader.ElleHistoryLoader;
 import javafx.util.Pair;
 
@@ -25,15 +26,22 @@ public class C4List<VarType> extends C4<VarType, ElleHistoryLoader.ElleValue> {
         profiler.startTick(constructionTag);
         buildCO();
         constructionTime = profiler.endTick(constructionTag);
+        return checkTAPs();
+    }
+
+    @Override
+    protected boolean checkTAPs() {
         profiler.startTick(traversalTag);
+        graph.freeze();
         checkCOTAP();
-        if (ISOLATION_LEVEL == IsolationLevel.REPEATABLE_READ) {
+        if ((ISOLATION_LEVEL == IsolationLevel.REPEATABLE_READ && !allLevels) || budgetSpent(CM_TAPS)) {
             traversalTime = profiler.endTick(traversalTag);
             return tapCount.isEmpty();
         }
         syncClock();
         buildWW();
         buildCM();
+        graph.freeze();
         if (!hasCircle(Edge.Type.CM)) {
             traversalTime = profiler.endTick(traversalTag);
             return tapCount.isEmpty();
@@ -45,138 +53,131 @@ public class C4List<VarType> extends C4<VarType, ElleHistoryLoader.ElleValue> {
 
 
     @Override
-    protected void buildCO() {
-        var hist = history.getFlatTransactions();
-        Map<Long, Node<VarType, ElleHistoryLoader.ElleValue>> prevNodes = new HashMap<>();
-
-        for (var txn: hist) {
-
-            // update node with prev node
-            var prev = prevNodes.get(txn.getSession().getId());
-            var node = constructNode(txn, prev);
-            graph.addVertex(node);
-            prevNodes.put(txn.getSession().getId(), node);
-            if (prev != null) {
-                graph.addEdge(prev, node, new Edge<>(Edge.Type.SO, null));
-            }
+    protected void buildCO(Transaction<VarType, ElleHistoryLoader.ElleValue> txn) {
+        // update node with prev node
+        var prev = prevNodes.get(txn.getSession().getId());
+        var node = constructNode(txn, prev);
+        graph.addVertex(node);
+        prevNodes.put(txn.getSession().getId(), node);
+        if (prev != null) {
+            graph.addEdge(prev, node, Edge.Type.SO, null);
+        }
 
-            var nearestRW = new HashMap<VarType, Operation<VarType, ElleHistoryLoader.ElleValue>>();
-            var writesInTxn = new HashMap<VarType, Operation<VarType, ElleHistoryLoader.ElleValue>>();
+        var nearestRW = new HashMap<VarType, Operation<VarType, ElleHistoryLoader.ElleValue>>();
+        var writesInTxn = new HashMap<VarType, Operation<VarType, ElleHistoryLoader.ElleValue>>();
 
-            for (var op: txn.getOps()) {
-                var key = new Pair<>(op.getKey(), op.getValue());
-                op2node.put(op, node);
+        for (var op: txn.getOps()) {
+            var key = new Pair<>(op.getKey(), op.getValue());
+            op2node.put(op, node);
 
-                // if op is a read
-                if (op.getType() == Operation.Type.READ) {
+            // if op is a read
+            if (op.getType() == Operation.Type.READ) {
 
-                    // check NonRepeatableRead and NotMyOwnWrite
-                    var prevRW = nearestRW.get(op.getKey());
-                    if (prevRW != null && !op.getValue().equals(prevRW.getValue())) {
-                        if (prevRW.getType() == Operation.Type.READ) {
-                            findTAP(TAP.NonRepeatableRead, node);
-                        } else {
-                            boolean findNotMyLastWrite = false;
-                            for (var prevOp: txn.getOps()) {
-                                if (prevOp.getId() < prevRW.getId() &&
-                                        prevOp.getType() == Operation.Type.WRITE &&
-                                        prevOp.getKey().equals(op.getKey()) &&
-                                        prevOp.getValue().equals(op.getValue())
-                                ) {
-                                    findNotMyLastWrite = true;
-                                    findTAP(TAP.NotMyLastWrite, node);
-                                }
-                            }
-                            if (!findNotMyLastWrite) {
-                                findTAP(TAP.NotMyOwnWrite, node);
+                // check NonRepeatableRead and NotMyOwnWrite
+                var prevRW = nearestRW.get(op.getKey());
+                if (prevRW != null && !op.getValue().equals(prevRW.getValue())) {
+                    if (prevRW.getType() == Operation.Type.READ) {
+                        findTAP(TAP.NonRepeatableRead, node);
+                    } else {
+                        boolean findNotMyLastWrite = false;
+                        for (var prevOp: txn.getOps()) {
+                            if (prevOp.getId() < prevRW.getId() &&
+                                    prevOp.getType() == Operation.Type.WRITE &&
+                                    prevOp.getKey().equals(op.getKey()) &&
+                                    prevOp.getValue().equals(op.getValue())
+                            ) {
+                                findNotMyLastWrite = true;
+                                findTAP(TAP.NotMyLastWrite, node);
                             }
                         }
+                        if (!findNotMyLastWrite) {
+                            findTAP(TAP.NotMyOwnWrite, node);
+                        }
                     }
-                    nearestRW.put(op.getKey(), op);
+                }
+                nearestRW.put(op.getKey(), op);
 
-                    var write = writes.get(key);
-                    if (write != null) {
-                        // if write -> op
-                        // add op to reads
-                        reads.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
+                var write = writes.get(key);
+                if (write != null) {
+                    // if write -> op
+                    // add op to reads
+                    reads.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
 
-                        var writeNode = op2node.get(write);
-                        if (!writeNode.equals(node)) {
-                            if (!writeNode.canReachByCO(node)) {
-                                node.updateCOReachability(writeNode);
-                            }
-                            graph.addEdge(writeNode, node, new Edge<>(Edge.Type.WR, op.getKey()));
-                            WREdges.computeIfAbsent(op.getKey(), k -> new HashSet<>()).add(new Pair<>(writeNode, node));
-                            WRNodesToOp.computeIfAbsent(new Pair<>(writeNode, node), wr -> new ArrayList<>()).add(new Pair<>(write, op));
+                    var writeNode = op2node.get(write);
+                    if (!writeNode.equals(node)) {
+                        if (!writeNode.canReachByCO(node)) {
+                            node.updateCOReachability(writeNode);
                         }
-                    } else if (op.getValue().equals(ZERO)) {
-                        // if no write -> op, but op reads zero
-                        reads.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
-                    } else {
-                        readsWithoutWrites.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
+                        graph.addEdge(writeNode, node, Edge.Type.WR, op.getKey());
+                        WREdges.computeIfAbsent(op.getKey(), k -> new LinkedHashSet<>()).add(new Pair<>(writeNode, node));
+                        WRNodesToOp.computeIfAbsent(new Pair<>(writeNode, node), wr -> new ArrayList<>()).add(new Pair<>(write, op));
                     }
+                } else if (op.getValue().equals(ZERO)) {
+                    // if no write -> op, but op reads zero
+                    reads.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
                 } else {
-                    // if op is a write
-                    if (op.getValue().equals(ZERO)) {
-                        // ignore write 0
-                        continue;
-                    }
-                    writes.put(key, op);
-                    writeNodes.computeIfAbsent(op.getKey(), k -> new HashSet<>()).add(node);
+                    readsWithoutWrites.computeIfAbsent(key, k -> new ArrayList<>()).add(op);
+                }
+            } else {
+                // if op is a write
+                if (op.getValue().equals(ZERO)) {
+                    // ignore write 0
+                    continue;
+                }
+                writes.put(key, op);
+                writeNodes.computeIfAbsent(op.getKey(), k -> new LinkedHashSet<>()).add(node);
 
-                    nearestRW.put(op.getKey(), op);
+                nearestRW.put(op.getKey(), op);
 
-                    // check internal write
-                    var internalWrite = writesInTxn.get(op.getKey());
-                    if (internalWrite != null) {
-                        internalWrites.add(internalWrite);
-                    }
-                    writesInTxn.put(op.getKey(), op);
+                // check internal write
+                var internalWrite = writesInTxn.get(op.getKey());
+                if (internalWrite != null) {
+                    internalWrites.add(internalWrite);
+                }
+                writesInTxn.put(op.getKey(), op);
 
-                    var pendingReads = readsWithoutWrites.get(key);
-                    if (pendingReads != null) {
-                        reads.computeIfAbsent(key, k -> new ArrayList<>()).addAll(pendingReads);
-                        for (var pendingRead: pendingReads) {
-                            var pendingReadNode = op2node.get(pendingRead);
-                            if (!node.equals(pendingReadNode)) {
-                                graph.addEdge(node, pendingReadNode, new Edge<>(Edge.Type.WR, op.getKey()));
-                                WREdges.computeIfAbsent(op.getKey(), k -> new HashSet<>()).add(new Pair<>(node, pendingReadNode));
-                                WRNodesToOp.computeIfAbsent(new Pair<>(node, pendingReadNode), wr -> new ArrayList<>()).add(new Pair<>(op, pendingRead));
-                            }
+                var pendingReads = readsWithoutWrites.get(key);
+                if (pendingReads != null) {
+                    reads.computeIfAbsent(key, k -> new ArrayList<>()).addAll(pendingReads);
+                    for (var pendingRead: pendingReads) {
+                        var pendingReadNode = op2node.get(pendingRead);
+                        if (!node.equals(pendingReadNode)) {
+                            graph.addEdge(node, pendingReadNode, Edge.Type.WR, op.getKey());
+                            WREdges.computeIfAbsent(op.getKey(), k -> new LinkedHashSet<>()).add(new Pair<>(node, pendingReadNode));
+                            WRNodesToOp.computeIfAbsent(new Pair<>(node, pendingReadNode), wr -> new ArrayList<>()).add(new Pair<>(op, pendingRead));
                         }
                     }
-                    readsWithoutWrites.remove(key);
                 }
+                readsWithoutWrites.remove(key);
             }
-            updateVec(new HashSet<>(), node, node, Edge.Type.CO);
         }
+        updateVec(node, Edge.Type.CO);
     }
 
     private void buildWW() {
         Set<Node<VarType, ElleHistoryLoader.ElleValue>> pendingNodes = new HashSet<>();
+        var versionOrder = history.getVersionOrder();
         reads.values().forEach((readList) -> {
             readList.forEach((read) -> {
-                var ref = new Object() {
-                    Node<VarType, ElleHistoryLoader.ElleValue> prev = null;
-                };
-                read.getValue().getList().forEach((val) -> {
-                    var key = new Pair<>(read.getKey(), new ElleHistoryLoader.ElleValue(val, null));
-                    var write = writes.get(key);
+                Node<VarType, ElleHistoryLoader.ElleValue> prev = null;
+                var prefixWrites = versionOrder.writesOf(read);
+                for (int i = 1; i < prefixWrites.size(); i++) {
+                    var write = prefixWrites.get(i);
                     if (write == null) {
-                        return;
+                        continue;
                     }
                     var node = op2node.get(write);
-                    if (ref.prev == null) {
-                        ref.prev = node;
-                        pendingNodes.add(ref.prev);
+                    if (prev == null) {
+                        prev = node;
+                        pendingNodes.add(prev);
                     }
-                    graph.addEdge(ref.prev, node, new Edge<>(Edge.Type.CM, read.getKey()));
-                    ref.prev = node;
-                });
+                    graph.addEdge(prev, node, Edge.Type.CM, read.getKey());
+                    prev = node;
+                }
             });
         });
         pendingNodes.forEach((node) -> {
-            updateVec(new HashSet<>(), node, node, Edge.Type.CM);
+            updateVec(node, Edge.Type.CM);
         });
     }
 
@@ -198,94 +199,100 @@ public class C4List<VarType> extends C4<VarType, ElleHistoryLoader.ElleValue> {
             }
         }
 
-        // for each read
-        reads.values().forEach((readList) -> {
-            readList.forEach((read) -> {
-                read.getValue().getList().forEach((v) -> {
-                    var key = new Pair<>(read.getKey(),  new ElleHistoryLoader.ElleValue(v, null));
-                    var node = op2node.get(read);
+        buildWriterIndex();
 
-                    // read(x, 0)
-                    if (read.getValue().equals(ZERO)) {
-                        var writeRelNodes = writeNodes.get(read.getKey());
+        // for each read
+        var versionOrder = history.getVersionOrder();
+        forEachParallel(READ_TAPS, readList(), (read) -> {
+            var list = read.getValue().getList();
+            var prefixWrites = versionOrder.writesOf(read);
+            for (int i = 0; i < list.size(); i++) {
+                checkCOTAP(read, list.get(i), prefixWrites.get(i + 1));
+            }
+        });
 
-                        // no write(x, k)
-                        if (writeRelNodes == null) {
-                            return;
-                        }
+        // check CyclicCO
+        // iter wr edge (t1 wr-> t2)
+        forEachParallel(CYCLIC_CO_TAPS, WREdgeList(), (edge) -> {
+            var t1 = edge.getKey();
+            var t2 = edge.getValue();
+            if (t1.canReachByCO(t2) && t2.canReachByCO(t1)) {
+                // find cyclicCO
+                findTAP(TAP.CyclicCO);
+            }
+        });
+    }
 
-                        // check if write(x, k) co-> read
-                        writeRelNodes.forEach((writeNode) -> {
-                            if (writeNode.equals(node)) {
-                                return;
-                            }
-                            if (writeNode.canReachByCO(node)) {
-                                // there are 3 cases: initReadMono initReadWR or writeCOInitRead
-                                boolean findSubTap = false;
-                                for (var writeY : writeNode.getTransaction().getOps()) {
-                                    for (var readY : node.getTransaction().getOps()) {
-                                        if (!writeY.getKey().equals(read.getKey()) &&
-                                                writeY.getType().equals(Operation.Type.WRITE) &&
-                                                readY.getType().equals(Operation.Type.READ) &&
-                                                writeY.getKey().equals(readY.getKey()) &&
-                                                writeY.getValue().equals(readY.getValue())) {
-                                            // find w(y, v_y) wr-> r(y, v_y)
-                                            findSubTap = true;
-                                            if (readY.getId() < read.getId()) {
-                                                // find initReadMono if read y precedes read x
-                                                findTAP(TAP.NonMonoReadCO);
-                                            } else {
-                                                // find initReadWR
-                                                findTAP(TAP.FracturedReadCO);
-                                            }
-                                        }
-                                    }
-                                }
-                                if (!findSubTap) {
-                                    // find initReadCO if not InitReadMono or InitReadWR
-                                    findTAP(TAP.COConflictCM);
-                                }
-                            }
-                        });
-                        return;
-                    }
+    /**
+     * Check the TAPs of one element v of a read list that only need CO, except CyclicCO.
+     *
+     * @param write the write of v, or null if v is never written
+     */
+    private void checkCOTAP(Operation<VarType, ElleHistoryLoader.ElleValue> read, Integer v, Operation<VarType, ElleHistoryLoader.ElleValue> write) {
+        var node = op2node.get(read);
 
-                    // write wr-> read
-                    var write = writes.get(key);
-                    var writeNode = op2node.get(write);
+        // read(x, 0)
+        if (read.getValue().equals(ZERO)) {
+            var writeRelNodes = writeNodes.get(read.getKey());
 
-                    if (writeNode == null) {
-                        return;
-                    }
+            // no write(x, k)
+            if (writeRelNodes == null) {
+                return;
+            }
 
-                    if (!writeNode.equals(node)) {
-                        // in different txn, and v should be the last element in the read list
-                        if (internalWrites.contains(write) && read.getValue().getLastElement().equals(v)) {
-                            // find intermediate write
-                            findTAP(TAP.IntermediateRead, writeNode);
-                        }
-                    } else {
-                        // in same txn
-                        if (write.getId() > read.getId()) {
-                            // find future read
-                            findTAP(TAP.FutureRead, node);
+            // check if write(x, k) co-> read
+            forEachWriterReaching(read.getKey(), node, (writeNode) -> {
+                if (writeNode.equals(node)) {
+                    return;
+                }
+                // there are 3 cases: initReadMono initReadWR or writeCOInitRead
+                boolean findSubTap = false;
+                for (var writeY : writeNode.getTransaction().getOps()) {
+                    for (var readY : node.getTransaction().getOps()) {
+                        if (!writeY.getKey().equals(read.getKey()) &&
+                                writeY.getType().equals(Operation.Type.WRITE) &&
+                                readY.getType().equals(Operation.Type.READ) &&
+                                writeY.getKey().equals(readY.getKey()) &&
+                                writeY.getValue().equals(readY.getValue())) {
+                            // find w(y, v_y) wr-> r(y, v_y)
+                            findSubTap = true;
+                            if (readY.getId() < read.getId()) {
+                                // find initReadMono if read y precedes read x
+                                findTAP(TAP.NonMonoReadCO);
+                            } else {
+                                // find initReadWR
+                                findTAP(TAP.FracturedReadCO);
+                            }
                         }
                     }
-                });
-            });
-        });
-
-        // check CyclicCO
-        // iter wr edge (t1 wr-> t2)
-        WREdges.forEach((varX, edgesX) -> {
-            edgesX.forEach((edge) -> {
-                var t1 = edge.getKey();
-                var t2 = edge.getValue();
-                if (t1.canReachByCO(t2) && t2.canReachByCO(t1)) {
-                    // find cyclicCO
-                    findTAP(TAP.CyclicCO);
+                }
+                if (!findSubTap) {
+                    // find initReadCO if not InitReadMono or InitReadWR
+                    findTAP(TAP.COConflictCM);
                 }
             });
-        });
+            return;
+        }
+
+        // write wr-> read
+        var writeNode = write == null ? null : op2node.get(write);
+
+        if (writeNode == null) {
+            return;
+        }
+
+        if (!writeNode.equals(node)) {
+            // in different txn, and v should be the last element in the read list
+            if (internalWrites.contains(write) && read.getValue().getLastElement().equals(v)) {
+                // find intermediate write
+                findTAP(TAP.IntermediateRead, writeNode);
+            }
+        } else {
+            // in same txn
+            if (write.getId() > read.getId()) {
+                // find future read
+                findTAP(TAP.FutureRead, node);
+            }
+        }
     }
 }
@@ -0,0 +1,531 @@
+package checker.C4;
+
+import checker.C4.graph.Edge;
+import checker.C4.graph.Node;
+import checker.C4.graph.WriterIndex;
+import checker.C4.taps.TAP;
+import checker.C4.util.LongPairIntMap;
+import history.History;
+import history.Operation;
+import history.Transaction;
+import javafx.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+
+import static checker.C4.util.LongPairIntMap.NONE;
+
+/**
+ * C4 for histories with {@code Long} keys and values.
+ *
+ * Keys, versions and WR node pairs are numbered through open-addressing maps, and everything C4 keeps per
+ * operation lives in {@code int[]} tables indexed by these numbers, so adding a transaction and checking its
+ * reads allocate nothing per operation. A WR edge is added to the graph once per writer, reader and key.
+ */
+public class C4Long extends C4<Long, Long> {
+    public static final String NAME = "C4-long";
+
+    private final LongPairIntMap keyIds = new LongPairIntMap();
+    // (key id, value) -> version id
+    private final LongPairIntMap versionIds = new LongPairIntMap();
+    // (writer node id, reader node id) -> pair id
+    private final LongPairIntMap pairIds = new LongPairIntMap();
+    // (pair id, key id) of the WR edges already in the graph
+    private final LongPairIntMap pairKeys = new LongPairIntMap();
+
+    // by key id
+    private Long[] keys = new Long[16];
+    private int[][] keyWriters = new int[16][];
+    private int[] keyWriterCount = new int[16];
+    private int[] nearestRW = new int[16];
+    private int[] nearestRWNode = new int[16];
+    private int[] writeInTxn = new int[16];
+    private int[] writeInTxnNode = new int[16];
+    // writers by session, built once the CO clocks are final
+    private WriterIndex<Long, Long>[] keyIndex;
+
+    // by version id
+    private int[] versionWrite = new int[16];
+    private int[] pendingHead = new int[16];
+    private int[] pendingTail = new int[16];
+
+    // by operation id
+    private int opCount = 0;
+    @SuppressWarnings("unchecked")
+    private Operation<Long, Long>[] ops = new Operation[16];
+    private int[] opNode = new int[16];
+    private int[] opKey = new int[16];
+    private int[] opVersion = new int[16];
+    // next read without write of the same version, or next read of the same WR pair
+    private int[] nextRead = new int[16];
+    // the write a read of a WR pair reads from
+    private int[] readFrom = new int[16];
+    private final BitSet internal = new BitSet();
+
+    // reads with a write or reading zero, in the order they are resolved
+    private int[] reads = new int[16];
+    private int readCount = 0;
+
+    // by pair id
+    private int pairCount = 0;
+    private int[] pairWriter = new int[16];
+    private int[] pairReader = new int[16];
+    private int[] pairHead = new int[16];
+    private int[] pairTail = new int[16];
+
+    // WR edges by (pair id, key id)
+    private int edgeCount = 0;
+    private int[] edgePair = new int[16];
+    private int[] edgeKey = new int[16];
+
+    public C4Long(Properties config) {
+        super(config);
+    }
+
+    @Override
+    protected void intern(History<Long, Long> history) {
+        // buildCO keeps its own tables by operation, key and version
+    }
+
+    @Override
+    protected void buildCO(Transaction<Long, Long> txn) {
+        // update node with prev node
+        var prev = prevNodes.get(txn.getSession().getId());
+        var node = constructNode(txn, prev);
+        graph.addVertex(node);
+        prevNodes.put(txn.getSession().getId(), node);
+        if (prev != null) {
+            graph.addEdge(prev, node, Edge.Type.SO, null);
+        }
+        int nodeId = node.getId();
+
+        var txnOps = txn.getOps();
+        for (int i = 0; i < txnOps.size(); i++) {
+            var op = txnOps.get(i);
+            long value = op.getValue();
+            int k = keyId(op.getKey());
+            int v = versionId(k, value);
+            int o = addOp(op, nodeId, k, v);
+
+            // if op is a read
+            if (op.getType() == Operation.Type.READ) {
+
+                // check NonRepeatableRead and NotMyOwnWrite
+                int prevRW = nearestRWNode[k] == nodeId ? nearestRW[k] : NONE;
+                if (prevRW != NONE && value != ops[prevRW].getValue()) {
+                    if (ops[prevRW].getType() == Operation.Type.READ) {
+                        findTAP(TAP.NonRepeatableRead, node);
+                    } else {
+                        boolean findNotMyLastWrite = false;
+                        for (int j = 0; j < txnOps.size(); j++) {
+                            var prevOp = txnOps.get(j);
+                            if (prevOp.getId() < ops[prevRW].getId() &&
+                                    prevOp.getType() == Operation.Type.WRITE &&
+                                    prevOp.getKey().longValue() == op.getKey() &&
+                                    prevOp.getValue() == value) {
+                                findNotMyLastWrite = true;
+                                findTAP(TAP.NotMyLastWrite, node);
+                            }
+                        }
+                        if (!findNotMyLastWrite) {
+                            findTAP(TAP.NotMyOwnWrite, node);
+                        }
+                    }
+                }
+                nearestRW[k] = o;
+                nearestRWNode[k] = nodeId;
+
+                int write = versionWrite[v];
+                if (write != NONE) {
+                    // if write -> op
+                    addRead(o);
+                    int writeNodeId = opNode[write];
+                    if (writeNodeId != nodeId) {
+                        var writeNode = graph.getNode(writeNodeId);
+                        if (!writeNode.canReachByCO(node)) {
+                            node.updateCOReachability(writeNode);
+                        }
+                        addWR(write, o);
+                    }
+                } else if (value == 0) {
+                    // if no write -> op, but op reads zero
+                    addRead(o);
+                } else {
+                    if (pendingHead[v] == NONE) {
+                        pendingHead[v] = o;
+                    } else {
+                        nextRead[pendingTail[v]] = o;
+                    }
+                    pendingTail[v] = o;
+                }
+            } else {
+                // if op is a write
+                if (value == 0) {
+                    // ignore write 0
+                    continue;
+                }
+                versionWrite[v] = o;
+                addWriter(k, nodeId);
+
+                nearestRW[k] = o;
+                nearestRWNode[k] = nodeId;
+
+                // check internal write
+                if (writeInTxnNode[k] == nodeId) {
+                    internal.set(writeInTxn[k]);
+                }
+                writeInTxn[k] = o;
+                writeInTxnNode[k] = nodeId;
+
+                for (int r = pendingHead[v]; r != NONE; ) {
+                    int next = nextRead[r];
+                    addRead(r);
+                    if (opNode[r] != nodeId) {
+                        addWR(o, r);
+                    }
+                    r = next;
+                }
+                pendingHead[v] = NONE;
+            }
+        }
+        updateVec(node, Edge.Type.CO);
+    }
+
+    @Override
+    protected void checkCOTAP() {
+        // check aborted read and thin air
+        int withoutWrites = 0;
+        int aborted = 0;
+        for (int v = 0; v < versionIds.size(); v++) {
+            if (pendingHead[v] == NONE) {
+                continue;
+            }
+            withoutWrites++;
+            var read = ops[pendingHead[v]];
+            if (history.getAbortedWrites().contains(new Pair<>(read.getKey(), read.getValue()))) {
+                // find aborted read
+                findTAP(TAP.AbortedRead);
+                aborted++;
+            }
+        }
+        if (aborted != withoutWrites) {
+            // find thin air read
+            findTAP(TAP.ThinAirRead);
+        }
+
+        buildWriterIndex();
+
+        // for each read
+        forEachParallel(READ_TAPS, readCount, (i) -> checkCOTAP(reads[i]));
+
+        // check CyclicCO
+        // iter wr edge (t1 wr-> t2)
+        forEachParallel(CYCLIC_CO_TAPS, edgeCount, (e) -> {
+            var t1 = graph.getNode(pairWriter[edgePair[e]]);
+            var t2 = graph.getNode(pairReader[edgePair[e]]);
+            if (t1.canReachByCO(t2) && t2.canReachByCO(t1)) {
+                // find cyclicCO
+                findTAP(TAP.CyclicCO);
+            }
+        });
+    }
+
+    private void checkCOTAP(int read) {
+        int nodeId = opNode[read];
+        var node = graph.getNode(nodeId);
+        var readOp = ops[read];
+
+        // read(x, 0)
+        if (readOp.getValue() == 0) {
+            int k = opKey[read];
+            // check if write(x, k) co-> read
+            keyIndex[k].forEachReaching(node, (writeNode) -> {
+                if (writeNode.getId() == nodeId) {
+                    return;
+                }
+                // there are 3 cases: initReadMono initReadWR or writeCOInitRead
+                boolean findSubTap = false;
+                var writeOps = writeNode.getTransaction().getOps();
+                var readOps = node.getTransaction().getOps();
+                for (int w = 0; w < writeOps.size(); w++) {
+                    var writeY = writeOps.get(w);
+                    if (writeY.getType() != Operation.Type.WRITE || writeY.getKey().longValue() == readOp.getKey()) {
+                        continue;
+                    }
+                    for (int r = 0; r < readOps.size(); r++) {
+                        var readY = readOps.get(r);
+                        if (readY.getType() == Operation.Type.READ &&
+                                writeY.getKey().longValue() == readY.getKey() &&
+                                writeY.getValue().longValue() == readY.getValue()) {
+                            // find w(y, v_y) wr-> r(y, v_y)
+                            findSubTap = true;
+                            if (readY.getId() < readOp.getId()) {
+                                // find nonMonoReadCO  if read y precedes read x
+                                findTAP(TAP.NonMonoReadCO);
+                            } else {
+                                // find initReadWR
+                                findTAP(TAP.FracturedReadCO);
+                            }
+                        }
+                    }
+                }
+                if (!findSubTap) {
+                    // find initReadCO if not InitReadMono or InitReadWR
+                    findTAP(TAP.COConflictCM);
+                }
+            });
+            return;
+        }
+
+        // write wr-> read
+        int write = versionWrite[opVersion[read]];
+        if (opNode[write] != nodeId) {
+            // in different txn
+            if (internal.get(write)) {
+                // find intermediate write
+                findTAP(TAP.IntermediateRead, graph.getNode(opNode[write]));
+            }
+        } else {
+            // in same txn
+            if (ops[write].getId() > readOp.getId()) {
+                // find future read
+                findTAP(TAP.FutureRead, node);
+            }
+        }
+    }
+
+    @Override
+    protected void buildCM() {
+        var pendingNodes = new LinkedHashSet<Node<Long, Long>>();
+
+        // the generic path visits WR edges key by key, keys in the order of their first WR edge
+        var keyEdge = new int[keys.length];
+        Arrays.fill(keyEdge, NONE);
+        var nextEdge = new int[edgeCount];
+        for (int e = edgeCount - 1; e >= 0; e--) {
+            nextEdge[e] = keyEdge[edgeKey[e]];
+            keyEdge[edgeKey[e]] = e;
+        }
+
+        for (int first = 0; first < edgeCount; first++) {
+            int k = edgeKey[first];
+            if (keyEdge[k] != first) {
+                continue;
+            }
+            for (int e = first; e != NONE; e = nextEdge[e]) {
+                int t1 = pairWriter[edgePair[e]];
+                int t2 = pairReader[edgePair[e]];
+                var t2Node = graph.getNode(t2);
+                for (int i = 0; i < keyWriterCount[k]; i++) {
+                    int t = keyWriters[k][i];
+                    var tNode = graph.getNode(t);
+                    if (t != t1 && t != t2 && tNode.canReachByCO(t2Node)) {
+                        // build cm edge
+                        var t1Node = graph.getNode(t1);
+                        graph.addEdge(tNode, t1Node, Edge.Type.CM, keys[k]);
+                        CMCauses.put(new Pair<>(tNode, t1Node), t2Node);
+                        pendingNodes.add(tNode);
+                    }
+                }
+            }
+        }
+
+        // update downstream nodes
+        pendingNodes.forEach((node) -> updateVec(node, Edge.Type.CM));
+    }
+
+    @Override
+    protected void checkCMTAP() {
+        // iter wr edge (t1 wr-> t3)
+        forEachParallel(CM_TAPS, pairCount, this::checkCMTAP);
+    }
+
+    private void checkCMTAP(int pair) {
+        var t1 = graph.getNode(pairWriter[pair]);
+        var t3 = graph.getNode(pairReader[pair]);
+        for (int readX = pairHead[pair]; readX != NONE; readX = nextRead[readX]) {
+            // compared by reference, as the generic path does
+            var varX = ops[readFrom[readX]].getKey();
+            int read = readX;
+            keyIndex[opKey[readX]].forEachBetween(t1, t3,
+                    (t2) -> checkCMTAP(read, varX, t1, t2, t3, true),
+                    (t2) -> checkCMTAP(read, varX, t1, t2, t3, false));
+        }
+    }
+
+    /**
+     * Check the triangle of t1 wr-> t3 by readX and t2 co-> t3, where t1 reaches t2 by CO if co is set and only by
+     * CM otherwise.
+     */
+    private void checkCMTAP(int readX, Long varX, Node<Long, Long> t1, Node<Long, Long> t2, Node<Long, Long> t3, boolean co) {
+        if (t2 == t1 || t2 == t3) {
+            return;
+        }
+        // find tap triangle
+        boolean findSubTAP = findSOTAP(co ? TAP.FracturedReadCO : TAP.FracturedReadCM, varX, t1, t2, t3);
+        int pairY = pairIds.get(t2.getId(), t3.getId());
+        if (pairY != NONE) {
+            findSubTAP = true;
+            for (int readY = pairHead[pairY]; readY != NONE; readY = nextRead[readY]) {
+                if (co && ops[readY].getKey() == varX) {
+                    continue;
+                }
+                if (ops[readY].getId() < ops[readX].getId()) {
+                    // find NonMonoReadCO or NonMonoReadCM
+                    findTAP(co ? TAP.NonMonoReadCO : TAP.NonMonoReadCM, varX, t1, t2, t3);
+                } else {
+                    // find FracturedReadCO or FracturedReadCM
+                    findTAP(co ? TAP.FracturedReadCO : TAP.FracturedReadCM, varX, t1, t2, t3);
+                }
+            }
+        }
+        if (!findSubTAP) {
+            // find COConflictCM or ConflictCM
+            findTAP(co ? TAP.COConflictCM : TAP.ConflictCM, varX, t1, t2, t3);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void buildWriterIndex() {
+        keyIndex = new WriterIndex[keyIds.size()];
+        for (int k = 0; k < keyIndex.length; k++) {
+            var writers = new ArrayList<Node<Long, Long>>(keyWriterCount[k]);
+            for (int i = 0; i < keyWriterCount[k]; i++) {
+                writers.add(graph.getNode(keyWriters[k][i]));
+            }
+            keyIndex[k] = new WriterIndex<>(writers);
+        }
+    }
+
+    /**
+     * Report the tap once per SO edge t2 -> t3.
+     *
+     * @return true if there is such an edge
+     */
+    private boolean findSOTAP(TAP tap, Long varX, Node<Long, Long> t1, Node<Long, Long> t2, Node<Long, Long> t3) {
+        int count = graph.countEdges(t2, t3, Edge.Type.SO);
+        for (int i = 0; i < count; i++) {
+            findTAP(tap, varX, t1, t2, t3);
+        }
+        return count > 0;
+    }
+
+    private int keyId(Long key) {
+        int id = keyIds.putIfAbsent(key, 0, keyIds.size());
+        if (id != NONE) {
+            return id;
+        }
+        id = keyIds.size() - 1;
+        if (id == keys.length) {
+            int length = id * 2;
+            keys = Arrays.copyOf(keys, length);
+            keyWriters = Arrays.copyOf(keyWriters, length);
+            keyWriterCount = Arrays.copyOf(keyWriterCount, length);
+            nearestRW = Arrays.copyOf(nearestRW, length);
+            nearestRWNode = Arrays.copyOf(nearestRWNode, length);
+            writeInTxn = Arrays.copyOf(writeInTxn, length);
+            writeInTxnNode = Arrays.copyOf(writeInTxnNode, length);
+        }
+        keys[id] = key;
+        keyWriters[id] = new int[2];
+        nearestRWNode[id] = NONE;
+        writeInTxnNode[id] = NONE;
+        return id;
+    }
+
+    private int versionId(int keyId, long value) {
+        int id = versionIds.putIfAbsent(keyId, value, versionIds.size());
+        if (id != NONE) {
+            return id;
+        }
+        id = versionIds.size() - 1;
+        if (id == versionWrite.length) {
+            int length = id * 2;
+            versionWrite = Arrays.copyOf(versionWrite, length);
+            pendingHead = Arrays.copyOf(pendingHead, length);
+            pendingTail = Arrays.copyOf(pendingTail, length);
+        }
+        versionWrite[id] = NONE;
+        pendingHead[id] = NONE;
+        return id;
+    }
+
+    private int addOp(Operation<Long, Long> op, int nodeId, int keyId, int versionId) {
+        int id = opCount++;
+        if (id == ops.length) {
+            int length = id * 2;
+            ops = Arrays.copyOf(ops, length);
+            opNode = Arrays.copyOf(opNode, length);
+            opKey = Arrays.copyOf(opKey, length);
+            opVersion = Arrays.copyOf(opVersion, length);
+            nextRead = Arrays.copyOf(nextRead, length);
+            readFrom = Arrays.copyOf(readFrom, length);
+        }
+        ops[id] = op;
+        opNode[id] = nodeId;
+        opKey[id] = keyId;
+        opVersion[id] = versionId;
+        nextRead[id] = NONE;
+        return id;
+    }
+
+    private void addRead(int read) {
+        if (readCount == reads.length) {
+            reads = Arrays.copyOf(reads, readCount * 2);
+        }
+        reads[readCount++] = read;
+    }
+
+    private void addWriter(int keyId, int nodeId) {
+        int count = keyWriterCount[keyId];
+        // all writes of a transaction are added by the same buildCO call
+        if (count > 0 && keyWriters[keyId][count - 1] == nodeId) {
+            return;
+        }
+        if (count == keyWriters[keyId].length) {
+            keyWriters[keyId] = Arrays.copyOf(keyWriters[keyId], count * 2);
+        }
+        keyWriters[keyId][count] = nodeId;
+        keyWriterCount[keyId]++;
+    }
+
+    private void addWR(int write, int read) {
+        int writer = opNode[write];
+        int reader = opNode[read];
+        int pair = pairIds.putIfAbsent(writer, reader, pairCount);
+        if (pair == NONE) {
+            pair = pairCount++;
+            if (pair == pairWriter.length) {
+                int length = pair * 2;
+                pairWriter = Arrays.copyOf(pairWriter, length);
+                pairReader = Arrays.copyOf(pairReader, length);
+                pairHead = Arrays.copyOf(pairHead, length);
+                pairTail = Arrays.copyOf(pairTail, length);
+            }
+            pairWriter[pair] = writer;
+            pairReader[pair] = reader;
+            pairHead[pair] = read;
+        } else {
+            nextRead[pairTail[pair]] = read;
+        }
+        pairTail[pair] = read;
+        nextRead[read] = NONE;
+        readFrom[read] = write;
+
+        int keyId = opKey[read];
+        if (pairKeys.putIfAbsent(pair, keyId, 0) == NONE) {
+            graph.addEdge(graph.getNode(writer), graph.getNode(reader), Edge.Type.WR, ops[write].getKey());
+            if (edgeCount == edgePair.length) {
+                edgePair = Arrays.copyOf(edgePair, edgeCount * 2);
+                edgeKey = Arrays.copyOf(edgeKey, edgeCount * 2);
+            }
+            edgePair[edgeCount] = pair;
+            edgeKey[edgeCount] = keyId;
+            edgeCount++;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package checker.C4;
+
+import checker.C4.graph.Edge;
+import checker.C4.graph.Node;
+import checker.C4.taps.TAP;
+import checker.IsolationLevel;
+import config.Config;
+import history.History;
+import history.Operation;
+import history.Transaction;
+import javafx.util.Pair;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import util.Profiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * C4 fed with committed transactions while the workload is still running.
+ *
+ * Database clients {@link #submit} their committed transactions through a lock-free queue, and one worker thread
+ * adds them to the CO graph in arrival order, which keeps the order of each session. TAPs that can be decided when a
+ * transaction is added (the ones inside a transaction, and CyclicCO) are logged at once; the verdict on the whole
+ * history is given by {@link #finish()} after the workload ends.
+ *
+ * With a window of n, the checker looks for transactions to retire every n added transactions, so the checker state
+ * of a long run stays bounded. A transaction is stable once it is CO-before the last transaction of every session and
+ * none of its reads waits for a write: every later transaction is CO-after it, so its reads are checked at once. A
+ * stable transaction retires when
+ * <ul>
+ *     <li>every version it writes is overwritten by a stable transaction CO-after it, and all reads of the version
+ *     are checked;</li>
+ *     <li>no unchecked read of the initial value of a key it writes is left;</li>
+ *     <li>the writers of its keys CO-before it retire with it.</li>
+ * </ul>
+ * A later read of a retired version has no write left and is reported as ThinAirRead, and a later read of the initial
+ * value of a key with a retired writer as COConflictCM. Both read an overwritten version, which causal consistency
+ * prohibits, so windows are only used for it. CM edges only come from the transactions in the graph when reads are
+ * checked.
+ */
+@Slf4j
+public class C4Online<VarType, ValType> extends C4<VarType, ValType> {
+    public static final String NAME = "C4-online";
+    private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+    public static final String RETIRED_STAGE = "Retired transactions";
+    public static final String MAX_LIVE_STAGE = "Max live transactions";
+    // entries of the profile info that are counts rather than times
+    public static final Set<String> COUNT_STAGES = Set.of(RETIRED_STAGE, MAX_LIVE_STAGE);
+
+    private final ConcurrentLinkedQueue<Transaction<VarType, ValType>> queue = new ConcurrentLinkedQueue<>();
+    private final boolean abortOnViolation;
+    // retire transactions every window added ones, 0 to keep all of them
+    private final int window;
+    // TAPs found while the workload runs, only accessed by the worker
+    private final Set<TAP> liveTaps = new HashSet<>();
+    private volatile boolean violated = false;
+    private volatile boolean closed = false;
+    private volatile Throwable failure;
+    private Thread worker;
+    // the transaction being added by the worker, null once the workload ends
+    private Transaction<VarType, ValType> current;
+
+    // stable transactions whose reads are checked
+    private final Set<Node<VarType, ValType>> checked = new HashSet<>();
+    // keys written by a retired transaction
+    private final Set<VarType> retiredWriteKeys = new HashSet<>();
+    private int addedSinceRetire = 0;
+    private long retiredCount = 0;
+    private long maxLiveCount = 0;
+
+    public C4Online(Properties config) {
+        super(config);
+        abortOnViolation = Boolean.parseBoolean(config.getProperty(Config.CHECKER_ONLINE_ABORT));
+        int window = Integer.parseInt(config.getProperty(Config.CHECKER_ONLINE_WINDOW, "0"));
+        if (window > 0 && ISOLATION_LEVEL != IsolationLevel.CAUSAL_CONSISTENCY) {
+            log.warn("Online window is only supported for {}, keep all transactions", IsolationLevel.CAUSAL_CONSISTENCY);
+            window = 0;
+        }
+        this.window = window;
+    }
+
+    /**
+     * Start the worker. Must be called before any transaction is submitted, and followed by {@link #finish()} or
+     * {@link #stop()}.
+     */
+    public void start() {
+        history = new History<>();
+        worker = new Thread(this::consume, "c4-online");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Add a committed transaction. Transactions of a session must be submitted in session order, by one thread.
+     */
+    public void submit(Transaction<VarType, ValType> txn) {
+        queue.offer(txn);
+    }
+
+    /**
+     * Add the writes of a transaction that failed for good as aborted writes, so that a read of one of them is an
+     * AbortedRead rather than a ThinAirRead. Reads without a write are only classified by {@link #finish()}.
+     */
+    public void submitAborted(Transaction<VarType, ValType> txn) {
+        synchronized (history) {
+            for (var op : txn.getOps()) {
+                if (op.getType() == Operation.Type.WRITE) {
+                    history.addAbortedWrite(op.getKey(), op.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the worker without checking the history, if the workload fails before {@link #finish()}.
+     */
+    public void stop() {
+        queue.clear();
+        closed = true;
+    }
+
+    /**
+     * @return true if a prohibited TAP was found and the workload should stop
+     */
+    public boolean shouldAbort() {
+        return abortOnViolation && violated;
+    }
+
+    /**
+     * Wait for the submitted transactions to be added, then check the TAPs of the whole history.
+     *
+     * @return true if the submitted transactions are valid, false otherwise
+     */
+    @SneakyThrows
+    public boolean finish() {
+        closed = true;
+        worker.join();
+        if (failure != null) {
+            throw new RuntimeException("Online checker failed", failure);
+        }
+        return checkTAPs();
+    }
+
+    private void consume() {
+        // the profiler of this thread, not that of the thread which created the checker and may be timing another
+        // checker with the same tags
+        var profiler = Profiler.getInstance();
+        profiler.startTick(constructionTag);
+        try {
+            while (true) {
+                var txn = queue.poll();
+                if (txn != null) {
+                    add(txn);
+                } else if (closed) {
+                    // submissions happen before closing, so an empty queue after closing stays empty
+                    if (queue.isEmpty()) {
+                        break;
+                    }
+                } else {
+                    LockSupport.parkNanos(POLL_INTERVAL);
+                }
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            current = null;
+            constructionTime = profiler.endTick(constructionTag);
+        }
+    }
+
+    private void add(Transaction<VarType, ValType> txn) {
+        current = txn;
+        dim = Math.max(dim, Math.toIntExact(txn.getSession().getId() + 1));
+
+        // earlier reads waiting for the writes of this transaction become WR edges going out of it, the only
+        // edges that can close a CO cycle
+        var pendingReads = new ArrayList<Operation<VarType, ValType>>();
+        for (var op : txn.getOps()) {
+            if (op.getType() == Operation.Type.WRITE) {
+                var reads = readsWithoutWrites.get(new Pair<>(op.getKey(), op.getValue()));
+                if (reads != null) {
+                    pendingReads.addAll(reads);
+                }
+            }
+        }
+
+        buildCO(txn);
+
+        var node = prevNodes.get(txn.getSession().getId());
+        for (var read : pendingReads) {
+            var readNode = op2node.get(read);
+            if (!readNode.equals(node) && readNode.canReachByCO(node)) {
+                report(TAP.CyclicCO);
+            }
+        }
+
+        if (window > 0) {
+            for (var op : txn.getOps()) {
+                if (op.getType() == Operation.Type.READ && op.getValue().equals(ZERO) && retiredWriteKeys.contains(op.getKey())) {
+                    // the retired writer is CO-before this transaction
+                    findTAP(TAP.COConflictCM);
+                }
+            }
+            maxLiveCount = Math.max(maxLiveCount, graph.size());
+            if (++addedSinceRetire >= window) {
+                addedSinceRetire = 0;
+                retire();
+            }
+        }
+    }
+
+    /**
+     * Check the reads of the transactions that became stable, then evict the ones that can retire.
+     */
+    private void retire() {
+        var frontier = new HashSet<>(prevNodes.values());
+        var waiting = new HashSet<Node<VarType, ValType>>();
+        readsWithoutWrites.values().forEach(reads -> reads.forEach(read -> waiting.add(op2node.get(read))));
+
+        // every later transaction is CO-after a stable one, so nothing can change what a stable transaction reads
+        var stable = new HashSet<Node<VarType, ValType>>();
+        for (var node : graph.getNodes()) {
+            if (!waiting.contains(node) && frontier.stream().allMatch(node::canReachByCO)) {
+                stable.add(node);
+            }
+        }
+
+        var newlyChecked = new HashSet<>(stable);
+        newlyChecked.removeAll(checked);
+        checkReads(newlyChecked);
+        checked.addAll(newlyChecked);
+
+        var retiring = new HashSet<>(checked);
+        retiring.removeAll(frontier);
+        while (retiring.removeIf(node -> !canRetire(node, stable, retiring))) {
+            // a transaction that stays may keep the later writers of its keys
+        }
+        if (!retiring.isEmpty()) {
+            evict(retiring);
+        }
+    }
+
+    /**
+     * Check the TAPs of the reads of stable transactions, and drop the reads so that they are not checked again.
+     */
+    private void checkReads(Set<Node<VarType, ValType>> nodes) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        for (var node : nodes) {
+            for (var op : node.getTransaction().getOps()) {
+                if (op.getType() == Operation.Type.READ) {
+                    checkCOTAP(op);
+                    var version = new Pair<>(op.getKey(), op.getValue());
+                    var versionReads = reads.get(version);
+                    versionReads.remove(op);
+                    if (versionReads.isEmpty()) {
+                        reads.remove(version);
+                    }
+                }
+            }
+        }
+
+        syncClock();
+        buildCM();
+        if (hasCircle(Edge.Type.CM)) {
+            WRNodesToOp.forEach((WRNodePair, WROpPairList) -> {
+                if (nodes.contains(WRNodePair.getValue())) {
+                    checkCMTAP(WRNodePair.getKey(), WRNodePair.getValue(), WROpPairList);
+                }
+            });
+        }
+        renderWitnesses();
+        graph.removeEdges(Edge.Type.CM);
+        CMCauses.clear();
+        WRNodesToOp.keySet().removeIf(pair -> nodes.contains(pair.getValue()));
+    }
+
+    private boolean canRetire(Node<VarType, ValType> node, Set<Node<VarType, ValType>> stable, Set<Node<VarType, ValType>> retiring) {
+        for (var op : node.getTransaction().getOps()) {
+            if (op.getType() != Operation.Type.WRITE || op.getValue().equals(ZERO)) {
+                continue;
+            }
+            var writers = writeNodes.get(op.getKey());
+            var version = new Pair<>(op.getKey(), op.getValue());
+            if (writes.get(version) == op) {
+                // the version is overwritten, and every read of it is checked
+                if (writers.stream().noneMatch(writer -> !writer.equals(node) && stable.contains(writer) && node.canReachByCO(writer))) {
+                    return false;
+                }
+                if (reads.containsKey(version)) {
+                    return false;
+                }
+            }
+            // a read of the initial value that is not checked yet may still find this write CO-before it
+            if (reads.containsKey(new Pair<>(op.getKey(), ZERO))) {
+                return false;
+            }
+            // a later read of an earlier version of the key needs this write to find the TAP
+            if (!writers.stream().allMatch(writer -> writer.equals(node) || retiring.contains(writer) || !writer.canReachByCO(node))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void evict(Set<Node<VarType, ValType>> retiring) {
+        // a WR edge is checked for CyclicCO once, here or at the end
+        WREdges.values().removeIf(edges -> {
+            edges.removeIf(edge -> {
+                var t1 = edge.getKey();
+                var t2 = edge.getValue();
+                if (!retiring.contains(t1) && !retiring.contains(t2)) {
+                    return false;
+                }
+                if (t1.canReachByCO(t2) && t2.canReachByCO(t1)) {
+                    findTAP(TAP.CyclicCO);
+                }
+                return true;
+            });
+            return edges.isEmpty();
+        });
+        WRNodesToOp.keySet().removeIf(pair -> retiring.contains(pair.getKey()) || retiring.contains(pair.getValue()));
+
+        for (var node : retiring) {
+            for (var op : node.getTransaction().getOps()) {
+                if (op.getType() == Operation.Type.WRITE && !op.getValue().equals(ZERO)) {
+                    var version = new Pair<>(op.getKey(), op.getValue());
+                    if (writes.get(version) == op) {
+                        writes.remove(version);
+                    }
+                    var writers = writeNodes.get(op.getKey());
+                    writers.remove(node);
+                    if (writers.isEmpty()) {
+                        writeNodes.remove(op.getKey());
+                    }
+                    retiredWriteKeys.add(op.getKey());
+                }
+                op2node.remove(op);
+                internalWrites.remove(op);
+            }
+        }
+        renderWitnesses();
+        graph.removeVertices(retiring);
+        checked.removeAll(retiring);
+        retiredCount += retiring.size();
+    }
+
+    /**
+     * @return the profile info of C4, with the number of retired transactions and the largest number of transactions
+     *         kept at once if there is a window
+     */
+    @Override
+    public Map<String, Long> getProfileInfo() {
+        var info = new HashMap<>(super.getProfileInfo());
+        if (window > 0) {
+            info.put(RETIRED_STAGE, retiredCount);
+            info.put(MAX_LIVE_STAGE, maxLiveCount);
+        }
+        return info;
+    }
+
+    /**
+     * Keep scanning the writers: a retired transaction leaves a gap in the SO edges of its session, so clocks need not
+     * grow along the session as the writer index assumes.
+     */
+    @Override
+    protected void buildWriterIndex() {
+    }
+
+    @Override
+    protected void recordTAP(TAP tap) {
+        super.recordTAP(tap);
+        if (current != null) {
+            report(tap);
+        }
+    }
+
+    private void report(TAP tap) {
+        if (!PROHIBITED_TAPS.get(ISOLATION_LEVEL).contains(tap)) {
+            return;
+        }
+        violated = true;
+        if (liveTaps.add(tap)) {
+            log.warn("Find {} ({}) online at transaction {} of session {}",
+                    tap, tap.getCode(), current.getId(), current.getSession().getId());
+        }
+    }
+}
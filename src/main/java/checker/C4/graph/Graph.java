@@ -1,37 +1,247 @@
 package checker.C4.graph;
 
-import javafx.util.Pair;
-import lombok.Data;
-
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-@Data
+/**
+ * Graph over int node ids, numbered by {@link #addVertex}.
+ *
+ * New edges are appended to a growable row of their source node. {@link #freeze()} packs all edges into
+ * compressed sparse rows (CSR) for traversal; edges added afterwards are appended to rows again until the next
+ * freeze. A node lists its destination once per edge, in insertion order. The label of an edge packs its type and
+ * the id of its variable into one int.
+ */
 public class Graph<VarType, ValType> {
-    private final Map<Node<VarType, ValType>, List<Node<VarType, ValType>>> adjMap = new HashMap<>();
+    private static final int TYPE_BITS = 2;
+    private static final Edge.Type[] TYPES = Edge.Type.values();
+
+    // node id -> node, null once removed
+    private final List<Node<VarType, ValType>> nodes = new ArrayList<>();
+    private int size = 0;
+
+    // frozen edges of the first frozenCount nodes
+    private int frozenCount = 0;
+    private int[] offsets = {0};
+    private int[] targets = new int[0];
+    private int[] labels = new int[0];
 
-    private final Map<Pair<Node<VarType, ValType>, Node<VarType, ValType>>, List<Edge<VarType>>> edges = new HashMap<>();
+    // edges added since the last freeze, as (target, label) pairs
+    private int[][] rows = new int[16][];
+    private int[] rowSizes = new int[16];
+
+    // variable id -> variable, the id 0 is no variable
+    private final List<VarType> variables = new ArrayList<>();
+    private final Map<VarType, Integer> variableIds = new HashMap<>();
+
+    public Graph() {
+        variables.add(null);
+    }
 
     public void addVertex(Node<VarType, ValType> node) {
-        adjMap.put(node, new LinkedList<>());
+        int id = nodes.size();
+        node.setId(id);
+        nodes.add(node);
+        size++;
+        if (id == rows.length) {
+            rows = Arrays.copyOf(rows, id * 2);
+            rowSizes = Arrays.copyOf(rowSizes, id * 2);
+        }
     }
 
-    public void addEdge(Node<VarType, ValType> src, Node<VarType, ValType> dest, Edge<VarType> edge){
-        var destSet = adjMap.get(src);
-        if (destSet == null) {
+    public void addEdge(Node<VarType, ValType> src, Node<VarType, ValType> dest, Edge.Type type, VarType variable) {
+        int from = src.getId();
+        if (from < 0 || nodes.get(from) != src) {
             throw new RuntimeException();
         }
-        destSet.add(dest);
-        edges.computeIfAbsent(new Pair<>(src, dest), k -> new LinkedList<>()).add(edge);
+        int variableId = 0;
+        if (variable != null) {
+            variableId = variableIds.computeIfAbsent(variable, v -> {
+                variables.add(v);
+                return variables.size() - 1;
+            });
+        }
+        append(from, dest.getId(), variableId << TYPE_BITS | type.ordinal());
+    }
+
+    private void append(int from, int to, int label) {
+        var row = rows[from];
+        int rowSize = rowSizes[from];
+        if (row == null) {
+            row = rows[from] = new int[4];
+        } else if (rowSize == row.length) {
+            row = rows[from] = Arrays.copyOf(row, rowSize * 2);
+        }
+        row[rowSize] = to;
+        row[rowSize + 1] = label;
+        rowSizes[from] = rowSize + 2;
     }
 
-    public List<Node<VarType, ValType>> get(Node<VarType, ValType> node) {
-        return adjMap.get(node);
+    /**
+     * Pack all edges into CSR.
+     */
+    public void freeze() {
+        rebuild(null);
     }
 
+    /**
+     * Remove the nodes and all edges from or to them.
+     */
+    public void removeVertices(Set<Node<VarType, ValType>> removed) {
+        for (var node : removed) {
+            if (nodes.get(node.getId()) == node) {
+                nodes.set(node.getId(), null);
+                node.release();
+                size--;
+            }
+        }
+        rebuild(null);
+    }
+
+    /**
+     * Remove all edges of the type.
+     */
+    public void removeEdges(Edge.Type type) {
+        rebuild(type);
+    }
+
+    private void rebuild(Edge.Type removedType) {
+        int count = nodes.size();
+        var newOffsets = new int[count + 1];
+        for (int id = 0; id < count; id++) {
+            int degree = 0;
+            if (nodes.get(id) != null) {
+                int n = outDegree(id);
+                for (int i = 0; i < n; i++) {
+                    if (keep(successor(id, i), label(id, i), removedType)) {
+                        degree++;
+                    }
+                }
+            }
+            newOffsets[id + 1] = newOffsets[id] + degree;
+        }
+        var newTargets = new int[newOffsets[count]];
+        var newLabels = new int[newOffsets[count]];
+        for (int id = 0; id < count; id++) {
+            int next = newOffsets[id];
+            int n = nodes.get(id) == null ? 0 : outDegree(id);
+            for (int i = 0; i < n; i++) {
+                int target = successor(id, i);
+                int label = label(id, i);
+                if (keep(target, label, removedType)) {
+                    newTargets[next] = target;
+                    newLabels[next] = label;
+                    next++;
+                }
+            }
+            rows[id] = null;
+            rowSizes[id] = 0;
+        }
+        frozenCount = count;
+        offsets = newOffsets;
+        targets = newTargets;
+        labels = newLabels;
+    }
+
+    private boolean keep(int target, int label, Edge.Type removedType) {
+        return nodes.get(target) != null && type(label) != removedType;
+    }
+
+    public Node<VarType, ValType> getNode(int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * @return the nodes that are not removed, in the order they were added
+     */
+    public List<Node<VarType, ValType>> getNodes() {
+        var result = new ArrayList<Node<VarType, ValType>>(size);
+        for (var node : nodes) {
+            if (node != null) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return one more than the largest node id
+     */
+    public int idLimit() {
+        return nodes.size();
+    }
+
+    /**
+     * @return the number of nodes that are not removed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of edges from the node
+     */
+    public int outDegree(int id) {
+        int frozen = id < frozenCount ? offsets[id + 1] - offsets[id] : 0;
+        return frozen + (rowSizes[id] >> 1);
+    }
+
+    /**
+     * @return the destination of the i-th edge from the node
+     */
+    public int successor(int id, int i) {
+        int frozen = id < frozenCount ? offsets[id + 1] - offsets[id] : 0;
+        return i < frozen ? targets[offsets[id] + i] : rows[id][(i - frozen) << 1];
+    }
+
+    /**
+     * @return the label of the i-th edge from the node
+     */
+    public int label(int id, int i) {
+        int frozen = id < frozenCount ? offsets[id + 1] - offsets[id] : 0;
+        return i < frozen ? labels[offsets[id] + i] : rows[id][((i - frozen) << 1) + 1];
+    }
+
+    public static Edge.Type type(int label) {
+        return TYPES[label & ((1 << TYPE_BITS) - 1)];
+    }
+
+    public VarType variable(int label) {
+        return variables.get(label >>> TYPE_BITS);
+    }
+
+    /**
+     * @return the number of edges of the type from src to dest
+     */
+    public int countEdges(Node<VarType, ValType> src, Node<VarType, ValType> dest, Edge.Type type) {
+        int from = src.getId();
+        int to = dest.getId();
+        int count = 0;
+        int n = outDegree(from);
+        for (int i = 0; i < n; i++) {
+            if (successor(from, i) == to && type(label(from, i)) == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the edges from src to dest, in the order they were added
+     */
     public List<Edge<VarType>> getEdge(Node<VarType, ValType> src, Node<VarType, ValType> dest) {
-        return edges.get(new Pair<>(src, dest));
+        int from = src.getId();
+        int to = dest.getId();
+        var edges = new ArrayList<Edge<VarType>>();
+        int n = outDegree(from);
+        for (int i = 0; i < n; i++) {
+            if (successor(from, i) == to) {
+                edges.add(new Edge<>(type(label(from, i)), variable(label(from, i))));
+            }
+        }
+        return edges;
     }
 }
@@ -15,6 +15,9 @@ public abstract class Node<VarType, ValType> {
     @ToString.Include
     private final Transaction<VarType, ValType> transaction;
 
+    // id in the graph, set by Graph.addVertex
+    private int id = -1;
+
     public abstract boolean canReachByCO(Node<VarType, ValType> other);
 
     public abstract boolean canReachByCM(Node<VarType, ValType> other);
@@ -25,4 +28,20 @@ public abstract class Node<VarType, ValType> {
 
     public abstract void syncCOCM();
 
+    /**
+     * @return the entry of the session in the CO clock of the node
+     */
+    public abstract int getCOClock(short tid);
+
+    /**
+     * @return the entry of the session in the CM clock of the node
+     */
+    public abstract int getCMClock(short tid);
+
+    /**
+     * Free the storage of the node once it is removed from the graph.
+     */
+    public void release() {
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package checker.C4.graph;
+
+import checker.C4.util.SparseClock;
+import history.Transaction;
+
+/**
+ * Node with sparse vector clocks, whose size is the number of sessions that reach the transaction instead of the
+ * number of all sessions.
+ */
+public class SparseClockNode<VarType, ValType> extends Node<VarType, ValType> {
+    private final SparseClock clock;
+    private SparseClock clockCM;
+
+    public SparseClockNode(Graph<VarType, ValType> graph, Transaction<VarType, ValType> transaction, short tid, Node<VarType, ValType> prev) {
+        super(graph, transaction);
+        this.clock = new SparseClock(tid);
+        if (prev != null) {
+            this.clock.join(((SparseClockNode<VarType, ValType>) prev).clock);
+        }
+        this.clock.incrementBy(1);
+    }
+
+    @Override
+    public boolean canReachByCO(Node<VarType, ValType> other) {
+        if (!(other instanceof SparseClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        return clock.isLessThanOrEqual(((SparseClockNode<VarType, ValType>) other).clock);
+    }
+
+    @Override
+    public boolean canReachByCM(Node<VarType, ValType> other) {
+        if (!(other instanceof SparseClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        return clockCM.isLessThanOrEqual(((SparseClockNode<VarType, ValType>) other).clockCM);
+    }
+
+    @Override
+    public void updateCOReachability(Node<VarType, ValType> other) {
+        if (!(other instanceof SparseClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        clock.join(((SparseClockNode<VarType, ValType>) other).clock);
+    }
+
+    @Override
+    public void updateCMReachability(Node<VarType, ValType> other) {
+        if (!(other instanceof SparseClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        clockCM.join(((SparseClockNode<VarType, ValType>) other).clockCM);
+    }
+
+    @Override
+    public void syncCOCM() {
+        if (clockCM == null) {
+            clockCM = new SparseClock(clock);
+        } else {
+            clockCM.copy(clock);
+        }
+    }
+
+    @Override
+    public int getCOClock(short tid) {
+        return clock.getLocalClock(tid);
+    }
+
+    @Override
+    public int getCMClock(short tid) {
+        return clockCM.getLocalClock(tid);
+    }
+}
@@ -1,19 +1,22 @@
 package checker.C4.graph;
 
 import history.Transaction;
-import checker.C4.util.TreeClock;
+import checker.C4.util.TreeClockArena;
 
 public class TCNode<VarType, ValType> extends Node<VarType, ValType>{
-    private final TreeClock clock;
-    private TreeClock clockCM;
+    private final TreeClockArena clocks;
+    // indices of the CO and CM clocks in the arena
+    private final int clock;
+    private int clockCM = -1;
 
-    public TCNode(Graph<VarType, ValType> graph, Transaction<VarType, ValType> transaction, short tid, int dim, Node<VarType, ValType> prev) {
+    public TCNode(Graph<VarType, ValType> graph, TreeClockArena clocks, Transaction<VarType, ValType> transaction, short tid, Node<VarType, ValType> prev) {
         super(graph, transaction);
-        this.clock = new TreeClock(tid, dim);
+        this.clocks = clocks;
+        this.clock = clocks.allocate(tid);
         if (prev != null) {
-            this.clock.join(((TCNode<VarType, ValType>) prev).clock);
+            clocks.join(clock, ((TCNode<VarType, ValType>) prev).clock);
         }
-        this.clock.incrementBy(1);
+        clocks.incrementBy(clock, 1);
     }
 
     @Override
@@ -21,7 +24,7 @@ public class TCNode<VarType, ValType> extends Node<VarType, ValType>{
         if (!(other instanceof TCNode)) {
             throw new RuntimeException("Type mismatch");
         }
-        return this.clock.isLessThanOrEqual(((TCNode<VarType, ValType>) other).clock);
+        return clocks.isLessThanOrEqual(clock, ((TCNode<VarType, ValType>) other).clock);
     }
 
     @Override
@@ -29,7 +32,7 @@ public class TCNode<VarType, ValType> extends Node<VarType, ValType>{
         if (!(other instanceof TCNode)) {
             throw new RuntimeException("Type mismatch");
         }
-        return this.clockCM.isLessThanOrEqual(((TCNode<VarType, ValType>) other).clockCM);
+        return clocks.isLessThanOrEqual(clockCM, ((TCNode<VarType, ValType>) other).clockCM);
     }
 
     @Override
@@ -37,7 +40,7 @@ public class TCNode<VarType, ValType> extends Node<VarType, ValType>{
         if (!(other instanceof TCNode)) {
             throw new RuntimeException("Type mismatch");
         }
-        this.clock.join(((TCNode<VarType, ValType>) other).clock);
+        clocks.join(clock, ((TCNode<VarType, ValType>) other).clock);
     }
 
     @Override
@@ -45,11 +48,33 @@ public class TCNode<VarType, ValType> extends Node<VarType, ValType>{
         if (!(other instanceof TCNode)) {
             throw new RuntimeException("Type mismatch");
         }
-        this.clockCM.join(((TCNode<VarType, ValType>) other).clockCM);
+        clocks.join(clockCM, ((TCNode<VarType, ValType>) other).clockCM);
     }
 
     @Override
     public void syncCOCM() {
-        clockCM = new TreeClock(clock);
+        if (clockCM < 0) {
+            clockCM = clocks.copyOf(clock);
+        } else {
+            clocks.copy(clockCM, clock);
+        }
+    }
+
+    @Override
+    public int getCOClock(short tid) {
+        return clocks.getLocalClock(clock, tid);
+    }
+
+    @Override
+    public int getCMClock(short tid) {
+        return clocks.getLocalClock(clockCM, tid);
+    }
+
+    @Override
+    public void release() {
+        clocks.release(clock);
+        if (clockCM >= 0) {
+            clocks.release(clockCM);
+        }
     }
 }
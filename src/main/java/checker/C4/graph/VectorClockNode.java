@@ -0,0 +1,98 @@
+package checker.C4.graph;
+
+import history.Transaction;
+
+import java.util.Arrays;
+
+/**
+ * Node with a dense vector clock, one int per session.
+ *
+ * The entry of a session is the position of the last transaction of the session that reaches this one, 0 if there
+ * is none. One int per session is a quarter of the two longs a tree clock keeps per session, but a join visits every
+ * session.
+ */
+public class VectorClockNode<VarType, ValType> extends Node<VarType, ValType> {
+    private final short tid;
+    private int[] reach;
+    private int[] reachCM;
+
+    public VectorClockNode(Graph<VarType, ValType> graph, Transaction<VarType, ValType> transaction, short tid, int dim, Node<VarType, ValType> prev) {
+        super(graph, transaction);
+        this.tid = tid;
+        this.reach = new int[Math.max(dim, tid + 1)];
+        if (prev != null) {
+            join(((VectorClockNode<VarType, ValType>) prev).reach, false);
+        }
+        this.reach[tid]++;
+    }
+
+    @Override
+    public boolean canReachByCO(Node<VarType, ValType> other) {
+        if (!(other instanceof VectorClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        var otherReach = ((VectorClockNode<VarType, ValType>) other).reach;
+        return tid < otherReach.length && reach[tid] <= otherReach[tid];
+    }
+
+    @Override
+    public boolean canReachByCM(Node<VarType, ValType> other) {
+        if (!(other instanceof VectorClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        var otherReach = ((VectorClockNode<VarType, ValType>) other).reachCM;
+        return tid < otherReach.length && reachCM[tid] <= otherReach[tid];
+    }
+
+    @Override
+    public void updateCOReachability(Node<VarType, ValType> other) {
+        if (!(other instanceof VectorClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        join(((VectorClockNode<VarType, ValType>) other).reach, false);
+    }
+
+    @Override
+    public void updateCMReachability(Node<VarType, ValType> other) {
+        if (!(other instanceof VectorClockNode)) {
+            throw new RuntimeException("Type mismatch");
+        }
+        join(((VectorClockNode<VarType, ValType>) other).reachCM, true);
+    }
+
+    private void join(int[] other, boolean cm) {
+        var own = cm ? reachCM : reach;
+        if (own.length < other.length) {
+            own = Arrays.copyOf(own, other.length);
+            if (cm) {
+                reachCM = own;
+            } else {
+                reach = own;
+            }
+        }
+        for (int i = 0; i < other.length; i++) {
+            if (own[i] < other[i]) {
+                own[i] = other[i];
+            }
+        }
+    }
+
+    @Override
+    public void syncCOCM() {
+        if (reachCM == null || reachCM.length != reach.length) {
+            reachCM = reach.clone();
+        } else {
+            System.arraycopy(reach, 0, reachCM, 0, reach.length);
+        }
+    }
+
+    @Override
+    public int getCOClock(short tid) {
+        return tid < reach.length ? reach[tid] : 0;
+    }
+
+    @Override
+    public int getCMClock(short tid) {
+        return tid < reachCM.length ? reachCM[tid] : 0;
+    }
+}
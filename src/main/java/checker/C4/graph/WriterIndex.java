@@ -0,0 +1,119 @@
+package checker.C4.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * Writer nodes of one variable, grouped by session and ordered by their own clock, i.e. by SO.
+ *
+ * A writer CO-reaches a node iff its own clock is at most the entry of its session in the clock of the node, so the
+ * writers of a session that reach a node are a prefix of the group. Clocks only grow along SO, so the writers of a
+ * session that a node reaches are a suffix of the group. Both are found by a binary search per session.
+ */
+public class WriterIndex<VarType, ValType> {
+    // writers of session sessions[g] are writers[starts[g]] to writers[starts[g + 1] - 1]
+    private final short[] sessions;
+    private final int[] starts;
+    private final Node<VarType, ValType>[] writers;
+    private final int[] ownClocks;
+
+    @SuppressWarnings("unchecked")
+    public WriterIndex(Collection<Node<VarType, ValType>> nodes) {
+        writers = nodes.toArray(new Node[0]);
+        Arrays.sort(writers, Comparator.<Node<VarType, ValType>>comparingLong(node -> tid(node))
+                .thenComparingInt(node -> node.getCOClock(tid(node))));
+        ownClocks = new int[writers.length];
+        int groups = 0;
+        for (int i = 0; i < writers.length; i++) {
+            ownClocks[i] = writers[i].getCOClock(tid(writers[i]));
+            if (i == 0 || tid(writers[i]) != tid(writers[i - 1])) {
+                groups++;
+            }
+        }
+        sessions = new short[groups];
+        starts = new int[groups + 1];
+        for (int i = 0, g = 0; i < writers.length; i++) {
+            if (i == 0 || tid(writers[i]) != tid(writers[i - 1])) {
+                sessions[g] = tid(writers[i]);
+                starts[g++] = i;
+            }
+        }
+        starts[groups] = writers.length;
+    }
+
+    /**
+     * Run the action on each writer that CO-reaches the node, the node itself included.
+     */
+    public void forEachReaching(Node<VarType, ValType> node, Consumer<Node<VarType, ValType>> action) {
+        for (int g = 0; g < sessions.length; g++) {
+            int end = reachingEnd(g, node);
+            for (int i = starts[g]; i < end; i++) {
+                action.accept(writers[i]);
+            }
+        }
+    }
+
+    /**
+     * Run the actions on each writer t2 that CO-reaches t3: coAction if t1 CO-reaches t2, otherwise cmAction if t1
+     * reaches t2 by CM.
+     */
+    public void forEachBetween(Node<VarType, ValType> t1, Node<VarType, ValType> t3,
+                               Consumer<Node<VarType, ValType>> coAction, Consumer<Node<VarType, ValType>> cmAction) {
+        short t1Tid = tid(t1);
+        int t1CO = t1.getCOClock(t1Tid);
+        int t1CM = t1.getCMClock(t1Tid);
+        for (int g = 0; g < sessions.length; g++) {
+            int end = reachingEnd(g, t3);
+            int coStart = reachedStart(g, end, t1Tid, t1CO, false);
+            int cmStart = reachedStart(g, coStart, t1Tid, t1CM, true);
+            for (int i = cmStart; i < coStart; i++) {
+                cmAction.accept(writers[i]);
+            }
+            for (int i = coStart; i < end; i++) {
+                coAction.accept(writers[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the end of the writers of group g that CO-reach the node
+     */
+    private int reachingEnd(int g, Node<VarType, ValType> node) {
+        int clock = node.getCOClock(sessions[g]);
+        int low = starts[g];
+        int high = starts[g + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ownClocks[mid] <= clock) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first of the writers of group g before end whose entry of the session tid is at least clock
+     */
+    private int reachedStart(int g, int end, short tid, int clock, boolean cm) {
+        int low = starts[g];
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int entry = cm ? writers[mid].getCMClock(tid) : writers[mid].getCOClock(tid);
+            if (entry < clock) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static short tid(Node<?, ?> node) {
+        return (short) node.getTransaction().getSession().getId();
+    }
+}
@@ -0,0 +1,99 @@
+package checker.C4.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from a pair of longs to a non-negative int, with linear probing.
+ *
+ * Lookups and insertions of existing keys allocate nothing. A single long key is stored as the pair (key, 0).
+ */
+public class LongPairIntMap {
+    public static final int NONE = -1;
+
+    private long[] firsts;
+    private long[] seconds;
+    private int[] values;
+    private int size = 0;
+
+    public LongPairIntMap() {
+        this(16);
+    }
+
+    public LongPairIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        firsts = new long[capacity];
+        seconds = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NONE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the value of the key, or {@link #NONE} if there is none
+     */
+    public int get(long first, long second) {
+        int mask = values.length - 1;
+        for (int i = slot(first, second) & mask; ; i = (i + 1) & mask) {
+            if (values[i] == NONE || (firsts[i] == first && seconds[i] == second)) {
+                return values[i];
+            }
+        }
+    }
+
+    /**
+     * Map the key to the value if it has no value yet.
+     *
+     * @return the value of the key before the call, or {@link #NONE} if the value was added
+     */
+    public int putIfAbsent(long first, long second, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        int mask = values.length - 1;
+        int i = slot(first, second) & mask;
+        for (; values[i] != NONE; i = (i + 1) & mask) {
+            if (firsts[i] == first && seconds[i] == second) {
+                return values[i];
+            }
+        }
+        firsts[i] = first;
+        seconds[i] = second;
+        values[i] = value;
+        if (++size * 2 > values.length) {
+            rehash(values.length * 2);
+        }
+        return NONE;
+    }
+
+    private void rehash(int capacity) {
+        var oldFirsts = firsts;
+        var oldSeconds = seconds;
+        var oldValues = values;
+        firsts = new long[capacity];
+        seconds = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NONE);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] == NONE) {
+                continue;
+            }
+            int i = slot(oldFirsts[j], oldSeconds[j]) & mask;
+            while (values[i] != NONE) {
+                i = (i + 1) & mask;
+            }
+            firsts[i] = oldFirsts[j];
+            seconds[i] = oldSeconds[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    private static int slot(long first, long second) {
+        long h = first * 0x9E3779B97F4A7C15L + second;
+        h = (h ^ (h >>> 32)) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+}
@@ -0,0 +1,124 @@
+package checker.C4.util;
+
+import java.util.Arrays;
+
+/**
+ * Vector clock that stores only its non-zero entries, as (tid, clock) pairs sorted by tid.
+ *
+ * A join merges in place from the back, so it only allocates when the clock gains more entries than it has room for.
+ */
+public class SparseClock implements Clock<SparseClock> {
+    private final short rootTid;
+    // tid at 2 * i, clock at 2 * i + 1
+    private int[] entries;
+    private int size;
+
+    public SparseClock(short tid) {
+        this.rootTid = tid;
+        this.entries = new int[]{tid, 0, 0, 0};
+        this.size = 1;
+    }
+
+    public SparseClock(SparseClock fromClock) {
+        this.rootTid = fromClock.rootTid;
+        this.entries = Arrays.copyOf(fromClock.entries, fromClock.size * 2);
+        this.size = fromClock.size;
+    }
+
+    public void copy(SparseClock fromClock) {
+        if (entries.length < fromClock.size * 2) {
+            entries = new int[fromClock.size * 2];
+        }
+        System.arraycopy(fromClock.entries, 0, entries, 0, fromClock.size * 2);
+        size = fromClock.size;
+    }
+
+    public int getLocalClock(short tid) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midTid = entries[mid * 2];
+            if (midTid < tid) {
+                low = mid + 1;
+            } else if (midTid > tid) {
+                high = mid - 1;
+            } else {
+                return entries[mid * 2 + 1];
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean isLessThanOrEqual(SparseClock clock) {
+        return getLocalClock(rootTid) <= clock.getLocalClock(rootTid);
+    }
+
+    @Override
+    public boolean isEqual(SparseClock clock) {
+        return isLessThanOrEqual(clock) && clock.isLessThanOrEqual(this);
+    }
+
+    @Override
+    public void join(SparseClock clock) {
+        // count the entries of the union
+        int union = size;
+        for (int i = 0, j = 0; j < clock.size; ) {
+            int tid = i < size ? entries[i * 2] : Integer.MAX_VALUE;
+            int otherTid = clock.entries[j * 2];
+            if (tid < otherTid) {
+                i++;
+            } else if (tid > otherTid) {
+                union++;
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        if (entries.length < union * 2) {
+            entries = Arrays.copyOf(entries, Math.max(union * 2, entries.length * 2));
+        }
+
+        // merge from the back, so no entry is overwritten before it is read
+        int i = size - 1;
+        int j = clock.size - 1;
+        for (int k = union - 1; k >= 0; k--) {
+            int tid = i >= 0 ? entries[i * 2] : -1;
+            int otherTid = j >= 0 ? clock.entries[j * 2] : -1;
+            if (tid > otherTid) {
+                entries[k * 2] = tid;
+                entries[k * 2 + 1] = entries[i * 2 + 1];
+                i--;
+            } else if (tid < otherTid) {
+                entries[k * 2] = otherTid;
+                entries[k * 2 + 1] = clock.entries[j * 2 + 1];
+                j--;
+            } else {
+                entries[k * 2] = tid;
+                entries[k * 2 + 1] = Math.max(entries[i * 2 + 1], clock.entries[j * 2 + 1]);
+                i--;
+                j--;
+            }
+        }
+        size = union;
+    }
+
+    @Override
+    public void incrementBy(int val) {
+        for (int i = 0; i < size; i++) {
+            if (entries[i * 2] == rootTid) {
+                entries[i * 2 + 1] += val;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of non-zero entries
+     */
+    public int size() {
+        return size;
+    }
+}
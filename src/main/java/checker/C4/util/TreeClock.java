@@ -64,6 +64,7 @@ public class TreeClock implements Clock<TreeClock> {
     }
 
     public void deepCopy(TreeClock fromTreeClock) {
+        this.dim = Math.max(this.dim, fromTreeClock.dim);
         this.rootTid = fromTreeClock.rootTid;
         this.clocks = Arrays.copyOf(fromTreeClock.clocks, dim);
         this.tree = Arrays.copyOf(fromTreeClock.tree, dim);
@@ -71,7 +72,23 @@ public class TreeClock implements Clock<TreeClock> {
         this.top = -1;
     }
 
+    // clocks of threads beyond the old dim start at zero, so a clock can join one with a larger dim
+    private void ensureDim(int newDim) {
+        if (newDim <= this.dim) {
+            return;
+        }
+        this.clocks = Arrays.copyOf(this.clocks, newDim);
+        this.tree = Arrays.copyOf(this.tree, newDim);
+        this.S = Arrays.copyOf(this.S, newDim);
+        Arrays.fill(this.tree, this.dim, newDim, NeibhorsHardCodeWordTricks.NULL);
+        this.dim = newDim;
+    }
+
     private void detachFromNeighbors(short t, long node) {
+        detachFromNeighbors(this.tree, 0, t, node);
+    }
+
+    private static void detachFromNeighbors(long[] tree, int base, short t, long node) {
         short t_next = NeibhorsHardCodeWordTricks.getNext(node);
         short t_prev = NeibhorsHardCodeWordTricks.getPrevious(node);
         short t_parent = NeibhorsHardCodeWordTricks.getParent(node);
@@ -79,23 +96,27 @@ public class TreeClock implements Clock<TreeClock> {
         if (t_parent == -1) {
             return;
         }
-        long parent_node = this.tree[t_parent];
+        long parent_node = tree[base + t_parent];
 
         if(NeibhorsHardCodeWordTricks.getHeadChild(parent_node) == t) {
-            this.tree[t_parent] =  NeibhorsHardCodeWordTricks.setHeadChild(t_next, parent_node);
+            tree[base + t_parent] =  NeibhorsHardCodeWordTricks.setHeadChild(t_next, parent_node);
         }
         else if (t_prev >= 0){
-            this.tree[t_prev] = NeibhorsHardCodeWordTricks.setNext(t_next, this.tree[t_prev]);
+            tree[base + t_prev] = NeibhorsHardCodeWordTricks.setNext(t_next, tree[base + t_prev]);
         }
         if(t_next >= 0) {
-            this.tree[t_next] = NeibhorsHardCodeWordTricks.setPrevious(t_prev, this.tree[t_next]);
+            tree[base + t_next] = NeibhorsHardCodeWordTricks.setPrevious(t_prev, tree[base + t_next]);
         }
 
     }
 
     public int getLocalClock(short tid) {
-        if ( this.rootTid >= 0) {
-            return PairHardCodeWordTricks.getClock(this.clocks[tid]);
+        return getLocalClock(this.clocks, 0, this.rootTid, this.dim, tid);
+    }
+
+    public static int getLocalClock(long[] clocks, int base, short root, int dim, short tid) {
+        if (root >= 0 && tid < dim) {
+            return PairHardCodeWordTricks.getClock(clocks[base + tid]);
         }
         return 0;
     }
@@ -109,10 +130,17 @@ public class TreeClock implements Clock<TreeClock> {
     }
 
     public boolean isLessThanOrEqual(TreeClock tc) {
-        if(this.rootTid < 0) {
+        return isLessThanOrEqual(this.clocks, 0, this.rootTid, tc.clocks, 0, tc.rootTid, tc.dim);
+    }
+
+    /**
+     * Compare two clocks stored at offsets of clock arrays, see {@link #join(long[], long[], int, short, int, long[], long[], int, short, short[])}.
+     */
+    public static boolean isLessThanOrEqual(long[] clocks, int base, short root, long[] tcClocks, int tcBase, short tcRoot, int tcDim) {
+        if(root < 0) {
             return true;
         }
-        return PairHardCodeWordTricks.getClock(this.clocks[rootTid]) <= tc.getLocalClock(this.rootTid);
+        return PairHardCodeWordTricks.getClock(clocks[base + root]) <= getLocalClock(tcClocks, tcBase, tcRoot, tcDim, root);
 
     }
 
@@ -122,93 +150,124 @@ public class TreeClock implements Clock<TreeClock> {
     }
 
     public void join(TreeClock tc) {
-
         if(tc.rootTid < 0){
             return;
         }
+        this.ensureDim(tc.dim);
+        join(this.clocks, this.tree, 0, this.rootTid, this.dim, tc.clocks, tc.tree, 0, tc.rootTid, this.S);
+    }
 
-        short zprime_tid = tc.rootTid;
-        long zprime_clocks = tc.getLocalRootData();
+    /**
+     * Join the clock tc into this one, where each clock is stored at an offset of a clock array and a tree array.
+     *
+     * @param dim the dimension of this clock, not smaller than the one of tc
+     * @param S   scratch space of at least dim entries
+     */
+    public static void join(long[] clocks, long[] tree, int base, short root, int dim,
+                            long[] tcClocks, long[] tcTree, int tcBase, short tcRoot, short[] S) {
+
+        if(tcRoot < 0){
+            return;
+        }
+        int top = -1;
+
+        short zprime_tid = tcRoot;
+        long zprime_clocks = tcClocks[tcBase + zprime_tid];
         int zprime_clock = PairHardCodeWordTricks.getClock(zprime_clocks);
 
-        long z_node = this.tree[zprime_tid];
-        long z_clocks = this.clocks[zprime_tid];
+        long z_node = tree[base + zprime_tid];
+        long z_clocks = clocks[base + zprime_tid];
         int z_clock = 0;
-        if(!NeibhorsHardCodeWordTricks.isNull(z_node)) {
+        if (zprime_tid == root) {
+            // tc knows a later clock of this root, which only a cycle allows: the root keeps its place in the tree
             z_clock = PairHardCodeWordTricks.getClock(z_clocks);
             if (zprime_clock <= z_clock) {
                 return;
             }
-            else {
-                this.detachFromNeighbors(zprime_tid, z_node);
+            clocks[base + root] = PairHardCodeWordTricks.setClock(zprime_clock, z_clocks);
+        } else {
+            if(!NeibhorsHardCodeWordTricks.isNull(z_node)) {
+                z_clock = PairHardCodeWordTricks.getClock(z_clocks);
+                if (zprime_clock <= z_clock) {
+                    return;
+                }
+                else {
+                    detachFromNeighbors(tree, base, zprime_tid, z_node);
+                }
             }
-        }
 
-        z_clocks = PairHardCodeWordTricks.copyClockToPclock(this.clocks[this.rootTid], zprime_clocks);
-        long thisRootNode = this.tree[this.rootTid];
+            z_clocks = PairHardCodeWordTricks.copyClockToPclock(clocks[base + root], zprime_clocks);
+            long thisRootNode = tree[base + root];
 
 
-        short root_head_child = NeibhorsHardCodeWordTricks.T_NULL;
-        if(!NeibhorsHardCodeWordTricks.isHeadChildNull(thisRootNode)) {
-            root_head_child = NeibhorsHardCodeWordTricks.getHeadChild(thisRootNode);
-            this.tree[root_head_child] = NeibhorsHardCodeWordTricks.setPrevious(zprime_tid, this.tree[root_head_child]);
-        }
+            short root_head_child = NeibhorsHardCodeWordTricks.T_NULL;
+            if(!NeibhorsHardCodeWordTricks.isHeadChildNull(thisRootNode)) {
+                root_head_child = NeibhorsHardCodeWordTricks.getHeadChild(thisRootNode);
+                tree[base + root_head_child] = NeibhorsHardCodeWordTricks.setPrevious(zprime_tid, tree[base + root_head_child]);
+            }
 
-        z_node = NeibhorsHardCodeWordTricks.setNextAndParent(root_head_child, this.rootTid, z_node);
-        this.clocks[zprime_tid] = z_clocks;
-        this.tree[zprime_tid] = z_node;
-        this.tree[this.rootTid] = NeibhorsHardCodeWordTricks.setHeadChild(zprime_tid, thisRootNode);
+            z_node = NeibhorsHardCodeWordTricks.setNextAndParent(root_head_child, root, z_node);
+            clocks[base + zprime_tid] = z_clocks;
+            tree[base + zprime_tid] = z_node;
+            tree[base + root] = NeibhorsHardCodeWordTricks.setHeadChild(zprime_tid, thisRootNode);
+        }
 
 
-        short vprime_tid = NeibhorsHardCodeWordTricks.getHeadChild(tc.tree[zprime_tid]);
+        short vprime_tid = NeibhorsHardCodeWordTricks.getHeadChild(tcTree[tcBase + zprime_tid]);
         while(!NeibhorsHardCodeWordTricks.isTNull(vprime_tid)) {
-            long vprime_clocks = tc.clocks[vprime_tid];
-            int v_clock = this.getLocalClock(vprime_tid);
+            long vprime_clocks = tcClocks[tcBase + vprime_tid];
+            int v_clock = getLocalClock(clocks, base, root, dim, vprime_tid);
             if(v_clock < PairHardCodeWordTricks.getClock(vprime_clocks)) {
-                this.S[++this.top] = vprime_tid;
+                S[++top] = vprime_tid;
             }
             else {
                 if(PairHardCodeWordTricks.getPclock(vprime_clocks) <= z_clock) {
                     break;
                 }
             }
-            vprime_tid = NeibhorsHardCodeWordTricks.getNext(tc.tree[vprime_tid]);
+            vprime_tid = NeibhorsHardCodeWordTricks.getNext(tcTree[tcBase + vprime_tid]);
         }
 
         while(top >=0 ) {
-            short uprime_tid = this.S[this.top--];
-            long uprime_clocks = tc.clocks[uprime_tid];
-            long u_node = this.tree[uprime_tid];
-            long u_clocks = this.clocks[uprime_tid];
+            short uprime_tid = S[top--];
+            long uprime_clocks = tcClocks[tcBase + uprime_tid];
+            long u_node = tree[base + uprime_tid];
+            long u_clocks = clocks[base + uprime_tid];
             int u_clock = 0;
-            if(!NeibhorsHardCodeWordTricks.isNull(u_node)) {
+            if (uprime_tid == root) {
+                // as above, a cycle through this root only moves its clock
                 u_clock = PairHardCodeWordTricks.getClock(u_clocks);
-                this.detachFromNeighbors(uprime_tid, u_node);
-            }
-            this.clocks[uprime_tid] = uprime_clocks;
-            short y = NeibhorsHardCodeWordTricks.getParent(tc.tree[uprime_tid]);
-            long yNode = this.tree[y];
-            short head_child = NeibhorsHardCodeWordTricks.getHeadChild(yNode);
-            if(!NeibhorsHardCodeWordTricks.isHeadChildNull(yNode)) {
-                this.tree[head_child] = NeibhorsHardCodeWordTricks.setPrevious(uprime_tid, this.tree[head_child]);
+                clocks[base + root] = PairHardCodeWordTricks.setClock(PairHardCodeWordTricks.getClock(uprime_clocks), u_clocks);
+            } else {
+                if(!NeibhorsHardCodeWordTricks.isNull(u_node)) {
+                    u_clock = PairHardCodeWordTricks.getClock(u_clocks);
+                    detachFromNeighbors(tree, base, uprime_tid, u_node);
+                }
+                clocks[base + uprime_tid] = uprime_clocks;
+                short y = NeibhorsHardCodeWordTricks.getParent(tcTree[tcBase + uprime_tid]);
+                long yNode = tree[base + y];
+                short head_child = NeibhorsHardCodeWordTricks.getHeadChild(yNode);
+                if(!NeibhorsHardCodeWordTricks.isHeadChildNull(yNode)) {
+                    tree[base + head_child] = NeibhorsHardCodeWordTricks.setPrevious(uprime_tid, tree[base + head_child]);
+                }
+                u_node = NeibhorsHardCodeWordTricks.setNextAndParent(head_child, y, u_node);
+                tree[base + uprime_tid] = u_node;
+                tree[base + y] = NeibhorsHardCodeWordTricks.setHeadChild(uprime_tid, yNode);
             }
-            u_node = NeibhorsHardCodeWordTricks.setNextAndParent(head_child, y, u_node);
-            this.tree[uprime_tid] = u_node;
-            this.tree[y] = NeibhorsHardCodeWordTricks.setHeadChild(uprime_tid, yNode);
 
-            vprime_tid = NeibhorsHardCodeWordTricks.getHeadChild(tc.tree[uprime_tid]);
+            vprime_tid = NeibhorsHardCodeWordTricks.getHeadChild(tcTree[tcBase + uprime_tid]);
             while(!NeibhorsHardCodeWordTricks.isTNull(vprime_tid)) {
-                long vprime_clocks = tc.clocks[vprime_tid];
-                int v_clock = this.getLocalClock(vprime_tid);
+                long vprime_clocks = tcClocks[tcBase + vprime_tid];
+                int v_clock = getLocalClock(clocks, base, root, dim, vprime_tid);
                 if(v_clock < PairHardCodeWordTricks.getClock(vprime_clocks)) {
-                    this.S[++this.top] = vprime_tid;
+                    S[++top] = vprime_tid;
                 }
                 else {
                     if(PairHardCodeWordTricks.getPclock(vprime_clocks) <= u_clock) {
                         break;
                     }
                 }
-                vprime_tid = NeibhorsHardCodeWordTricks.getNext(tc.tree[vprime_tid]);
+                vprime_tid = NeibhorsHardCodeWordTricks.getNext(tcTree[tcBase + vprime_tid]);
             }
         }
     }
@@ -220,6 +279,7 @@ public class TreeClock implements Clock<TreeClock> {
             this.deepCopy(tc);
             return false;
         }
+        this.ensureDim(tc.dim);
 
         short zprime_tid = tc.rootTid;
         long zprime_clocks = tc.getLocalRootData();
@@ -0,0 +1,162 @@
+package checker.C4.util;
+
+import java.util.Arrays;
+
+/**
+ * Storage for the tree clocks of a C4 graph, all of the same dimension.
+ *
+ * A clock is addressed by an int index. Its clock values and tree links live at the same offset of a clock slab and
+ * a tree slab, each slab holding the clocks of many indices, so a clock costs no object or array header of its own.
+ * Joins and comparisons are the static operations of {@link TreeClock} on these offsets. The dimension can grow,
+ * which moves every clock to wider slabs, and the indices of released clocks are reused.
+ */
+public class TreeClockArena {
+    // longs per slab
+    private static final int SLAB_BITS = 20;
+
+    private int dim;
+    // log2 of the number of clocks per slab
+    private int shift;
+    private long[][] clockSlabs = new long[0][];
+    private long[][] treeSlabs = new long[0][];
+    private short[] roots = new short[16];
+    private int count = 0;
+    private int[] released = new int[16];
+    private int releasedCount = 0;
+    // scratch space of joins
+    private short[] stack;
+
+    public TreeClockArena(int dim) {
+        this.dim = Math.max(1, dim);
+        this.shift = shiftOf(this.dim);
+        this.stack = new short[this.dim];
+    }
+
+    public int getDim() {
+        return dim;
+    }
+
+    /**
+     * Widen every clock to the dimension. Clocks of the new threads start at zero.
+     */
+    public void ensureDim(int newDim) {
+        if (newDim <= dim) {
+            return;
+        }
+        int oldDim = dim;
+        int oldShift = shift;
+        var oldClockSlabs = clockSlabs;
+        var oldTreeSlabs = treeSlabs;
+
+        dim = Math.max(newDim, dim * 2);
+        shift = shiftOf(dim);
+        stack = new short[dim];
+        clockSlabs = new long[0][];
+        treeSlabs = new long[0][];
+        int mask = (1 << oldShift) - 1;
+        for (int i = 0; i < count; i++) {
+            ensureSlab(i);
+            int from = (i & mask) * oldDim;
+            System.arraycopy(oldClockSlabs[i >>> oldShift], from, clockSlabs[slab(i)], base(i), oldDim);
+            System.arraycopy(oldTreeSlabs[i >>> oldShift], from, treeSlabs[slab(i)], base(i), oldDim);
+        }
+    }
+
+    /**
+     * @return the index of a new zero clock of the thread
+     */
+    public int allocate(short root) {
+        int index;
+        if (releasedCount > 0) {
+            index = released[--releasedCount];
+        } else {
+            index = count++;
+            ensureSlab(index);
+            if (index == roots.length) {
+                roots = Arrays.copyOf(roots, index * 2);
+            }
+        }
+        roots[index] = root;
+        return index;
+    }
+
+    /**
+     * @return the index of a new copy of the clock
+     */
+    public int copyOf(int index) {
+        int copy = allocate(roots[index]);
+        copy(copy, index);
+        return copy;
+    }
+
+    public void copy(int to, int from) {
+        System.arraycopy(clockSlabs[slab(from)], base(from), clockSlabs[slab(to)], base(to), dim);
+        System.arraycopy(treeSlabs[slab(from)], base(from), treeSlabs[slab(to)], base(to), dim);
+        roots[to] = roots[from];
+    }
+
+    /**
+     * Zero the clock and reuse its index.
+     */
+    public void release(int index) {
+        Arrays.fill(clockSlabs[slab(index)], base(index), base(index) + dim, 0L);
+        Arrays.fill(treeSlabs[slab(index)], base(index), base(index) + dim, NeibhorsHardCodeWordTricks.NULL);
+        roots[index] = -1;
+        if (releasedCount == released.length) {
+            released = Arrays.copyOf(released, releasedCount * 2);
+        }
+        released[releasedCount++] = index;
+    }
+
+    public void incrementBy(int index, int val) {
+        var clocks = clockSlabs[slab(index)];
+        int i = base(index) + roots[index];
+        clocks[i] = PairHardCodeWordTricks.incrementClockBy(val, clocks[i]);
+    }
+
+    public int getLocalClock(int index, short tid) {
+        return TreeClock.getLocalClock(clockSlabs[slab(index)], base(index), roots[index], dim, tid);
+    }
+
+    public boolean isLessThanOrEqual(int index, int other) {
+        return TreeClock.isLessThanOrEqual(clockSlabs[slab(index)], base(index), roots[index],
+                clockSlabs[slab(other)], base(other), roots[other], dim);
+    }
+
+    /**
+     * Join the clock other into the clock index.
+     */
+    public void join(int index, int other) {
+        TreeClock.join(clockSlabs[slab(index)], treeSlabs[slab(index)], base(index), roots[index], dim,
+                clockSlabs[slab(other)], treeSlabs[slab(other)], base(other), roots[other], stack);
+    }
+
+    private int slab(int index) {
+        return index >>> shift;
+    }
+
+    private int base(int index) {
+        return (index & ((1 << shift) - 1)) * dim;
+    }
+
+    private void ensureSlab(int index) {
+        int s = slab(index);
+        if (s >= clockSlabs.length) {
+            clockSlabs = Arrays.copyOf(clockSlabs, Math.max(s + 1, clockSlabs.length * 2));
+            treeSlabs = Arrays.copyOf(treeSlabs, clockSlabs.length);
+        }
+        int needed = base(index) + dim;
+        var slab = clockSlabs[s];
+        if (slab == null || slab.length < needed) {
+            // the last slab grows until it is full; NULL tree links are zero, so it needs no fill
+            int length = Math.min(dim << shift, Math.max(needed, slab == null ? dim * 16 : slab.length * 2));
+            clockSlabs[s] = slab == null ? new long[length] : Arrays.copyOf(slab, length);
+            treeSlabs[s] = slab == null ? new long[length] : Arrays.copyOf(treeSlabs[s], length);
+        }
+    }
+
+    private static int shiftOf(int dim) {
+        int dimBits = 32 - Integer.numberOfLeadingZeros(dim - 1);
+        return Math.max(0, SLAB_BITS - dimBits);
+    }
+}
@@ -0,0 +1,269 @@
+package checker;
+
+import config.Config;
+import history.History;
+import history.Operation;
+import history.Transaction;
+import lombok.SneakyThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a checker on the independent parts of a history.
+ *
+ * Two transactions are in the same component if they are in the same session or access a common key.
+ * The init transaction writes every key and is left out; each component gets a copy of it restricted to the
+ * keys the component accesses. No other dependency edge crosses components, so a history satisfies an
+ * isolation level iff all its components do. Components are checked concurrently on a pool of
+ * {@link Config#CHECKER_PARALLELISM} threads, each by a new checker instance with the profiler of its thread.
+ */
+public class ComponentChecker<KeyType, ValType> implements Checker<KeyType, ValType> {
+    public static final String NAME = "Component";
+
+    private final Class<? extends Checker> checkerClass;
+    private final Properties config;
+
+    private final List<Checker<KeyType, ValType>> checkers = new ArrayList<>();
+    private final List<Boolean> results = new ArrayList<>();
+
+    public ComponentChecker(Class<? extends Checker> checkerClass, Properties config) {
+        this.checkerClass = checkerClass;
+        this.config = config;
+    }
+
+    @Override
+    @SneakyThrows
+    public boolean verify(History<KeyType, ValType> history) {
+        var components = components(history);
+        if (components.size() == 1) {
+            var checker = newChecker();
+            checkers.add(checker);
+            results.add(checker.verify(history));
+            return results.get(0);
+        }
+
+        // checkers take the profiler of the thread that creates them, so each one is created on the thread that runs
+        // it, and a thread runs one component at a time
+        int threads = Integer.parseInt(config.getProperty(Config.CHECKER_PARALLELISM, Config.DEFAULT_CHECKER_PARALLELISM));
+        threads = Math.min(components.size(), threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            var componentCheckers = new ArrayList<Checker<KeyType, ValType>>(Collections.nCopies(components.size(), null));
+            var tasks = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < components.size(); i++) {
+                int index = i;
+                tasks.add(executor.submit(() -> {
+                    var checker = newChecker();
+                    componentCheckers.set(index, checker);
+                    return checker.verify(components.get(index));
+                }));
+            }
+            for (var task : tasks) {
+                try {
+                    results.add(task.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+            checkers.addAll(componentCheckers);
+        } finally {
+            executor.shutdownNow();
+        }
+        return !results.contains(false);
+    }
+
+    /**
+     * Outputs the dot file of the first component that fails.
+     */
+    @Override
+    public void outputDotFile(String path) {
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i)) {
+                checkers.get(i).outputDotFile(path);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the profile info of all components, with the times of the same tag summed up
+     */
+    @Override
+    public Map<String, Long> getProfileInfo() {
+        var info = new HashMap<String, Long>();
+        for (var checker : checkers) {
+            var componentInfo = checker.getProfileInfo();
+            if (componentInfo != null) {
+                componentInfo.forEach((tag, time) -> info.merge(tag, time, Long::sum));
+            }
+        }
+        return info;
+    }
+
+    public int getComponentCount() {
+        return checkers.size();
+    }
+
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    private Checker<KeyType, ValType> newChecker() {
+        return checkerClass.getDeclaredConstructor(Properties.class).newInstance(config);
+    }
+
+    /**
+     * Split a history into components with union-find over sessions and keys.
+     *
+     * @param history the history to split
+     * @return a list with only the given history if it has a single component, otherwise one new history per
+     *         component, ordered by the smallest transaction it contains
+     */
+    public static <KeyType, ValType> List<History<KeyType, ValType>> components(History<KeyType, ValType> history) {
+        var interner = history.getInterner();
+        var txns = interner.getTransactions();
+        var init = initTransaction(history);
+
+        var parent = new int[txns.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        var keyOwner = new int[interner.keyCount()];
+        Arrays.fill(keyOwner, -1);
+
+        for (var session : history.getSessions().values()) {
+            var sessionTxns = session.getTransactions();
+            for (int i = 1; i < sessionTxns.size(); i++) {
+                union(parent, interner.transactionId(sessionTxns.get(i - 1)), interner.transactionId(sessionTxns.get(i)));
+            }
+        }
+        for (var txn : txns) {
+            if (txn == init) {
+                continue;
+            }
+            for (var op : txn.getOps()) {
+                if (keyOwner[interner.keyIdOf(op)] < 0) {
+                    keyOwner[interner.keyIdOf(op)] = interner.transactionId(txn);
+                } else {
+                    union(parent, keyOwner[interner.keyIdOf(op)], interner.transactionId(txn));
+                }
+            }
+        }
+
+        // number components by their first transaction
+        var componentOf = new int[txns.size()];
+        var componentOfRoot = new HashMap<Integer, Integer>();
+        for (int i = 0; i < txns.size(); i++) {
+            if (txns.get(i) != init) {
+                componentOf[i] = componentOfRoot.computeIfAbsent(find(parent, i), root -> componentOfRoot.size());
+            }
+        }
+        if (componentOfRoot.size() <= 1) {
+            return List.of(history);
+        }
+
+        var components = new ArrayList<History<KeyType, ValType>>();
+        for (int i = 0; i < componentOfRoot.size(); i++) {
+            components.add(new History<>());
+        }
+        if (init != null) {
+            var initCopies = new ArrayList<Transaction<KeyType, ValType>>();
+            for (var component : components) {
+                initCopies.add(copyTransaction(component, init));
+            }
+            // keys no other transaction accesses are dropped with their init writes
+            for (var op : init.getOps()) {
+                var owner = keyOwner[interner.keyIdOf(op)];
+                if (owner >= 0) {
+                    components.get(componentOf[owner]).addOperation(initCopies.get(componentOf[owner]),
+                            op.getType(), op.getKey(), op.getValue());
+                }
+            }
+        }
+        // interner order keeps the order of transactions inside each session
+        for (var txn : txns) {
+            if (txn == init) {
+                continue;
+            }
+            var component = components.get(componentOf[interner.transactionId(txn)]);
+            var copy = copyTransaction(component, txn);
+            for (var op : txn.getOps()) {
+                component.addOperation(copy, op.getType(), op.getKey(), op.getValue());
+            }
+        }
+        // aborted writes only matter to the component reading their key
+        for (var write : history.getAbortedWrites()) {
+            var keyId = interner.keyId(write.getKey());
+            if (keyId >= 0 && keyOwner[keyId] >= 0) {
+                components.get(componentOf[keyOwner[keyId]]).addAbortedWrite(write.getKey(), write.getValue());
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Find the init transaction, as added by {@link History#addInitSession()}: the only transaction of its
+     * session, committed, and writing every key of the history and nothing else.
+     *
+     * @return the init transaction, or null if the history has none
+     */
+    private static <KeyType, ValType> Transaction<KeyType, ValType> initTransaction(History<KeyType, ValType> history) {
+        var interner = history.getInterner();
+        for (var session : history.getSessions().values()) {
+            if (session.getTransactions().size() != 1) {
+                continue;
+            }
+            var txn = session.getTransactions().get(0);
+            if (!txn.isSuccess() || txn.getOps().size() < interner.keyCount()
+                    || txn.getOps().stream().anyMatch(op -> op.getType() != Operation.Type.WRITE)) {
+                continue;
+            }
+            var written = new BitSet(interner.keyCount());
+            txn.getOps().forEach(op -> written.set(interner.keyIdOf(op)));
+            if (written.cardinality() == interner.keyCount()) {
+                return txn;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add an empty transaction with the same session, id and status as txn to component.
+     */
+    private static <KeyType, ValType> Transaction<KeyType, ValType> copyTransaction(History<KeyType, ValType> component,
+            Transaction<KeyType, ValType> txn) {
+        var sessionId = txn.getSession().getId();
+        var session = component.getSession(sessionId);
+        if (session == null) {
+            session = component.addSession(sessionId);
+        }
+        var copy = component.addTransaction(session, txn.getId());
+        copy.setSuccess(txn.isSuccess());
+        return copy;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parent, int x, int y) {
+        x = find(parent, x);
+        y = find(parent, y);
+        if (x != y) {
+            parent[Math.max(x, y)] = Math.min(x, y);
+        }
+    }
+}
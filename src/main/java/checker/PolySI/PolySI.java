@@ -3,6 +3,7 @@ package checker.PolySI;
 import checker.Checker;
 import checker.IsolationLevel;
 import checker.PolySI.graph.KnownGraph;
+import checker.PolySI.graph.MatrixGraph;
 import checker.PolySI.verifier.Pruning;
 import checker.PolySI.verifier.SIVerifier;
 import config.Config;
@@ -38,6 +39,9 @@ public class PolySI<VarType, ValType> implements Checker<VarType, ValType> {
     public boolean verify(History<VarType, ValType> history) {
         Pruning.setEnablePruning(!noPruning);
         SIVerifier.setCoalesceConstraints(!noCoalescing);
+        MatrixGraph.setParallelism(Integer.parseInt(
+                config.getProperty(Config.CHECKER_PARALLELISM, Config.DEFAULT_CHECKER_PARALLELISM)));
+        SIVerifier.setFailFast(!config.getProperty(Config.CHECKER_STOP, Config.DEFAULT_CHECKER_STOP).equals("all"));
 
         if (config.getOrDefault(Config.HISTORY_TYPE, "text").equals("elle")) {
             history.addInitSessionElle();
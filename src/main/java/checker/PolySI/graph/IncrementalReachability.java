@@ -0,0 +1,56 @@
+package checker.PolySI.graph;
+
+import lombok.Getter;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * Reachability of a graph that only gains edges, kept closed edge by edge instead of recomputed.
+ *
+ * The closure holds the nodes each node reaches in its rows and the nodes reaching each node in its predecessor index,
+ * both reflexive. An edge u -> v that is not implied yet lets every node reaching u reach every node v reaches, so
+ * adding it ORs the row of v into the rows of the predecessors of u that lack v. The cost of an edge is the number of
+ * those predecessors plus the bits it adds.
+ */
+public class IncrementalReachability<T> {
+    @Getter
+    private final MatrixGraph<T> closure;
+
+    /**
+     * @param graph the graph whose reachability to keep
+     */
+    public IncrementalReachability(MatrixGraph<T> graph) {
+        closure = graph.reachability();
+    }
+
+    /**
+     * Add the edge u -> v to the graph and update the reachability.
+     *
+     * @return true if the edge is on a cycle
+     */
+    public boolean putEdge(T u, T v) {
+        return addEdge(closure.nodeId(u), closure.nodeId(v));
+    }
+
+    /**
+     * Add the edge i -> j to the graph by the ids of its ends in the closure and update the reachability.
+     *
+     * @return true if the edge is on a cycle
+     */
+    public boolean addEdge(int i, int j) {
+        boolean cycle = closure.hasEdge(j, i);
+        if (closure.hasEdge(i, j)) {
+            return cycle;
+        }
+
+        // on a cycle the row of j and the predecessors of i change while they are read
+        var reached = cycle ? closure.row(j).clone() : closure.row(j);
+        var reaching = cycle ? closure.column(i).clone() : closure.column(i);
+        for (var p : reaching) {
+            var row = closure.row(p);
+            if (!row.contains(j)) {
+                closure.addEdges(p, RoaringBitmap.andNot(reached, row));
+            }
+        }
+        return cycle;
+    }
+}
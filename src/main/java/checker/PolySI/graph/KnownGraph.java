@@ -5,21 +5,18 @@ import com.google.common.graph.MutableValueGraph;
 import com.google.common.graph.ValueGraphBuilder;
 import history.History;
 import history.Transaction;
-import history.loader.ElleHistoryLoader;
 import lombok.Getter;
 import lombok.Setter;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 
 import static history.Operation.Type.READ;
-import static history.Operation.Type.WRITE;
 
 @SuppressWarnings("UnstableApiUsage")
 @Getter
 public class KnownGraph<KeyType, ValueType> {
+    @Getter
     @Setter
     private static boolean isElleHistory = false;
 
@@ -55,14 +52,12 @@ public class KnownGraph<KeyType, ValueType> {
         });
 
         // add WR edges
-        var writes = new HashMap<Pair<KeyType, ValueType>, Transaction<KeyType, ValueType>>();
-        var events = history.getOperations();
-
-        events.stream().filter(e -> e.getType() == WRITE).forEach(ev -> writes
-                .put(Pair.of(ev.getKey(), ev.getValue()), ev.getTransaction()));
+        var index = history.getIndex();
+        var interner = index.getInterner();
+        var events = interner.getOperations();
 
         events.stream().filter(e -> e.getType() == READ).forEach(ev -> {
-            var writeTxn = writes.get(Pair.of(ev.getKey(), ev.getValue()));
+            var writeTxn = index.writeOf(ev).getTransaction();
             var txn = ev.getTransaction();
 
             if (writeTxn == txn) {
@@ -74,16 +69,15 @@ public class KnownGraph<KeyType, ValueType> {
 
         // add WW edges
         if (isElleHistory) {
+            var versionOrder = history.getVersionOrder();
             events.stream().filter(e -> e.getType() == READ).forEach(ev -> {
-                var elleValue = (ElleHistoryLoader.ElleValue) ev.getValue();
-                Integer preVal = null;
-                for(int i = 0; i < elleValue.getList().size(); i++) {
-                    var prevWrite = writes.get(Pair.of(ev.getKey(), new ElleHistoryLoader.ElleValue(preVal, null)));
-                    var nextWrite = writes.get(Pair.of(ev.getKey(), new ElleHistoryLoader.ElleValue(elleValue.getList().get(i), null)));
-                    if (prevWrite != null && nextWrite != null && prevWrite != nextWrite) {
-                        putEdge(prevWrite, nextWrite, new Edge<KeyType>(EdgeType.WW, ev.getKey()));
+                var prefixWrites = versionOrder.writesOf(ev);
+                for (int i = 1; i < prefixWrites.size(); i++) {
+                    var prevWrite = prefixWrites.get(i - 1);
+                    var nextWrite = prefixWrites.get(i);
+                    if (prevWrite != null && nextWrite != null && prevWrite.getTransaction() != nextWrite.getTransaction()) {
+                        putEdge(prevWrite.getTransaction(), nextWrite.getTransaction(), new Edge<KeyType>(EdgeType.WW, ev.getKey()));
                     }
-                    preVal = elleValue.getList().get(i);
                 }
             });
         }
@@ -5,18 +5,35 @@ import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.Streams;
 import com.google.common.graph.*;
 import lombok.Getter;
+import lombok.Setter;
 import org.apache.commons.lang3.tuple.Pair;
 import org.roaringbitmap.RoaringBitmap;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class MatrixGraph<T> implements MutableGraph<T> {
+    // threads of the transitive closure, all cores if 0, see Config.CHECKER_PARALLELISM
+    @Getter
+    @Setter
+    private static int parallelism = 0;
+    // nodes of a level at least to close them concurrently
+    private static final int MIN_PARALLEL_LEVEL = 8;
+    // the pool of forEachLevel, shared by all closures and replaced when the parallelism changes
+    private static ForkJoinPool levelPool;
+
     @Getter
     private final ImmutableBiMap<T, Integer> nodeMap;
+    // the node of each id
+    private final List<T> nodeList;
     private final RoaringBitmap adjacency[];
+    // the predecessors of each node, built on the first query of predecessors and kept up to date after; null before
+    private RoaringBitmap transpose[];
     // private final long adjacency[][];
     // private static final int LONG_BITS = 64;
 
@@ -31,6 +48,7 @@ public class MatrixGraph<T> implements MutableGraph<T> {
         } else {
             nodeMap = toNodeMap.apply(topoOrder.get());
         }
+        nodeList = listNodes(nodeMap);
 
         adjacency = newMatrix(nodeMap.size());
         // adjacency = new long[i][(i + LONG_BITS - 1) / LONG_BITS];
@@ -41,6 +59,7 @@ public class MatrixGraph<T> implements MutableGraph<T> {
 
     public MatrixGraph(Graph<T> graph, ImmutableBiMap<T, Integer> nodeMap) {
         this.nodeMap = nodeMap;
+        nodeList = listNodes(nodeMap);
 
         adjacency = newMatrix(nodeMap.size());
         for (var e : graph.edges()) {
@@ -49,7 +68,14 @@ public class MatrixGraph<T> implements MutableGraph<T> {
     }
 
     public static <T> MatrixGraph<T> ofNodes(MatrixGraph<T> graph) {
-        return new MatrixGraph<>(graph.nodeMap);
+        return new MatrixGraph<>(graph.nodeMap, graph.nodeList);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> listNodes(ImmutableBiMap<T, Integer> nodeMap) {
+        var nodes = new Object[nodeMap.size()];
+        nodeMap.forEach((node, id) -> nodes[id] = node);
+        return (List<T>) Arrays.asList(nodes);
     }
 
     private static RoaringBitmap[] newMatrix(int size) {
@@ -60,8 +86,9 @@ public class MatrixGraph<T> implements MutableGraph<T> {
         return m;
     }
 
-    private MatrixGraph(ImmutableBiMap<T, Integer> nodes) {
+    private MatrixGraph(ImmutableBiMap<T, Integer> nodes, List<T> nodeList) {
         nodeMap = nodes;
+        this.nodeList = nodeList;
         adjacency = newMatrix(nodes.size());
         // adjacency = new long[nodes.size()][(nodes.size() + LONG_BITS - 1) /
         // LONG_BITS];
@@ -76,56 +103,197 @@ public class MatrixGraph<T> implements MutableGraph<T> {
     // }
     // }
 
-    private MatrixGraph<T> bfsWithNoCycle(List<Integer> topoOrder) {
-        var result = new MatrixGraph<T>(nodeMap);
+    /**
+     * @return the graph of the nodes each node reaches by a path of one edge or more
+     */
+    private MatrixGraph<T> transitiveClosure() {
+        var topoOrder = topoSortId().orElse(null);
+        if (topoOrder != null) {
+            return closeAcyclic(topoOrder);
+        }
+        return closeCondensation();
+    }
 
+    /**
+     * Close an acyclic graph level by level. The level of a node is the length of the longest path from it to a sink,
+     * so the successors of a node are on lower levels, and the nodes of a level are closed concurrently.
+     */
+    private MatrixGraph<T> closeAcyclic(List<Integer> topoOrder) {
+        var heights = new int[adjacency.length];
         for (var i = topoOrder.size() - 1; i >= 0; i--) {
-            var n = topoOrder.get(i);
-
-            for (var j : successorIds(n).toArray()) {
-                assert topoOrder.indexOf(j) > i;
-                result.set(n, j);
-                result.adjacency[n].or(result.adjacency[j]);
-                // for (var k = 0; k < adjacency[0].length; k++) {
-                // result.adjacency[n][k] |= result.adjacency[j][k];
-                // }
+            int n = topoOrder.get(i);
+            for (var j : adjacency[n]) {
+                heights[n] = Math.max(heights[n], heights[j] + 1);
             }
         }
 
+        var result = new MatrixGraph<T>(nodeMap, nodeList);
+        forEachLevel(heights, n -> {
+            var row = adjacency[n].clone();
+            for (var j : adjacency[n]) {
+                row.or(result.adjacency[j]);
+            }
+            result.adjacency[n] = row;
+        });
         return result;
     }
 
-    private MatrixGraph<T> allNodesBfs() {
-        var topoOrder = topoSortId().orElse(null);
-        if (topoOrder != null) {
-            return bfsWithNoCycle(topoOrder);
+    /**
+     * Close a graph with cycles by closing the DAG of its strongly connected components. A component reaches the
+     * components after its successors and, if it has a cycle, itself.
+     */
+    private MatrixGraph<T> closeCondensation() {
+        int n = adjacency.length;
+        var successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            successors[i] = adjacency[i].toArray();
         }
 
-        var result = new MatrixGraph<>(this.nodeMap);
-        var graph = toSparseGraph();
-        for (var i = 0; i < adjacency.length; i++) {
-            var q = new ArrayDeque<Integer>();
+        // Tarjan's algorithm finds the components after the components they reach
+        var components = new int[n];
+        var order = new int[n];
+        var low = new int[n];
+        Arrays.fill(order, -1);
+        var onStack = new boolean[n];
+        var stack = new int[n];
+        var stackSize = 0;
+        var path = new int[n];
+        var next = new int[n];
+        var counter = 0;
+        var componentCount = 0;
+        for (int root = 0; root < n; root++) {
+            if (order[root] >= 0) {
+                continue;
+            }
+            var depth = 0;
+            path[0] = root;
+            order[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                var v = path[depth];
+                if (next[v] < successors[v].length) {
+                    var w = successors[v][next[v]++];
+                    if (order[w] < 0) {
+                        order[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        path[++depth] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+                if (low[v] == order[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        components[w] = componentCount;
+                    } while (w != v);
+                    componentCount++;
+                }
+                if (--depth >= 0) {
+                    low[path[depth]] = Math.min(low[path[depth]], low[v]);
+                }
+            }
+        }
 
-            q.add(i);
-            while (!q.isEmpty()) {
-                var j = q.pop();
+        var members = new RoaringBitmap[componentCount];
+        var cyclic = new boolean[componentCount];
+        var heights = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            members[c] = new RoaringBitmap();
+        }
+        for (int i = 0; i < n; i++) {
+            members[components[i]].add(i);
+        }
+        // components in the order Tarjan's algorithm found them, so successors come first
+        for (int c = 0; c < componentCount; c++) {
+            cyclic[c] = members[c].getCardinality() > 1;
+            for (var i : members[c]) {
+                for (var j : successors[i]) {
+                    if (components[j] == c) {
+                        cyclic[c] = true;
+                    } else {
+                        heights[c] = Math.max(heights[c], heights[components[j]] + 1);
+                    }
+                }
+            }
+        }
 
-                for (var k : graph.successors(j)) {
-                    if (result.get(i, k)) {
-                        continue;
+        // the nodes each component reaches, and those with its own members
+        var reached = new RoaringBitmap[componentCount];
+        var closed = new RoaringBitmap[componentCount];
+        forEachLevel(heights, c -> {
+            var row = cyclic[c] ? members[c].clone() : new RoaringBitmap();
+            for (var i : members[c]) {
+                for (var j : successors[i]) {
+                    if (components[j] != c) {
+                        row.or(closed[components[j]]);
                     }
+                }
+            }
+            reached[c] = row;
+            closed[c] = cyclic[c] ? row : RoaringBitmap.or(row, members[c]);
+        });
 
-                    result.set(i, k);
-                    q.push(k);
+        var result = new MatrixGraph<T>(nodeMap, nodeList);
+        for (int i = 0; i < n; i++) {
+            result.adjacency[i] = reached[components[i]].clone();
+        }
+        return result;
+    }
+
+    /**
+     * Run the action on each node by level, lowest first, and on the nodes of a level concurrently.
+     */
+    private static void forEachLevel(int[] levels, IntConsumer action) {
+        int levelCount = 0;
+        for (var level : levels) {
+            levelCount = Math.max(levelCount, level + 1);
+        }
+        var starts = new int[levelCount + 1];
+        for (var level : levels) {
+            starts[level + 1]++;
+        }
+        for (int l = 0; l < levelCount; l++) {
+            starts[l + 1] += starts[l];
+        }
+        var nodes = new int[levels.length];
+        var fill = Arrays.copyOf(starts, levelCount);
+        for (int i = 0; i < levels.length; i++) {
+            nodes[fill[levels[i]]++] = i;
+        }
+
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        var pool = threads > 1 ? levelPool(threads) : null;
+        for (int l = 0; l < levelCount; l++) {
+            int start = starts[l], end = starts[l + 1];
+            if (pool == null || end - start < MIN_PARALLEL_LEVEL) {
+                for (int i = start; i < end; i++) {
+                    action.accept(nodes[i]);
                 }
+            } else {
+                pool.submit(() -> IntStream.range(start, end).parallel().forEach(i -> action.accept(nodes[i])))
+                        .join();
             }
         }
+    }
 
-        return result;
+    /**
+     * @return the shared pool of the given number of threads; a replaced pool is not shut down, as a closure may still
+     *         be running on it, and its idle workers exit on their own
+     */
+    private static synchronized ForkJoinPool levelPool(int threads) {
+        if (levelPool == null || levelPool.getParallelism() != threads) {
+            levelPool = new ForkJoinPool(threads);
+        }
+        return levelPool;
     }
 
     public MatrixGraph<T> reachability() {
-        var result = allNodesBfs();
+        var result = transitiveClosure();
         for (int i = 0; i < result.nodeMap.size(); i++) {
             result.set(i, i);
         }
@@ -136,7 +304,7 @@ public class MatrixGraph<T> implements MutableGraph<T> {
     private MatrixGraph<T> matrixProduct(MatrixGraph<T> other) {
         assert nodeMap.entrySet().equals(other.nodeMap.entrySet());
 
-        var result = new MatrixGraph<>(nodeMap);
+        var result = new MatrixGraph<>(nodeMap, nodeList);
         for (var i = 0; i < adjacency.length; i++) {
             for (var j : adjacency[i]) {
                 result.adjacency[i].or(other.adjacency[j]);
@@ -153,7 +321,7 @@ public class MatrixGraph<T> implements MutableGraph<T> {
     public MatrixGraph<T> union(MatrixGraph<T> other) {
         assert nodeMap.entrySet().equals(other.nodeMap.entrySet());
 
-        var result = new MatrixGraph<>(nodeMap);
+        var result = new MatrixGraph<>(nodeMap, nodeList);
         for (var i = 0; i < adjacency.length; i++) {
             result.adjacency[i] = RoaringBitmap.or(adjacency[i], other.adjacency[i]);
             // for (var j = 0; j < adjacency[0].length; j++)
@@ -192,28 +360,13 @@ public class MatrixGraph<T> implements MutableGraph<T> {
     }
 
     public Optional<List<T>> topologicalSort() {
-        return topoSortId().map(o -> o.stream().map(n -> nodeMap.inverse().get(n)).collect(Collectors.toList()));
+        return topoSortId().map(o -> o.stream().map(nodeList::get).collect(Collectors.toList()));
     }
 
     public boolean hasLoops() {
         return topoSortId().isEmpty();
     }
 
-    private Graph<Integer> toSparseGraph() {
-        MutableGraph<Integer> graph = GraphBuilder.directed().allowsSelfLoops(true).build();
-        for (int i = 0; i < adjacency.length; i++) {
-            graph.addNode(i);
-        }
-
-        for (int i = 0; i < adjacency.length; i++) {
-            for (var j : adjacency[i]) {
-                graph.putEdge(i, j);
-            }
-        }
-
-        return graph;
-    }
-
     @Override
     public String toString() {
         var builder = new StringBuilder();
@@ -252,11 +405,10 @@ public class MatrixGraph<T> implements MutableGraph<T> {
     @Override
     public Set<EndpointPair<T>> edges() {
         var result = new HashSet<EndpointPair<T>>();
-        var map = nodeMap.inverse();
 
         for (int i = 0; i < adjacency.length; i++) {
             for (var j : adjacency[i]) {
-                result.add(EndpointPair.ordered(map.get(i), map.get(j)));
+                result.add(EndpointPair.ordered(nodeList.get(i), nodeList.get(j)));
             }
         }
 
@@ -288,15 +440,54 @@ public class MatrixGraph<T> implements MutableGraph<T> {
         throw new UnimplementedError();
     }
 
+    /**
+     * @return a live view of the predecessors of node, which follows later changes to the graph; the graph must not be
+     *         changed while the view is iterated
+     */
     @Override
     public Set<T> predecessors(T node) {
-        throw new UnimplementedError();
+        return nodeSet(predecessorIndex()[nodeMap.get(node)]);
     }
 
+    /**
+     * @return a live view of the successors of node, which follows later changes to the graph; the graph must not be
+     *         changed while the view is iterated
+     */
     @Override
     public Set<T> successors(T node) {
-        var inv = nodeMap.inverse();
-        return successorIds(nodeMap.get(node)).mapToObj(inv::get).collect(Collectors.toSet());
+        return nodeSet(adjacency[nodeMap.get(node)]);
+    }
+
+    // a view of the nodes of the ids
+    private Set<T> nodeSet(RoaringBitmap ids) {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<T> iterator() {
+                var iterator = ids.getIntIterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        return nodeList.get(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ids.getCardinality();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                var id = nodeMap.get(o);
+                return id != null && ids.contains(id);
+            }
+        };
     }
 
     @Override
@@ -306,7 +497,7 @@ public class MatrixGraph<T> implements MutableGraph<T> {
 
     @Override
     public int degree(T node) {
-        throw new UnimplementedError();
+        return inDegree(node) + outDegree(node);
     }
 
     @Override
@@ -330,6 +521,10 @@ public class MatrixGraph<T> implements MutableGraph<T> {
     }
 
     public long nonZeroElements() {
+        return edgeCount();
+    }
+
+    public long edgeCount() {
         long n = 0;
         for (int i = 0; i < adjacency.length; i++) {
             n += outDegree(i);
@@ -338,6 +533,78 @@ public class MatrixGraph<T> implements MutableGraph<T> {
         return n;
     }
 
+    public int nodeId(T node) {
+        return nodeMap.get(node);
+    }
+
+    public T node(int id) {
+        return nodeList.get(id);
+    }
+
+    public boolean hasEdge(int i, int j) {
+        return get(i, j);
+    }
+
+    /**
+     * @return true if the edge i -> j is new
+     */
+    public boolean addEdge(int i, int j) {
+        boolean hasEdge = get(i, j);
+        set(i, j);
+        return !hasEdge;
+    }
+
+    public void forEachSuccessor(int n, IntConsumer action) {
+        adjacency[n].forEach((org.roaringbitmap.IntConsumer) action::accept);
+    }
+
+    public void forEachPredecessor(int n, IntConsumer action) {
+        predecessorIndex()[n].forEach((org.roaringbitmap.IntConsumer) action::accept);
+    }
+
+    /**
+     * @return true if the predicate holds for a predecessor of node n, testing the predecessors until one does
+     */
+    public boolean anyPredecessor(int n, IntPredicate predicate) {
+        var iterator = predecessorIndex()[n].getIntIterator();
+        while (iterator.hasNext()) {
+            if (predicate.test(iterator.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the successors of node i, shared with the graph
+    RoaringBitmap row(int i) {
+        return adjacency[i];
+    }
+
+    // the predecessors of node j, shared with the graph
+    RoaringBitmap column(int j) {
+        return predecessorIndex()[j];
+    }
+
+    // add the edges from node i to the nodes in targets
+    void addEdges(int i, RoaringBitmap targets) {
+        adjacency[i].or(targets);
+        if (transpose != null) {
+            targets.forEach((org.roaringbitmap.IntConsumer) j -> transpose[j].add(i));
+        }
+    }
+
+    private RoaringBitmap[] predecessorIndex() {
+        if (transpose == null) {
+            var columns = newMatrix(adjacency.length);
+            for (int i = 0; i < adjacency.length; i++) {
+                int from = i;
+                adjacency[i].forEach((org.roaringbitmap.IntConsumer) j -> columns[j].add(from));
+            }
+            transpose = columns;
+        }
+        return transpose;
+    }
+
     private boolean get(int i, int j) {
         return adjacency[i].contains(j);
         // return (adjacency[i][j / LONG_BITS] & (1L << (j % LONG_BITS))) != 0;
@@ -345,21 +612,22 @@ public class MatrixGraph<T> implements MutableGraph<T> {
 
     private void set(int i, int j) {
         adjacency[i].add(j);
+        if (transpose != null) {
+            transpose[j].add(i);
+        }
         // adjacency[i][j / LONG_BITS] |= (1L << (j % LONG_BITS));
     }
 
     private void clear(int i, int j) {
         adjacency[i].remove(j);
+        if (transpose != null) {
+            transpose[j].remove(i);
+        }
         // adjacency[i][j / LONG_BITS] &= ~(1L << (j % LONG_BITS));
     }
 
     private int inDegree(int n) {
-        var inDegree = 0;
-        for (var i = 0; i < adjacency.length; i++) {
-            inDegree += get(i, n) ? 1 : 0;
-        }
-
-        return inDegree;
+        return predecessorIndex()[n].getCardinality();
     }
 
     private int outDegree(int n) {
@@ -380,11 +648,7 @@ public class MatrixGraph<T> implements MutableGraph<T> {
 
     @Override
     public boolean putEdge(T nodeU, T nodeV) {
-        var i = nodeMap.get(nodeU);
-        var j = nodeMap.get(nodeV);
-        boolean hasEdge = get(i, j);
-        set(i, j);
-        return !hasEdge;
+        return addEdge(nodeMap.get(nodeU), nodeMap.get(nodeV));
     }
 
     @Override
@@ -3,13 +3,13 @@ package checker.PolySI.verifier;
 
 import checker.PolySI.graph.Edge;
 import checker.PolySI.graph.EdgeType;
+import checker.PolySI.graph.IncrementalReachability;
 import checker.PolySI.graph.KnownGraph;
 import checker.PolySI.graph.MatrixGraph;
 import history.History;
 import history.Transaction;
 import lombok.Getter;
 import lombok.Setter;
-import org.apache.commons.lang3.tuple.Pair;
 import util.Profiler;
 
 import java.util.ArrayList;
@@ -36,14 +36,32 @@ public class Pruning {
 
         int rounds = 1, solvedConstraints = 0, totalConstraints = constraints.size();
         boolean hasCycle = false;
+        // built in the first round and kept up to date with the edges of the constraints solved in each round
+        MatrixGraph<Transaction<KeyType, ValueType>> graphA = null, graphB = null;
+        IncrementalReachability<Transaction<KeyType, ValueType>> reachability = null;
+        var addedEdges = new ArrayList<SIEdge<KeyType, ValueType>>();
         while (!hasCycle) {
             System.err.printf("Pruning round %d\n", rounds);
-            var result = pruneConstraintsWithPostChecking(knownGraph, constraints, history);
+            if (reachability == null) {
+                profiler.startTick("SI_PRUNE_POST_GRAPH_A_B");
+                graphA = new MatrixGraph<>(knownGraph.getKnownGraphA().asGraph());
+                graphB = new MatrixGraph<>(knownGraph.getKnownGraphB().asGraph(), graphA.getNodeMap());
+                profiler.endTick("SI_PRUNE_POST_GRAPH_A_B");
+                reachability = buildReachability(graphA, graphB, history);
+                hasCycle = reachability == null;
+            } else {
+                hasCycle = updateReachability(reachability, graphA, graphB, addedEdges);
+            }
+            if (hasCycle) {
+                break;
+            }
 
-            hasCycle = result.getRight();
-            solvedConstraints += result.getLeft();
+            addedEdges.clear();
+            var solved = pruneConstraintsWithPostChecking(knownGraph, graphA, graphB, constraints,
+                    reachability.getClosure(), addedEdges);
+            solvedConstraints += solved;
 
-            if (result.getLeft() <= stopThreshold * totalConstraints
+            if (solved <= stopThreshold * totalConstraints
                     || totalConstraints - solvedConstraints <= stopThreshold * totalConstraints) {
                 break;
             }
@@ -57,38 +75,94 @@ public class Pruning {
         return hasCycle;
     }
 
-    private static <KeyType, ValueType> Pair<Integer, Boolean> pruneConstraintsWithPostChecking(
-            KnownGraph<KeyType, ValueType> knownGraph, Collection<SIConstraint<KeyType, ValueType>> constraints,
+    /**
+     * Build the reachability of A + A;B.
+     *
+     * @return the reachability, or null if A + A;B has a cycle
+     */
+    static <KeyType, ValueType> IncrementalReachability<Transaction<KeyType, ValueType>> buildReachability(
+            MatrixGraph<Transaction<KeyType, ValueType>> graphA, MatrixGraph<Transaction<KeyType, ValueType>> graphB,
             History<KeyType, ValueType> history) {
         var profiler = Profiler.getInstance();
-
-        profiler.startTick("SI_PRUNE_POST_GRAPH_A_B");
-        var graphA = new MatrixGraph<>(knownGraph.getKnownGraphA().asGraph());
-        var graphB = new MatrixGraph<>(knownGraph.getKnownGraphB().asGraph(), graphA.getNodeMap());
-        var orderInSession = Utils.getOrderInSession(history);
-        profiler.endTick("SI_PRUNE_POST_GRAPH_A_B");
+        var index = history.getIndex();
 
         profiler.startTick("SI_PRUNE_POST_GRAPH_C");
         var graphC = graphA.composition(graphB);
         profiler.endTick("SI_PRUNE_POST_GRAPH_C");
 
-        if (graphC.hasLoops()) {
-            return Pair.of(0, true);
+        var graph = graphA.union(graphC);
+        if (graph.hasLoops()) {
+            return null;
         }
 
         profiler.startTick("SI_PRUNE_POST_REACHABILITY");
-        var reachability = Utils.reduceEdges(graphA.union(graphC), orderInSession).reachability();
+        var reachability = new IncrementalReachability<>(Utils.reduceEdges(graph, index));
+        printSparsity(reachability.getClosure());
+        profiler.endTick("SI_PRUNE_POST_REACHABILITY");
+        return reachability;
+    }
+
+    /**
+     * Add the edges of A + A;B that come with the added WW and RW edges, which are in graphA and graphB already.
+     *
+     * @return true if an edge closes a cycle
+     */
+    static <KeyType, ValueType> boolean updateReachability(
+            IncrementalReachability<Transaction<KeyType, ValueType>> reachability,
+            MatrixGraph<Transaction<KeyType, ValueType>> graphA, MatrixGraph<Transaction<KeyType, ValueType>> graphB,
+            Collection<SIEdge<KeyType, ValueType>> addedEdges) {
+        var profiler = Profiler.getInstance();
+        profiler.startTick("SI_PRUNE_POST_REACHABILITY");
+        var hasCycle = new boolean[1];
+        for (var e : addedEdges) {
+            if (hasCycle[0]) {
+                break;
+            }
+            int from = graphA.nodeId(e.getFrom()), to = graphA.nodeId(e.getTo());
+            switch (e.getType()) {
+            case WW:
+                hasCycle[0] |= reachability.addEdge(from, to);
+                graphB.forEachSuccessor(to, n -> hasCycle[0] |= reachability.addEdge(from, n));
+                break;
+            case RW:
+                graphA.forEachPredecessor(from, n -> hasCycle[0] |= reachability.addEdge(n, to));
+                break;
+            default:
+                throw new Error("only WW and RW edges should appear in constraints");
+            }
+        }
+        System.err.printf("added %d edges to reachability\n", addedEdges.size());
+        printSparsity(reachability.getClosure());
+        profiler.endTick("SI_PRUNE_POST_REACHABILITY");
+        return hasCycle[0];
+    }
+
+    private static <T> void printSparsity(MatrixGraph<T> reachability) {
         System.err.printf("reachability matrix sparsity: %.2f\n",
                 1 - reachability.nonZeroElements() / Math.pow(reachability.nodes().size(), 2));
-        profiler.endTick("SI_PRUNE_POST_REACHABILITY");
+    }
 
+    /**
+     * Solve the constraints one of whose sides conflicts with the reachability, adding the edges of the other side to
+     * the known graph, to graphA and graphB, and to addedEdges.
+     *
+     * @return the number of solved constraints
+     */
+    private static <KeyType, ValueType> int pruneConstraintsWithPostChecking(
+            KnownGraph<KeyType, ValueType> knownGraph, MatrixGraph<Transaction<KeyType, ValueType>> graphA,
+            MatrixGraph<Transaction<KeyType, ValueType>> graphB,
+            Collection<SIConstraint<KeyType, ValueType>> constraints,
+            MatrixGraph<Transaction<KeyType, ValueType>> reachability,
+            Collection<SIEdge<KeyType, ValueType>> addedEdges) {
+        var profiler = Profiler.getInstance();
         var solvedConstraints = new ArrayList<SIConstraint<KeyType, ValueType>>();
 
         profiler.startTick("SI_PRUNE_POST_CHECK");
         for (var c : constraints) {
-            var conflict = checkConflict(c.getEdges1(), reachability, knownGraph);
+            var conflict = checkConflict(c.getEdges1(), reachability, graphA);
             if (conflict.isPresent()) {
-                addToKnownGraph(knownGraph, c.getEdges2());
+                addToKnownGraph(knownGraph, graphA, graphB, c.getEdges2());
+                addedEdges.addAll(c.getEdges2());
                 solvedConstraints.add(c);
                 // System.err.printf("%s -> %s because of conflict in %s\n",
                 // c.writeTransaction2, c.writeTransaction1,
@@ -96,9 +170,10 @@ public class Pruning {
                 continue;
             }
 
-            conflict = checkConflict(c.getEdges2(), reachability, knownGraph);
+            conflict = checkConflict(c.getEdges2(), reachability, graphA);
             if (conflict.isPresent()) {
-                addToKnownGraph(knownGraph, c.getEdges1());
+                addToKnownGraph(knownGraph, graphA, graphB, c.getEdges1());
+                addedEdges.addAll(c.getEdges1());
                 // System.err.printf("%s -> %s because of conflict in %s\n",
                 // c.writeTransaction1, c.writeTransaction2,
                 // conflict.get());
@@ -111,18 +186,21 @@ public class Pruning {
         // constraints.removeAll(solvedConstraints);
         // java removeAll has performance bugs; do it manually
         solvedConstraints.forEach(constraints::remove);
-        return Pair.of(solvedConstraints.size(), false);
+        return solvedConstraints.size();
     }
 
     private static <KeyType, ValueType> void addToKnownGraph(KnownGraph<KeyType, ValueType> knownGraph,
+            MatrixGraph<Transaction<KeyType, ValueType>> graphA, MatrixGraph<Transaction<KeyType, ValueType>> graphB,
             Collection<SIEdge<KeyType, ValueType>> edges) {
         for (var e : edges) {
             switch (e.getType()) {
             case WW:
                 knownGraph.putEdge(e.getFrom(), e.getTo(), new Edge<KeyType>(EdgeType.WW, e.getKey()));
+                graphA.putEdge(e.getFrom(), e.getTo());
                 break;
             case RW:
                 knownGraph.putEdge(e.getFrom(), e.getTo(), new Edge<KeyType>(EdgeType.RW, e.getKey()));
+                graphB.putEdge(e.getFrom(), e.getTo());
                 break;
             default:
                 throw new Error("only WW and RW edges should appear in constraints");
@@ -132,21 +210,20 @@ public class Pruning {
 
     private static <KeyType, ValueType> Optional<SIEdge<KeyType, ValueType>> checkConflict(
             Collection<SIEdge<KeyType, ValueType>> edges, MatrixGraph<Transaction<KeyType, ValueType>> reachability,
-            KnownGraph<KeyType, ValueType> knownGraph) {
+            MatrixGraph<Transaction<KeyType, ValueType>> graphA) {
         for (var e : edges) {
+            int from = graphA.nodeId(e.getFrom()), to = graphA.nodeId(e.getTo());
             switch (e.getType()) {
             case WW:
-                if (reachability.hasEdgeConnecting(e.getTo(), e.getFrom())) {
+                if (reachability.hasEdge(to, from)) {
                     return Optional.of(e);
                     // System.err.printf("conflict edge: %s\n", e);
                 }
                 break;
             case RW:
-                for (var n : knownGraph.getKnownGraphA().predecessors(e.getFrom())) {
-                    if (reachability.hasEdgeConnecting(e.getTo(), n)) {
-                        return Optional.of(e);
-                        // System.err.printf("conflict edge: %s\n", e);
-                    }
+                if (graphA.anyPredecessor(from, n -> reachability.hasEdge(to, n))) {
+                    return Optional.of(e);
+                    // System.err.printf("conflict edge: %s\n", e);
                 }
                 break;
             default:
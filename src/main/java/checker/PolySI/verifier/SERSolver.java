@@ -102,8 +102,8 @@ class SERSolver<KeyType, ValueType> {
         // The reachability information is used to delete unneeded edges from
         // the generated graph
         var mat = new MatrixGraph<>(graph.asGraph());
-        var orderInSession = Utils.getOrderInSession(history);
-        mat = Utils.reduceEdges(mat, orderInSession);
+        var index = history.getIndex();
+        mat = Utils.reduceEdges(mat, index);
         var reachability = mat.reachability();
         profiler.endTick("SI_SOLVER_GEN_REACHABILITY");
 
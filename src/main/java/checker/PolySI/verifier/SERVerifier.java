@@ -7,7 +7,6 @@ import checker.PolySI.graph.KnownGraph;
 import checker.PolySI.util.TriConsumer;
 import com.google.common.graph.EndpointPair;
 import history.History;
-import history.Operation;
 import history.Transaction;
 import lombok.Getter;
 import lombok.Setter;
@@ -32,6 +31,16 @@ public class SERVerifier<KeyType, ValueType> {
     @Setter
     private static boolean coalesceConstraints = true;
 
+    // reject as soon as pruning finds a cycle, without encoding and solving the constraints
+    @Getter
+    @Setter
+    private static boolean failFast = false;
+
+    // check Elle histories whose version order is linear by a cycle search first, see TotalOrderChecker
+    @Getter
+    @Setter
+    private static boolean totalOrderCheck = true;
+
     @Getter
     private Pair<Collection<Pair<EndpointPair<Transaction<KeyType, ValueType>>, Collection<Edge<KeyType>>>>, Collection<SIConstraint<KeyType, ValueType>>> conflicts;
 
@@ -61,6 +70,21 @@ public class SERVerifier<KeyType, ValueType> {
         profiler.endTick("SI_GEN_PREC_GRAPH");
         System.err.printf("Known edges: %d\n", graph.getKnownGraphA().edges().size());
 
+        if (totalOrderCheck && KnownGraph.isElleHistory() && history.getVersionOrder().isLinear()) {
+            profiler.startTick("SER_TOTAL_ORDER");
+            boolean accepted = TotalOrderChecker.check(history, graph, false);
+            var checkTime = profiler.endTick("SER_TOTAL_ORDER");
+            if (accepted || history.getVersionOrder().isTotal()) {
+                this.stageTime = Map.of(
+                        "Construction", profiler.endTick("ONESHOT_CONS") - checkTime,
+                        "Pruning", 0L,
+                        "Encoding", 0L,
+                        "Solving", checkTime
+                );
+                return accepted;
+            }
+        }
+
         profiler.startTick("SI_GEN_CONSTRAINTS");
         var constraints = generateConstraints(history, graph);
         profiler.endTick("SI_GEN_CONSTRAINTS");
@@ -73,6 +97,15 @@ public class SERVerifier<KeyType, ValueType> {
         var pruningTime = profiler.endTick("PRUNING");
         if (hasLoop) {
             System.err.printf("Cycle found in pruning\n");
+            if (failFast) {
+                this.stageTime = Map.of(
+                        "Construction", constructionTime,
+                        "Pruning", pruningTime,
+                        "Encoding", 0L,
+                        "Solving", 0L
+                );
+                return false;
+            }
         }
         System.err.printf("After Prune:\n" + "Constraints count: %d\nTotal edges in constraints: %d\n",
                 constraints.size(),
@@ -136,19 +169,15 @@ public class SERVerifier<KeyType, ValueType> {
     private static <KeyType, ValueType> Collection<SIConstraint<KeyType, ValueType>> generateConstraintsCoalesce(
             History<KeyType, ValueType> history, KnownGraph<KeyType, ValueType> graph) {
         var readFrom = graph.getReadFrom();
-        var writes = new HashMap<KeyType, Set<Transaction<KeyType, ValueType>>>();
-
-        history.getOperations().stream().filter(e -> e.getType() == Operation.Type.WRITE).forEach(ev -> {
-            writes.computeIfAbsent(ev.getKey(), k -> new HashSet<>()).add(ev.getTransaction());
-        });
+        var index = history.getIndex();
+        var interner = index.getInterner();
 
         var forEachWriteSameKey = ((Consumer<TriConsumer<Transaction<KeyType, ValueType>, Transaction<KeyType, ValueType>, KeyType>>) f -> {
-            for (var p : writes.entrySet()) {
-                var key = p.getKey();
-                var list = new ArrayList<>(p.getValue());
-                for (int i = 0; i < list.size(); i++) {
-                    for (int j = i + 1; j < list.size(); j++) {
-                        f.accept(list.get(i), list.get(j), key);
+            for (int k = 0; k < interner.keyCount(); k++) {
+                var key = interner.getKeys().get(k);
+                for (int i = 0; i < index.writerCount(k); i++) {
+                    for (int j = i + 1; j < index.writerCount(k); j++) {
+                        f.accept(index.writer(k, i), index.writer(k, j), key);
                     }
                 }
             }
@@ -167,7 +196,9 @@ public class SERVerifier<KeyType, ValueType> {
         for (var a : history.getTransactions().values()) {
             for (var b : readFrom.successors(a)) {
                 for (var edge : readFrom.edgeValue(a, b).get()) {
-                    for (var c : writes.get(edge.getKey())) {
+                    var k = interner.keyId(edge.getKey());
+                    for (int i = 0; i < index.writerCount(k); i++) {
+                        var c = index.writer(k, i);
                         if (a == c || b == c) {
                             continue;
                         }
@@ -196,18 +227,17 @@ public class SERVerifier<KeyType, ValueType> {
     private static <KeyType, ValueType> Collection<SIConstraint<KeyType, ValueType>> generateConstraintsNoCoalesce(
             History<KeyType, ValueType> history, KnownGraph<KeyType, ValueType> graph) {
         var readFrom = graph.getReadFrom();
-        var writes = new HashMap<KeyType, Set<Transaction<KeyType, ValueType>>>();
-
-        history.getOperations().stream().filter(e -> e.getType() == Operation.Type.WRITE).forEach(ev -> {
-            writes.computeIfAbsent(ev.getKey(), k -> new HashSet<>()).add(ev.getTransaction());
-        });
+        var index = history.getIndex();
+        var interner = index.getInterner();
 
         var constraints = new HashSet<SIConstraint<KeyType, ValueType>>();
         var constraintId = 0;
         for (var a : history.getTransactions().values()) {
             for (var b : readFrom.successors(a)) {
                 for (var edge : readFrom.edgeValue(a, b).get()) {
-                    for (var c : writes.get(edge.getKey())) {
+                    var k = interner.keyId(edge.getKey());
+                    for (int i = 0; i < index.writerCount(k); i++) {
+                        var c = index.writer(k, i);
                         if (a == c || b == c) {
                             continue;
                         }
@@ -220,14 +250,14 @@ public class SERVerifier<KeyType, ValueType> {
                 }
             }
         }
-        for (var write : writes.entrySet()) {
-            var list = new ArrayList<>(write.getValue());
-            for (int i = 0; i < list.size(); i++) {
-                for (int j = i + 1; j < list.size(); j++) {
-                    var a = list.get(i);
-                    var c = list.get(j);
-                    constraints.add(new SIConstraint<>(List.of(new SIEdge<>(a, c, EdgeType.WW, write.getKey())),
-                            List.of(new SIEdge<>(c, a, EdgeType.WW, write.getKey())), a, c, constraintId++));
+        for (int k = 0; k < interner.keyCount(); k++) {
+            var key = interner.getKeys().get(k);
+            for (int i = 0; i < index.writerCount(k); i++) {
+                for (int j = i + 1; j < index.writerCount(k); j++) {
+                    var a = index.writer(k, i);
+                    var c = index.writer(k, j);
+                    constraints.add(new SIConstraint<>(List.of(new SIEdge<>(a, c, EdgeType.WW, key)),
+                            List.of(new SIEdge<>(c, a, EdgeType.WW, key)), a, c, constraintId++));
                 }
             }
         }
@@ -103,11 +103,11 @@ class SISolver<KeyType, ValueType> {
         // The reachability information is used to delete unneeded edges from
         // the generated graph
         var matA = new MatrixGraph<>(graphA.asGraph());
-        var orderInSession = Utils.getOrderInSession(history);
+        var index = history.getIndex();
         var matAC = Utils.reduceEdges(
                 matA.union(
                         matA.composition(new MatrixGraph<>(graphB.asGraph(), matA.getNodeMap()))),
-                orderInSession);
+                index);
         var reachability = matAC.reachability();
         profiler.endTick("SI_SOLVER_GEN_REACHABILITY");
 
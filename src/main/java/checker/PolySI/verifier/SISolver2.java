@@ -106,11 +106,11 @@ class SISolver2<KeyType, ValueType> {
 
         var matA = new MatrixGraph<>(
                 precedenceGraph.getKnownGraphA().asGraph());
-        var orderInSession = Utils.getOrderInSession(history);
+        var index = history.getIndex();
         var minimalAUnionC = Utils.reduceEdges(
                 matA.union(matA.composition(new MatrixGraph<>(
                         precedenceGraph.getKnownGraphB().asGraph()))),
-                orderInSession);
+                index);
         var reachability = minimalAUnionC.reachability();
         var collectEdges = ((BiFunction<Graph<Transaction<KeyType, ValueType>>, EdgeType, List<Pair<Transaction<KeyType, ValueType>, Transaction<KeyType, ValueType>>>>) (
                 known, type) -> Stream
@@ -0,0 +1,287 @@
+package checker.PolySI.verifier;
+
+import checker.PolySI.graph.KnownGraph;
+import history.History;
+import history.Operation;
+import history.loader.ElleHistoryLoader.ElleValue;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Solver-free check of an Elle list-append history whose version order is linear, see
+ * {@link history.ElleVersionOrder#isLinear()}.
+ *
+ * The longest read list of a key orders its read versions, and the appends nobody reads are put after them in a
+ * topological order of the known graph and the RW edges whose side is fixed. That picks a side of every
+ * constraint, so if the resulting graph has no cycle the history is accepted. If the order is total it is the only
+ * choice that agrees with the WW edges of the known graph, and a cycle rejects the history; otherwise the solver has
+ * to try the other orders of the unread appends.
+ *
+ * The WW edges between consecutive writers order all writers of a key, and the RW edge from a reader to the first
+ * later writer of another transaction stands for those to all later writers. SER is the acyclicity of A + B and SI
+ * that of A + A;B, where A holds the SO, WR and WW edges and B the RW edges, the same graphs {@link SERSolver} and
+ * {@link SISolver} encode. For SI each node v has a twin v', every A edge u -> v also becomes u -> v', and every B
+ * edge v -> w becomes v' -> w, so an A;B edge is a path through a twin and the check stays linear in the edges.
+ */
+class TotalOrderChecker {
+    /**
+     * @return true if the graph of the history with its unread appends last has no cycle, under SI if si and under SER
+     *         otherwise
+     */
+    static <KeyType, ValueType> boolean check(History<KeyType, ValueType> history,
+                                              KnownGraph<KeyType, ValueType> graph, boolean si) {
+        var interner = history.getIndex().getInterner();
+        int n = interner.transactionCount();
+
+        // the known edges, then the RW edges between read versions, and through node n + k those from the readers of
+        // the last read version of key k to its unread appends; an unread append of such a reader precedes the others
+        var dependencies = new EdgeList();
+        for (var edge : graph.getKnownGraphA().edges()) {
+            dependencies.add(interner.transactionId(edge.source()), interner.transactionId(edge.target()));
+        }
+        var knownCount = dependencies.size;
+        var versionOrder = history.getVersionOrder();
+        var readWrites = new ArrayList<List<Operation<KeyType, ValueType>>>(interner.keyCount());
+        for (int k = 0; k < interner.keyCount(); k++) {
+            readWrites.add(versionOrder.prefixWrites(k));
+        }
+        var lastReaders = new HashSet<Pair<Integer, Integer>>();
+        forEachRW(history, readWrites, dependencies::add, (reader, k) -> {
+            dependencies.add(reader, n + k);
+            lastReaders.add(Pair.of(reader, k));
+        });
+        for (int k = 0; k < interner.keyCount(); k++) {
+            for (var write : versionOrder.unreadWrites(k)) {
+                var writer = interner.transactionId(write.getTransaction());
+                if (!lastReaders.contains(Pair.of(writer, k))) {
+                    dependencies.add(n + k, writer);
+                }
+            }
+        }
+        var ranks = topologicalRanks(n + interner.keyCount(), dependencies);
+
+        var edges = new EdgeList();
+        IntBiConsumer addA = (from, to) -> {
+            edges.add(from, to);
+            if (si) {
+                edges.add(from, n + to);
+            }
+        };
+        for (int i = 0; i < knownCount; i++) {
+            addA.accept(dependencies.sources[i], dependencies.targets[i]);
+        }
+
+        var writesInOrder = new ArrayList<List<Operation<KeyType, ValueType>>>(interner.keyCount());
+        var wwCount = 0;
+        for (int k = 0; k < interner.keyCount(); k++) {
+            var writes = new ArrayList<>(readWrites.get(k));
+            var unread = new ArrayList<>(versionOrder.unreadWrites(k));
+            unread.sort(Comparator.comparingInt(op -> ranks[interner.transactionId(op.getTransaction())]));
+            writes.addAll(unread);
+            writesInOrder.add(writes);
+
+            for (int i = Math.max(1, writes.size() - unread.size()); i < writes.size(); i++) {
+                var prev = writes.get(i - 1).getTransaction();
+                var next = writes.get(i).getTransaction();
+                if (prev != next) {
+                    addA.accept(interner.transactionId(prev), interner.transactionId(next));
+                    wwCount++;
+                }
+            }
+        }
+
+        var rwCount = forEachRW(history, writesInOrder, (from, to) -> edges.add(si ? n + from : from, to),
+                (reader, k) -> {});
+        System.err.printf("Total order edges: %d known, %d WW of unread appends, %d RW\n", knownCount, wwCount,
+                rwCount);
+
+        var cyclic = cyclicNodes(si ? 2 * n : n, edges);
+        if (cyclic > 0) {
+            System.err.printf("Cycle found in total order graph: %d nodes in cycles\n", cyclic);
+        }
+        return cyclic == 0;
+    }
+
+    private interface IntBiConsumer {
+        void accept(int from, int to);
+    }
+
+    /**
+     * Run the action on the dense ids of the ends of each RW edge, and lastAction on the dense id of each reader with
+     * no later version of another transaction and the key id.
+     *
+     * @return the number of RW edges
+     */
+    private static <KeyType, ValueType> int forEachRW(History<KeyType, ValueType> history,
+                                                      List<List<Operation<KeyType, ValueType>>> writesInOrder,
+                                                      IntBiConsumer action, IntBiConsumer lastAction) {
+        var interner = history.getIndex().getInterner();
+        var count = 0;
+        for (var op : interner.getOperations()) {
+            if (op.getType() != Operation.Type.READ) {
+                continue;
+            }
+            var writes = writesInOrder.get(interner.keyIdOf(op));
+            var length = ((ElleValue) op.getValue()).getList().size();
+            var writer = writes.get(length).getTransaction();
+            var reader = op.getTransaction();
+            if (writer == reader) {
+                continue;
+            }
+
+            // the next version of another transaction
+            var next = length + 1;
+            while (next < writes.size() && writes.get(next).getTransaction() == writer) {
+                next++;
+            }
+            if (next == writes.size()) {
+                lastAction.accept(interner.transactionId(reader), interner.keyIdOf(op));
+            } else if (writes.get(next).getTransaction() != reader) {
+                action.accept(interner.transactionId(reader), interner.transactionId(writes.get(next).getTransaction()));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the position of each node in a topological order by Kahn's algorithm; nodes on or after a cycle come
+     *         last
+     */
+    private static int[] topologicalRanks(int n, EdgeList edges) {
+        var starts = new int[n + 1];
+        var targets = successors(n, edges, starts);
+        var inDegree = new int[n];
+        for (int i = 0; i < edges.size; i++) {
+            inDegree[edges.targets[i]]++;
+        }
+
+        var ranks = new int[n];
+        Arrays.fill(ranks, n);
+        var queue = new int[n];
+        int head = 0, tail = 0;
+        for (int v = 0; v < n; v++) {
+            if (inDegree[v] == 0) {
+                queue[tail++] = v;
+            }
+        }
+        while (head < tail) {
+            var v = queue[head];
+            ranks[v] = head++;
+            for (int i = starts[v]; i < starts[v + 1]; i++) {
+                if (--inDegree[targets[i]] == 0) {
+                    queue[tail++] = targets[i];
+                }
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * Find the strongly connected components by an iterative Tarjan's algorithm.
+     *
+     * @return the number of nodes in components of more than one node
+     */
+    private static int cyclicNodes(int n, EdgeList edges) {
+        var starts = new int[n + 1];
+        var targets = successors(n, edges, starts);
+
+        var order = new int[n];
+        var low = new int[n];
+        Arrays.fill(order, -1);
+        var onStack = new boolean[n];
+        var stack = new int[n];
+        var stackSize = 0;
+        // the depth-first path and the next successor to visit of each node on it
+        var path = new int[n];
+        var next = new int[n];
+        var counter = 0;
+        var cyclic = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] >= 0) {
+                continue;
+            }
+            var depth = 0;
+            path[0] = root;
+            next[root] = starts[root];
+            order[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                var v = path[depth];
+                if (next[v] < starts[v + 1]) {
+                    var w = targets[next[v]++];
+                    if (order[w] < 0) {
+                        order[w] = low[w] = counter++;
+                        next[w] = starts[w];
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        path[++depth] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+
+                if (low[v] == order[v]) {
+                    var size = 0;
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        size++;
+                    } while (w != v);
+                    if (size > 1) {
+                        cyclic += size;
+                    }
+                }
+                if (--depth >= 0) {
+                    var parent = path[depth];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return cyclic;
+    }
+
+    /**
+     * @return the targets of the edges grouped by source: the successors of v are from starts[v] to starts[v + 1] - 1
+     */
+    private static int[] successors(int n, EdgeList edges, int[] starts) {
+        for (int i = 0; i < edges.size; i++) {
+            starts[edges.sources[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            starts[v + 1] += starts[v];
+        }
+        var targets = new int[edges.size];
+        var fill = Arrays.copyOf(starts, n);
+        for (int i = 0; i < edges.size; i++) {
+            targets[fill[edges.sources[i]]++] = edges.targets[i];
+        }
+        return targets;
+    }
+
+    private static class EdgeList {
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private int size = 0;
+
+        void add(int from, int to) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            sources[size] = from;
+            targets[size] = to;
+            size++;
+        }
+    }
+}
@@ -5,12 +5,13 @@ import checker.PolySI.graph.EdgeType;
 import checker.PolySI.graph.KnownGraph;
 import checker.PolySI.graph.MatrixGraph;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Streams;
 import com.google.common.graph.EndpointPair;
 import com.google.common.graph.MutableValueGraph;
 import com.google.common.graph.ValueGraphBuilder;
 import history.History;
+import history.HistoryIndex;
 import history.Operation;
+import history.Session;
 import history.Transaction;
 import monosat.Lit;
 import monosat.Logic;
@@ -21,52 +22,74 @@ import org.apache.commons.lang3.tuple.Triple;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class Utils {
     public static <KeyType, ValueType> Transaction<KeyType, ValueType> verifyInternalConsistency(History<KeyType, ValueType> history) {
-        var writes = new HashMap<Pair<KeyType, ValueType>, Pair<Operation<KeyType, ValueType>, Integer>>();
-        var txnWrites = new HashMap<Pair<Transaction<KeyType, ValueType>, KeyType>, ArrayList<Integer>>();
-        var getEvents = ((Function<Operation.Type, Stream<Pair<Integer, Operation<KeyType, ValueType>>>>) type -> history
-                .getTransactions().values().stream().flatMap(txn -> {
-                    var events = txn.getOps();
-                    return IntStream.range(0, events.size()).mapToObj(i -> Pair.of(i, events.get(i)))
-                            .filter(p -> p.getRight().getType() == type);
-                }));
-
-        getEvents.apply(Operation.Type.WRITE).forEach(p -> {
-            var i = p.getLeft();
-            var ev = p.getRight();
-            writes.put(Pair.of(ev.getKey(), ev.getValue()), Pair.of(ev, i));
-            txnWrites.computeIfAbsent(Pair.of(ev.getTransaction(), ev.getKey()), k -> new ArrayList()).add(i);
-        });
-
-        for (var p : getEvents.apply(Operation.Type.READ).collect(Collectors.toList())) {
-            var i = p.getLeft();
-            var ev = p.getRight();
-            var writeEv = writes.get(Pair.of(ev.getKey(), ev.getValue()));
-
-            if (writeEv == null) {
-                System.err.printf("%s has no corresponding write\n", ev);
-                return ev.getTransaction();
+        var index = history.getIndex();
+        var interner = index.getInterner();
+        var txns = history.getTransactions().values();
+
+        // side tables indexed by operation id
+        var nextWrite = new int[interner.operationCount()];
+        var firstWrite = new int[interner.operationCount()];
+
+        // index of the last and first write to each key in the current transaction
+        var lastWriteInTxn = new int[interner.keyCount()];
+        var firstWriteInTxn = new int[interner.keyCount()];
+        var stamp = new int[interner.keyCount()];
+        var epoch = 0;
+
+        for (var txn : txns) {
+            var events = txn.getOps();
+            epoch++;
+            for (int i = 0; i < events.size(); i++) {
+                var ev = events.get(i);
+                nextWrite[interner.operationId(ev)] = Integer.MAX_VALUE;
+                if (ev.getType() != Operation.Type.WRITE) {
+                    continue;
+                }
+                var k = interner.keyIdOf(ev);
+                if (stamp[k] == epoch) {
+                    nextWrite[interner.operationId(events.get(lastWriteInTxn[k]))] = i;
+                } else {
+                    stamp[k] = epoch;
+                    firstWriteInTxn[k] = i;
+                }
+                lastWriteInTxn[k] = i;
             }
+            for (var ev : events) {
+                firstWrite[interner.operationId(ev)] = stamp[interner.keyIdOf(ev)] == epoch ? firstWriteInTxn[interner.keyIdOf(ev)] : Integer.MAX_VALUE;
+            }
+        }
 
-            var myWriteIndices = txnWrites.getOrDefault(Pair.of(ev.getTransaction(), ev.getKey()), new ArrayList<>());
-            var writeIndices = txnWrites.get(Pair.of(writeEv.getLeft().getTransaction(), writeEv.getLeft().getKey()));
-            var j = Collections.binarySearch(writeIndices, writeEv.getRight());
+        for (var txn : txns) {
+            var events = txn.getOps();
+            for (int i = 0; i < events.size(); i++) {
+                var ev = events.get(i);
+                if (ev.getType() != Operation.Type.READ) {
+                    continue;
+                }
+                var writeEv = index.writeOf(ev);
 
-            if (writeEv.getLeft().getTransaction() == ev.getTransaction()) {
-                if (j != writeIndices.size() - 1 && writeIndices.get(j + 1) < i) {
-                    System.err.printf("%s not reading from latest write: %s\n", ev, writeEv.getLeft());
+                if (writeEv == null) {
+                    System.err.printf("%s has no corresponding write\n", ev);
                     return ev.getTransaction();
-                } else if (writeEv.getRight() > i) {
-                    System.err.printf("%s reads from a write after it: %s\n", ev, writeEv.getLeft());
+                }
+
+                var next = nextWrite[interner.operationId(writeEv)];
+                if (writeEv.getTransaction() == ev.getTransaction()) {
+                    if (next < i) {
+                        System.err.printf("%s not reading from latest write: %s\n", ev, writeEv);
+                        return ev.getTransaction();
+                    } else if (writeEv.getId() > i) {
+                        System.err.printf("%s reads from a write after it: %s\n", ev, writeEv);
+                        return ev.getTransaction();
+                    }
+                } else if (next != Integer.MAX_VALUE || firstWrite[interner.operationId(ev)] < i) {
+                    System.err.printf("%s not reading from latest write: %s\n", ev, writeEv);
                     return ev.getTransaction();
                 }
-            } else if (j != writeIndices.size() - 1 || (!myWriteIndices.isEmpty() && myWriteIndices.get(0) < i)) {
-                System.err.printf("%s not reading from latest write: %s\n", ev, writeEv.getLeft());
-                return ev.getTransaction();
             }
         }
         return null;
@@ -153,19 +176,24 @@ public class Utils {
             MutableValueGraph<Transaction<KeyType, ValueType>, Collection<Lit>> graphA,
             MutableValueGraph<Transaction<KeyType, ValueType>, Collection<Lit>> graphB,
             MatrixGraph<Transaction<KeyType, ValueType>> AC) {
-        return AC.edges().stream().map(e -> {
-            var n = e.source();
-            var m = e.target();
-            var firstEdge = ((Function<Optional<Collection<Lit>>, Lit>) c -> c.get().iterator().next());
+        var edges = new ArrayList<Triple<Transaction<KeyType, ValueType>, Transaction<KeyType, ValueType>, Lit>>();
+        var firstEdge = ((Function<Optional<Collection<Lit>>, Lit>) c -> c.get().iterator().next());
+        for (int i = 0; i < AC.nodes().size(); i++) {
+            var n = AC.node(i);
+            AC.forEachSuccessor(i, j -> {
+                var m = AC.node(j);
+                if (graphA.hasEdgeConnecting(n, m)) {
+                    edges.add(Triple.of(n, m, firstEdge.apply(graphA.edgeValue(n, m))));
+                    return;
+                }
 
-            if (graphA.hasEdgeConnecting(n, m)) {
-                return Triple.of(n, m, firstEdge.apply(graphA.edgeValue(n, m)));
-            }
+                var middle = Sets.intersection(graphA.successors(n), graphB.predecessors(m)).iterator().next();
+                edges.add(Triple.of(n, m, Logic.and(firstEdge.apply(graphA.edgeValue(n, middle)),
+                        firstEdge.apply(graphB.edgeValue(middle, m)))));
+            });
+        }
 
-            var middle = Sets.intersection(graphA.successors(n), graphB.predecessors(m)).iterator().next();
-            return Triple.of(n, m, Logic.and(firstEdge.apply(graphA.edgeValue(n, middle)),
-                    firstEdge.apply(graphB.edgeValue(middle, m))));
-        }).collect(Collectors.toList());
+        return edges;
     }
 
     /**
@@ -177,29 +205,21 @@ public class Utils {
     static <KeyType, ValueType> List<Triple<Transaction<KeyType, ValueType>, Transaction<KeyType, ValueType>, Lit>> getKnownEdges(
             MutableValueGraph<Transaction<KeyType, ValueType>, Collection<Lit>> graph,
             MatrixGraph<Transaction<KeyType, ValueType>> AC) {
-        return AC.edges().stream().map(e -> {
-            var n = e.source();
-            var m = e.target();
-            var firstEdge = ((Function<Optional<Collection<Lit>>, Lit>) c -> c.get().iterator().next());
-
-            if (graph.hasEdgeConnecting(n, m)) {
-                return Triple.of(n, m, firstEdge.apply(graph.edgeValue(n, m)));
-            } else {
-                throw new RuntimeException("Can not reach here");
-            }
-        }).collect(Collectors.toList());
-    }
+        var edges = new ArrayList<Triple<Transaction<KeyType, ValueType>, Transaction<KeyType, ValueType>, Lit>>();
+        var firstEdge = ((Function<Optional<Collection<Lit>>, Lit>) c -> c.get().iterator().next());
+        for (int i = 0; i < AC.nodes().size(); i++) {
+            var n = AC.node(i);
+            AC.forEachSuccessor(i, j -> {
+                var m = AC.node(j);
+                if (graph.hasEdgeConnecting(n, m)) {
+                    edges.add(Triple.of(n, m, firstEdge.apply(graph.edgeValue(n, m))));
+                } else {
+                    throw new RuntimeException("Can not reach here");
+                }
+            });
+        }
 
-    static <KeyType, ValueType> Map<Transaction<KeyType, ValueType>, Integer> getOrderInSession(
-            History<KeyType, ValueType> history) {
-        // @formatter:off
-        return history.getSessions().values().stream()
-                .flatMap(s -> Streams.zip(
-                    s.getTransactions().stream(),
-                    IntStream.range(0, s.getTransactions().size()).boxed(),
-                    Pair::of))
-                .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
-        // @formatter:on
+        return edges;
     }
 
     static <KeyType, ValueType> MutableValueGraph<Transaction<KeyType, ValueType>, Collection<Lit>> createEmptyGraph(
@@ -244,31 +264,29 @@ public class Utils {
      * Delete edges in a way that preserves reachability
      */
     static <KeyType, ValueType> MatrixGraph<Transaction<KeyType, ValueType>> reduceEdges(
-            MatrixGraph<Transaction<KeyType, ValueType>> graph,
-            Map<Transaction<KeyType, ValueType>, Integer> orderInSession) {
-        System.err.printf("Before: %d edges\n", graph.edges().size());
+            MatrixGraph<Transaction<KeyType, ValueType>> graph, HistoryIndex<KeyType, ValueType> index) {
+        System.err.printf("Before: %d edges\n", graph.edgeCount());
         var newGraph = MatrixGraph.ofNodes(graph);
 
-        for (var n : graph.nodes()) {
-            var succ = graph.successors(n);
-            // @formatter:off
-            var firstInSession = succ.stream()
-                .collect(Collectors.toMap(
-                    m -> m.getSession(),
-                    Function.identity(),
-                    (p, q) -> orderInSession.get(p)
-                        < orderInSession.get(q) ? p : q));
-
-            firstInSession.values().forEach(m -> newGraph.putEdge(n, m));
-
-            succ.stream()
-                .filter(m -> m.getSession() == n.getSession() && m != n
-                        && orderInSession.get(m) == orderInSession.get(n) + 1)
-                .forEach(m -> newGraph.putEdge(n, m));
-            // @formatter:on
+        for (int i = 0; i < graph.nodes().size(); i++) {
+            var n = graph.node(i);
+            // the successor first in each session, and the next transaction in the session of n
+            var firstInSession = new HashMap<Session<KeyType, ValueType>, Integer>();
+            int from = i;
+            graph.forEachSuccessor(i, j -> {
+                var m = graph.node(j);
+                firstInSession.merge(m.getSession(), j,
+                        (p, q) -> index.orderInSession(graph.node(p)) < index.orderInSession(graph.node(q)) ? p : q);
+                if (m.getSession() == n.getSession() && m != n
+                        && index.orderInSession(m) == index.orderInSession(n) + 1) {
+                    newGraph.addEdge(from, j);
+                }
+            });
+
+            firstInSession.values().forEach(j -> newGraph.addEdge(from, j));
         }
 
-        System.err.printf("After: %d edges\n", newGraph.edges().size());
+        System.err.printf("After: %d edges\n", newGraph.edgeCount());
         return newGraph;
     }
     public static <KeyType, ValueType> String intConflictToDot(Transaction<KeyType, ValueType> txn) {
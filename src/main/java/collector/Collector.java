@@ -1,7 +1,9 @@
 package collector;
 
+import checker.C4.C4Online;
 import config.Config;
 import history.History;
+import lombok.Setter;
 import lombok.SneakyThrows;
 
 import java.sql.Connection;
@@ -15,6 +17,9 @@ public abstract class Collector<KeyType, ValType> {
     protected Connection connection;
     protected long nKey;
     protected IsolationLevel isolation;
+    // checks committed transactions while the workload runs, if set
+    @Setter
+    protected C4Online<KeyType, ValType> onlineChecker;
 
     @SneakyThrows
     public Collector(Properties config) {
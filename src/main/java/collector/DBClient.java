@@ -1,7 +1,12 @@
 package collector;
 
+import checker.C4.C4Online;
 import history.Operation;
 import history.Session;
+import history.Transaction;
+import javafx.util.Pair;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
@@ -9,6 +14,8 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 public abstract class DBClient {
@@ -17,6 +24,12 @@ public abstract class DBClient {
     protected String password;
     protected Connection connection;
     protected int maxRestartTimes = 1000;
+    // receives committed transactions while the session runs, if set
+    @Setter
+    protected C4Online<Long, Long> onlineChecker;
+    // writes of the transactions that failed after all restarts
+    @Getter
+    protected final List<Pair<Long, Long>> abortedWrites = new ArrayList<>();
 
     @SneakyThrows
     public DBClient(String url, String username, String password) {
@@ -35,6 +48,10 @@ public abstract class DBClient {
         connection.setTransactionIsolation(isolationLevel.getConstant());
 
         for (var transaction : session.getTransactions()) {
+            if (onlineChecker != null && onlineChecker.shouldAbort()) {
+                log.info("stop session {} since the online checker found a bug", session.getId());
+                break;
+            }
             // restart the transaction several times if failed
             for (int i = 0; !transaction.isSuccess() && i < maxRestartTimes; ++i) {
                 try {
@@ -54,6 +71,9 @@ public abstract class DBClient {
                     connection.commit();
                     transaction.setSuccess(true);
                     log.trace("transaction {} success", transaction.getId());
+                    if (onlineChecker != null) {
+                        onlineChecker.submit(transaction);
+                    }
                     break;
                 } catch (SQLException e) {
                     connection.rollback();
@@ -61,10 +81,26 @@ public abstract class DBClient {
             }
             if (!transaction.isSuccess()) {
                 log.warn("transaction {} failed after restarting {} times", transaction.getId(), maxRestartTimes);
+                abort(transaction);
             }
         }
     }
 
+    /**
+     * Record the writes of a transaction that failed after all restarts. Its values were written and rolled back, so
+     * a read of them is an aborted read.
+     */
+    protected void abort(Transaction<Long, Long> transaction) {
+        for (var op : transaction.getOps()) {
+            if (op.getType() == Operation.Type.WRITE) {
+                abortedWrites.add(new Pair<>(op.getKey(), op.getValue()));
+            }
+        }
+        if (onlineChecker != null) {
+            onlineChecker.submitAborted(transaction);
+        }
+    }
+
     @SneakyThrows
     public void close() {
         if (connection != null) {
@@ -36,8 +36,12 @@ public class H2Collector extends Collector<Long, Long> {
         history.getSessions().values().forEach(session -> {
             Callable<Void> task = () -> {
                 var node = new H2Client(url, username, password);
+                node.setOnlineChecker(onlineChecker);
                 node.execSession(session, isolation);
                 node.close();
+                synchronized (history) {
+                    node.getAbortedWrites().forEach(write -> history.addAbortedWrite(write.getKey(), write.getValue()));
+                }
                 session.getTransactions().removeIf((txn) -> !txn.isSuccess());
                 return null;
             };
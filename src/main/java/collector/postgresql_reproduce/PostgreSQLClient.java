@@ -28,6 +28,10 @@ public class PostgreSQLClient extends DBClient {
         connection.setTransactionIsolation(isolationLevel.getConstant());
 
         for (var transaction : session.getTransactions()) {
+            if (onlineChecker != null && onlineChecker.shouldAbort()) {
+                log.info("stop session {} since the online checker found a bug", session.getId());
+                break;
+            }
             // restart the transaction several times if failed
             for (int i = 0; !transaction.isSuccess() && i < maxRestartTimes; ++i) {
                 try {
@@ -61,6 +65,9 @@ public class PostgreSQLClient extends DBClient {
                     connection.commit();
                     transaction.setSuccess(true);
                     log.trace("transaction {} success", transaction.getId());
+                    if (onlineChecker != null) {
+                        onlineChecker.submit(transaction);
+                    }
                     break;
                 } catch (SQLException e) {
                     connection.rollback();
@@ -68,6 +75,7 @@ public class PostgreSQLClient extends DBClient {
             }
             if (!transaction.isSuccess()) {
                 log.warn("transaction {} failed after restarting {} times", transaction.getId(), maxRestartTimes);
+                abort(transaction);
             }
         }
     }
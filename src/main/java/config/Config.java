@@ -29,6 +29,14 @@ public class Config {
 
     // checker configs
     public static final String CHECKER_ISOLATION = "checker.isolation";
+    public static final String CHECKER_DECOMPOSE = "checker.decompose";
+    public static final String CHECKER_ONLINE = "checker.online";
+    public static final String CHECKER_ONLINE_ABORT = "checker.online.abort";
+    public static final String CHECKER_ONLINE_WINDOW = "checker.online.window";
+    public static final String CHECKER_CLOCK = "checker.clock";
+    public static final String CHECKER_PARALLELISM = "checker.parallelism";
+    public static final String CHECKER_WITNESS_LIMIT = "checker.witness.limit";
+    public static final String CHECKER_STOP = "checker.stop";
 
     // profiler configs
     public static final String PROFILER_ENABLE = "profiler.enable";
@@ -38,4 +46,8 @@ public class Config {
     public static final String DEFAULT_OUTPUT_PATH = "./result";
     public static final String DEFAULT_CURRENT_PATH = "./current";
     public static final String DEFAULT_HISTORY_TYPE = "text";
+    public static final String DEFAULT_CHECKER_CLOCK = "auto";
+    public static final String DEFAULT_CHECKER_PARALLELISM = "0";
+    public static final String DEFAULT_CHECKER_WITNESS_LIMIT = "0";
+    public static final String DEFAULT_CHECKER_STOP = "all";
 }
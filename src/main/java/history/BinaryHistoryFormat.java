@@ -0,0 +1,49 @@
+package history;
+
+/**
+ * Layout of the binary history format, version 1.
+ *
+ * All numbers are little-endian and every section starts at an 8-byte aligned offset,
+ * so each section can be mapped and bulk-read independently:
+ *
+ * <pre>
+ * header        magic (8), version (4), sessions S (4), transactions T (4), operations N (4), aborted writes A (4), reserved (4)
+ * session index long[S] session ids, int[S + 1] offsets into the transaction index
+ * txn index     long[T] transaction ids, int[T + 1] offsets into the operation columns, byte[T] success flags
+ * operations    long[N] keys, long[N] values, byte[N] types (0 = read, 1 = write)
+ * aborted       long[A] keys, long[A] values
+ * </pre>
+ */
+public final class BinaryHistoryFormat {
+    public static final long MAGIC = 0x54534948564f5349L; // "ISOVHIST" as little-endian bytes
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    private BinaryHistoryFormat() {
+    }
+
+    public static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Compute the start offsets of the sections, in the order they appear in the file.
+     *
+     * @return offsets of session ids, session offsets, txn ids, txn offsets, txn success flags,
+     *         keys, values, types, aborted keys, aborted values and the end of the file
+     */
+    public static long[] sectionOffsets(int sessions, int transactions, int operations, int aborted) {
+        long[] sizes = {
+                8L * sessions, 4L * (sessions + 1),
+                8L * transactions, 4L * (transactions + 1), transactions,
+                8L * operations, 8L * operations, operations,
+                8L * aborted, 8L * aborted
+        };
+        var offsets = new long[sizes.length + 1];
+        offsets[0] = HEADER_SIZE;
+        for (int i = 0; i < sizes.length; i++) {
+            offsets[i + 1] = align(offsets[i] + sizes[i]);
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,270 @@
+package history;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A columnar representation of a {@code History<Long, Long>} backed by primitive arrays, in the layout of the
+ * sections of the binary history format.
+ *
+ * It is not a view of the history: checkers work on the object history, which {@link #toHistory()} builds, and the
+ * text loader and the generators build the object history directly.
+ *
+ * Operations are grouped by transaction and transactions are grouped by session:
+ * the operations of transaction {@code t} are {@code [txnOffsets[t], txnOffsets[t + 1])}
+ * and the transactions of session {@code s} are {@code [sessionOffsets[s], sessionOffsets[s + 1])}.
+ * Transactions keep their order inside a session and operations keep their order inside a transaction.
+ */
+@Getter
+public class ColumnarHistory {
+    public static final byte READ = 0;
+    public static final byte WRITE = 1;
+
+    // per operation
+    private final long[] keys;
+    private final long[] values;
+    private final byte[] types;
+
+    // per transaction
+    private final int[] txnOffsets;
+    private final long[] txnIds;
+    private final boolean[] txnSuccess;
+
+    // per session
+    private final int[] sessionOffsets;
+    private final long[] sessionIds;
+
+    private final long[] abortedKeys;
+    private final long[] abortedValues;
+
+    public ColumnarHistory(long[] keys, long[] values, byte[] types,
+                           int[] txnOffsets, long[] txnIds, boolean[] txnSuccess,
+                           int[] sessionOffsets, long[] sessionIds,
+                           long[] abortedKeys, long[] abortedValues) {
+        this.keys = keys;
+        this.values = values;
+        this.types = types;
+        this.txnOffsets = txnOffsets;
+        this.txnIds = txnIds;
+        this.txnSuccess = txnSuccess;
+        this.sessionOffsets = sessionOffsets;
+        this.sessionIds = sessionIds;
+        this.abortedKeys = abortedKeys;
+        this.abortedValues = abortedValues;
+    }
+
+    /**
+     * Build the columnar store of an object history.
+     *
+     * @param history the history to convert
+     * @return a new store with sessions ordered by id
+     */
+    public static ColumnarHistory fromHistory(History<Long, Long> history) {
+        var builder = builder();
+        history.getSessions().values().stream()
+                .sorted(Comparator.comparingLong(Session::getId))
+                .forEach(session -> {
+                    var sessionIndex = builder.session(session.getId());
+                    for (var txn : session.getTransactions()) {
+                        var txnIndex = builder.transaction(sessionIndex, txn.getId());
+                        builder.success(txnIndex, txn.isSuccess());
+                        for (var op : txn.getOps()) {
+                            builder.operation(txnIndex, op.getType(), op.getKey(), op.getValue());
+                        }
+                    }
+                });
+        history.getAbortedWrites().forEach(w -> builder.abortedWrite(w.getKey(), w.getValue()));
+        return builder.build();
+    }
+
+    public int operationCount() {
+        return keys.length;
+    }
+
+    public int transactionCount() {
+        return txnIds.length;
+    }
+
+    public int sessionCount() {
+        return sessionIds.length;
+    }
+
+    public static Operation.Type toType(byte type) {
+        return type == READ ? Operation.Type.READ : Operation.Type.WRITE;
+    }
+
+    public static byte fromType(Operation.Type type) {
+        return type == Operation.Type.READ ? READ : WRITE;
+    }
+
+    /**
+     * Materialize the object view of this history.
+     *
+     * The returned history does not refer to this store, so the arrays can be collected once it is built.
+     *
+     * @return a history with the same sessions, transactions and operations
+     */
+    public History<Long, Long> toHistory() {
+        var history = new History<Long, Long>();
+        for (int s = 0; s < sessionIds.length; s++) {
+            var session = history.addSession(sessionIds[s]);
+            for (int t = sessionOffsets[s]; t < sessionOffsets[s + 1]; t++) {
+                var txn = history.addTransaction(session, txnIds[t]);
+                txn.setSuccess(txnSuccess[t]);
+                for (int o = txnOffsets[t]; o < txnOffsets[t + 1]; o++) {
+                    history.addOperation(txn, toType(types[o]), keys[o], values[o]);
+                }
+            }
+        }
+        for (int i = 0; i < abortedKeys.length; i++) {
+            history.addAbortedWrite(abortedKeys[i], abortedValues[i]);
+        }
+        return history;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Appends sessions, transactions and operations in any interleaving and groups them on {@link #build()}.
+     */
+    public static class Builder {
+        private final Map<Long, Integer> sessionIndex = new HashMap<>();
+        private final Map<Long, Integer> txnIndex = new HashMap<>();
+
+        private long[] sessionIds = new long[16];
+        private int sessionCount = 0;
+
+        private long[] txnIds = new long[64];
+        private int[] txnSession = new int[64];
+        private boolean[] txnSuccess = new boolean[64];
+        private int txnCount = 0;
+
+        private long[] keys = new long[256];
+        private long[] values = new long[256];
+        private byte[] types = new byte[256];
+        private int[] opTxn = new int[256];
+        private int opCount = 0;
+
+        private long[] abortedKeys = new long[16];
+        private long[] abortedValues = new long[16];
+        private int abortedCount = 0;
+
+        /**
+         * @return the index of the session with the given id, adding it if absent
+         */
+        public int session(long id) {
+            var index = sessionIndex.get(id);
+            if (index != null) {
+                return index;
+            }
+            if (sessionCount == sessionIds.length) {
+                sessionIds = Arrays.copyOf(sessionIds, sessionCount * 2);
+            }
+            sessionIds[sessionCount] = id;
+            sessionIndex.put(id, sessionCount);
+            return sessionCount++;
+        }
+
+        /**
+         * @return the index of the transaction with the given id, adding it to the session if absent
+         */
+        public int transaction(int session, long id) {
+            var index = txnIndex.get(id);
+            if (index != null) {
+                return index;
+            }
+            if (txnCount == txnIds.length) {
+                int capacity = txnCount * 2;
+                txnIds = Arrays.copyOf(txnIds, capacity);
+                txnSession = Arrays.copyOf(txnSession, capacity);
+                txnSuccess = Arrays.copyOf(txnSuccess, capacity);
+            }
+            txnIds[txnCount] = id;
+            txnSession[txnCount] = session;
+            txnIndex.put(id, txnCount);
+            return txnCount++;
+        }
+
+        public void success(int txn, boolean success) {
+            txnSuccess[txn] = success;
+        }
+
+        public void operation(int txn, Operation.Type type, long key, long value) {
+            if (opCount == keys.length) {
+                int capacity = opCount * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                types = Arrays.copyOf(types, capacity);
+                opTxn = Arrays.copyOf(opTxn, capacity);
+            }
+            keys[opCount] = key;
+            values[opCount] = value;
+            types[opCount] = fromType(type);
+            opTxn[opCount] = txn;
+            opCount++;
+        }
+
+        public void abortedWrite(long key, long value) {
+            if (abortedCount == abortedKeys.length) {
+                abortedKeys = Arrays.copyOf(abortedKeys, abortedCount * 2);
+                abortedValues = Arrays.copyOf(abortedValues, abortedCount * 2);
+            }
+            abortedKeys[abortedCount] = key;
+            abortedValues[abortedCount] = value;
+            abortedCount++;
+        }
+
+        public ColumnarHistory build() {
+            // stable counting sort of transactions by session
+            var sessionOffsets = new int[sessionCount + 1];
+            for (int t = 0; t < txnCount; t++) {
+                sessionOffsets[txnSession[t] + 1]++;
+            }
+            for (int s = 0; s < sessionCount; s++) {
+                sessionOffsets[s + 1] += sessionOffsets[s];
+            }
+            var txnPosition = new int[txnCount];
+            var cursor = Arrays.copyOf(sessionOffsets, sessionCount);
+            for (int t = 0; t < txnCount; t++) {
+                txnPosition[t] = cursor[txnSession[t]]++;
+            }
+
+            var sortedTxnIds = new long[txnCount];
+            var sortedTxnSuccess = new boolean[txnCount];
+            var txnOffsets = new int[txnCount + 1];
+            for (int t = 0; t < txnCount; t++) {
+                sortedTxnIds[txnPosition[t]] = txnIds[t];
+                sortedTxnSuccess[txnPosition[t]] = txnSuccess[t];
+            }
+
+            // stable counting sort of operations by transaction position
+            for (int o = 0; o < opCount; o++) {
+                txnOffsets[txnPosition[opTxn[o]] + 1]++;
+            }
+            for (int t = 0; t < txnCount; t++) {
+                txnOffsets[t + 1] += txnOffsets[t];
+            }
+            var sortedKeys = new long[opCount];
+            var sortedValues = new long[opCount];
+            var sortedTypes = new byte[opCount];
+            cursor = Arrays.copyOf(txnOffsets, txnCount);
+            for (int o = 0; o < opCount; o++) {
+                int pos = cursor[txnPosition[opTxn[o]]]++;
+                sortedKeys[pos] = keys[o];
+                sortedValues[pos] = values[o];
+                sortedTypes[pos] = types[o];
+            }
+
+            return new ColumnarHistory(sortedKeys, sortedValues, sortedTypes,
+                    txnOffsets, sortedTxnIds, sortedTxnSuccess,
+                    sessionOffsets, Arrays.copyOf(sessionIds, sessionCount),
+                    Arrays.copyOf(abortedKeys, abortedCount), Arrays.copyOf(abortedValues, abortedCount));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package history;
+
+import history.loader.ElleHistoryLoader.ElleValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Version order of each key of an Elle list-append history, see {@link History#getVersionOrder()}.
+ *
+ * The versions of a key are the prefixes of its read lists, and its longest read list orders them. The writes of the
+ * prefixes of the longest list are kept by length, so a read that is a prefix of it, which almost every read is, finds
+ * the writes of its elements by position instead of by hashing a probe value per element.
+ */
+public class ElleVersionOrder<KeyType, ValType> {
+    private final HistoryIndex<KeyType, ValType> index;
+
+    // the longest read list of each key, by key id; null if the key is never read
+    private final ElleValue[] longest;
+
+    // the write of the prefix of each length of the longest list, by key id; the initial write for length 0
+    private final Operation<KeyType, ValType>[][] prefixWrites;
+
+    // the appends of each key that are not in its longest list, by key id
+    private final List<Operation<KeyType, ValType>>[] unreadWrites;
+
+    // whether every read list is a prefix of the longest list of its key and every element of that list is written
+    // by an append of its own
+    private final boolean linear;
+
+    // whether the version order is linear and every append is read
+    private final boolean total;
+
+    @SuppressWarnings("unchecked")
+    ElleVersionOrder(History<KeyType, ValType> history) {
+        index = history.getIndex();
+        var interner = index.getInterner();
+
+        longest = new ElleValue[interner.keyCount()];
+        var lengths = new int[interner.keyCount()];
+        for (var op : interner.getOperations()) {
+            if (op.getType() != Operation.Type.READ) {
+                continue;
+            }
+            var value = (ElleValue) op.getValue();
+            var list = value.getList();
+            var keyId = interner.keyIdOf(op);
+            if (list != null && (longest[keyId] == null || list.size() > lengths[keyId])) {
+                longest[keyId] = value;
+                lengths[keyId] = list.size();
+            }
+        }
+
+        prefixWrites = new Operation[interner.keyCount()][];
+        for (int k = 0; k < interner.keyCount(); k++) {
+            if (longest[k] == null) {
+                continue;
+            }
+            var key = interner.getKeys().get(k);
+            var list = longest[k].getList();
+            prefixWrites[k] = new Operation[list.size() + 1];
+            prefixWrites[k][0] = write(key, null);
+            for (int i = 0; i < list.size(); i++) {
+                prefixWrites[k][i + 1] = write(key, list.get(i));
+            }
+        }
+
+        unreadWrites = new List[interner.keyCount()];
+        var inLongest = new boolean[interner.operationCount()];
+        var linear = true;
+        for (int k = 0; k < interner.keyCount(); k++) {
+            unreadWrites[k] = new ArrayList<>();
+            for (int i = 1; prefixWrites[k] != null && i < prefixWrites[k].length; i++) {
+                var write = prefixWrites[k][i];
+                if (write == null || inLongest[interner.operationId(write)]) {
+                    linear = false;
+                } else {
+                    inLongest[interner.operationId(write)] = true;
+                }
+            }
+        }
+        for (var op : interner.getOperations()) {
+            var value = (ElleValue) op.getValue();
+            if (op.getType() == Operation.Type.READ) {
+                linear &= value.isPrefixOf(longest[interner.keyIdOf(op)]);
+            } else if (value.getLastElement() != null && !inLongest[interner.operationId(op)]) {
+                unreadWrites[interner.keyIdOf(op)].add(op);
+            }
+        }
+        this.linear = linear;
+        this.total = linear && Arrays.stream(unreadWrites).allMatch(List::isEmpty);
+    }
+
+    /**
+     * @return true if every read list is a prefix of the longest read list of its key and every element of that list
+     *         is written by an append of its own, so the longest lists order every read version
+     */
+    public boolean isLinear() {
+        return linear;
+    }
+
+    /**
+     * @return true if the version order is linear and every append is read, so it orders every version
+     */
+    public boolean isTotal() {
+        return total;
+    }
+
+    /**
+     * @return the writes of the prefixes of the longest read list of the key by length, the initial write first; empty
+     *         if the key is never read
+     */
+    public List<Operation<KeyType, ValType>> prefixWrites(int keyId) {
+        return prefixWrites[keyId] == null ? List.of() : Arrays.asList(prefixWrites[keyId]);
+    }
+
+    /**
+     * @return the appends of the key that are not the writes of the elements of its longest read list
+     */
+    public List<Operation<KeyType, ValType>> unreadWrites(int keyId) {
+        return unreadWrites[keyId];
+    }
+
+    /**
+     * @return the writes of the prefixes of the read list by length, the initial write first; an element is null if
+     *         its version is never written
+     */
+    public List<Operation<KeyType, ValType>> writesOf(Operation<KeyType, ValType> read) {
+        var value = (ElleValue) read.getValue();
+        var keyId = index.getInterner().keyIdOf(read);
+        var order = longest[keyId];
+        if (order != null && value.isPrefixOf(order)) {
+            return Arrays.asList(prefixWrites[keyId]).subList(0, value.getList().size() + 1);
+        }
+
+        // the read diverges from the longest list
+        var list = value.getList();
+        var result = new ArrayList<Operation<KeyType, ValType>>(list.size() + 1);
+        result.add(write(read.getKey(), null));
+        for (var element : list) {
+            result.add(write(read.getKey(), element));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Operation<KeyType, ValType> write(KeyType key, Integer lastElement) {
+        int versionId = index.getInterner().versionId(key, (ValType) new ElleValue(lastElement, null));
+        return versionId < 0 ? null : index.getWrites()[versionId];
+    }
+}
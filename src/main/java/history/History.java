@@ -2,7 +2,11 @@ package history;
 
 import history.loader.ElleHistoryLoader;
 import javafx.util.Pair;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -15,6 +19,63 @@ public class History<KeyType, ValType> {
     private final Set<Pair<KeyType, ValType>> abortedWrites = new HashSet<>();
     private final Set<KeyType> keySet = new HashSet<>();
 
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Setter(AccessLevel.NONE)
+    private HistoryInterner<KeyType, ValType> interner;
+
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Setter(AccessLevel.NONE)
+    private HistoryIndex<KeyType, ValType> index;
+
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Setter(AccessLevel.NONE)
+    private ElleVersionOrder<KeyType, ValType> versionOrder;
+
+    /**
+     * Get the dense ids of this history's keys, versions, transactions and operations.
+     *
+     * The interner is built on first use and dropped when the history is modified.
+     */
+    public synchronized HistoryInterner<KeyType, ValType> getInterner() {
+        if (interner == null) {
+            interner = new HistoryInterner<>(this);
+        }
+        return interner;
+    }
+
+    /**
+     * Get the write, per-key writer and session order indexes shared by the checkers of this history.
+     *
+     * The index is built on first use and dropped when the history is modified.
+     */
+    public synchronized HistoryIndex<KeyType, ValType> getIndex() {
+        if (index == null) {
+            index = new HistoryIndex<>(this);
+        }
+        return index;
+    }
+
+    /**
+     * Get the version order of the keys of an Elle list-append history.
+     *
+     * The order is built on first use and dropped when the history is modified.
+     */
+    public synchronized ElleVersionOrder<KeyType, ValType> getVersionOrder() {
+        if (versionOrder == null) {
+            versionOrder = new ElleVersionOrder<>(this);
+        }
+        return versionOrder;
+    }
+
+    private void modified() {
+        interner = null;
+        index = null;
+        versionOrder = null;
+    }
+
     public Session<KeyType, ValType> getSession(long id) {
         return sessions.get(id);
     }
@@ -24,12 +85,14 @@ public class History<KeyType, ValType> {
     }
 
     public Session<KeyType, ValType> addSession(long id) {
+        modified();
         var session = new Session<KeyType, ValType>(id);
         sessions.put(id, session);
         return session;
     }
 
     public Transaction<KeyType, ValType> addTransaction(Session<KeyType, ValType> session, long id) {
+        modified();
         var txn = new Transaction<>(id, session);
         transactions.put(id, txn);
         session.getTransactions().add(txn);
@@ -37,6 +100,7 @@ public class History<KeyType, ValType> {
     }
 
     public Operation<KeyType, ValType> addOperation(Transaction<KeyType, ValType> transaction, Operation.Type type, KeyType variable, ValType value) {
+        modified();
         var operation = new Operation<>(type, variable, value, transaction, transaction.getOps().size());
         transaction.getOps().add(operation);
         keySet.add(variable);
@@ -44,6 +108,7 @@ public class History<KeyType, ValType> {
     }
 
     public void addAbortedWrite(KeyType variable, ValType value) {
+        modified();
         abortedWrites.add(new Pair<>(variable, value));
     }
 
@@ -92,6 +157,7 @@ public class History<KeyType, ValType> {
     }
 
     public void removeInitSession() {
+        modified();
         sessions.remove(-1L);
     }
 }
@@ -0,0 +1,105 @@
+package history;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Indexes of a history shared by all checkers that run on it, see {@link History#getIndex()}.
+ *
+ * All tables are plain arrays indexed by the dense ids of {@link HistoryInterner}.
+ */
+@Getter
+public class HistoryIndex<KeyType, ValType> {
+    private final HistoryInterner<KeyType, ValType> interner;
+
+    // the write of each version, by version id; null if the version is never written
+    private final Operation<KeyType, ValType>[] writes;
+
+    // the distinct transactions writing key k are keyWriters[keyWriterOffsets[k] .. keyWriterOffsets[k + 1]),
+    // as transaction dense ids
+    private final int[] keyWriterOffsets;
+    private final int[] keyWriters;
+
+    // position of each transaction in its session, by transaction dense id; -1 if it is in no session
+    private final int[] orderInSession;
+
+    // one more than the largest session id, 0 if there is no session
+    private final int sessionDim;
+
+    @SuppressWarnings("unchecked")
+    HistoryIndex(History<KeyType, ValType> history) {
+        interner = history.getInterner();
+        var txns = history.getTransactions().values();
+
+        // same iteration order as History.getOperations(), so the last write of a version wins as before
+        writes = new Operation[interner.versionCount()];
+        keyWriterOffsets = new int[interner.keyCount() + 1];
+        var stamp = new int[interner.keyCount()];
+        Arrays.fill(stamp, -1);
+        for (var txn : txns) {
+            int txnId = interner.transactionId(txn);
+            for (var op : txn.getOps()) {
+                if (op.getType() != Operation.Type.WRITE) {
+                    continue;
+                }
+                writes[interner.versionIdOf(op)] = op;
+                int keyId = interner.keyIdOf(op);
+                if (stamp[keyId] != txnId) {
+                    stamp[keyId] = txnId;
+                    keyWriterOffsets[keyId + 1]++;
+                }
+            }
+        }
+        for (int k = 0; k < interner.keyCount(); k++) {
+            keyWriterOffsets[k + 1] += keyWriterOffsets[k];
+        }
+
+        keyWriters = new int[keyWriterOffsets[interner.keyCount()]];
+        var cursor = Arrays.copyOf(keyWriterOffsets, interner.keyCount());
+        Arrays.fill(stamp, -1);
+        for (var txn : txns) {
+            int txnId = interner.transactionId(txn);
+            for (var op : txn.getOps()) {
+                if (op.getType() == Operation.Type.WRITE && stamp[interner.keyIdOf(op)] != txnId) {
+                    stamp[interner.keyIdOf(op)] = txnId;
+                    keyWriters[cursor[interner.keyIdOf(op)]++] = txnId;
+                }
+            }
+        }
+
+        orderInSession = new int[interner.transactionCount()];
+        Arrays.fill(orderInSession, -1);
+        long maxSessionId = -1;
+        for (var session : history.getSessions().values()) {
+            var sessionTxns = session.getTransactions();
+            for (int i = 0; i < sessionTxns.size(); i++) {
+                orderInSession[interner.transactionId(sessionTxns.get(i))] = i;
+            }
+            maxSessionId = Math.max(maxSessionId, session.getId());
+        }
+        sessionDim = Math.toIntExact(maxSessionId + 1);
+    }
+
+    /**
+     * @return the write of the version read or written by the operation, or null if the version is never written
+     */
+    public Operation<KeyType, ValType> writeOf(Operation<KeyType, ValType> op) {
+        return writes[interner.versionIdOf(op)];
+    }
+
+    public int writerCount(int keyId) {
+        return keyWriterOffsets[keyId + 1] - keyWriterOffsets[keyId];
+    }
+
+    /**
+     * @return the i-th distinct transaction writing the key
+     */
+    public Transaction<KeyType, ValType> writer(int keyId, int i) {
+        return interner.getTransaction(keyWriters[keyWriterOffsets[keyId] + i]);
+    }
+
+    public int orderInSession(Transaction<KeyType, ValType> txn) {
+        return orderInSession[interner.transactionId(txn)];
+    }
+}
@@ -0,0 +1,188 @@
+package history;
+
+import javafx.util.Pair;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer ids to the keys, (key, value) versions, transactions and operations of a history.
+ *
+ * The first interner of a transaction records its id on the transaction, and finds it there by checking that the
+ * transaction names it as its interner. Other interners of the same transaction, such as the one built after the
+ * history is modified, keep its id in an identity map instead, so they never overwrite the id of a live interner.
+ * The id of an operation is found from the id of its transaction. Checkers index plain arrays by
+ * {@link #transactionId}, {@link #operationId}, {@link #keyIdOf} and {@link #versionIdOf} instead of hashing keys,
+ * pairs and transactions. A read and the write it reads from share the same version id.
+ */
+@Getter
+public class HistoryInterner<KeyType, ValType> {
+    private final List<KeyType> keys = new ArrayList<>();
+    private final Map<KeyType, Integer> keyIds = new HashMap<>();
+
+    private final Map<Pair<KeyType, ValType>, Integer> versionIds = new HashMap<>();
+    private int[] versionKeys = new int[16];
+    private final List<ValType> versionValues = new ArrayList<>();
+
+    private final List<Transaction<KeyType, ValType>> transactions = new ArrayList<>();
+    private final List<Operation<KeyType, ValType>> operations = new ArrayList<>();
+
+    // what the transactions this interner numbered first know it by; a weak reference, so that they do not keep
+    // it alive
+    @Getter(AccessLevel.NONE)
+    private final WeakReference<HistoryInterner<KeyType, ValType>> self = new WeakReference<>(this);
+    // the id of each transaction that another interner numbered first, by identity
+    @Getter(AccessLevel.NONE)
+    private final Map<Transaction<KeyType, ValType>, Integer> transactionIds = new IdentityHashMap<>();
+    // the id of the first operation of each transaction, by transaction id; the operations of a transaction are
+    // interned together, so an operation's id is that of its transaction's first plus its position
+    @Getter(AccessLevel.NONE)
+    private int[] operationOffsets = new int[16];
+    // the key and version ids of each operation, by operation id
+    @Getter(AccessLevel.NONE)
+    private int[] operationKeys = new int[64];
+    @Getter(AccessLevel.NONE)
+    private int[] operationVersions = new int[64];
+
+    HistoryInterner(History<KeyType, ValType> history) {
+        var sessions = new ArrayList<>(history.getSessions().values());
+        sessions.sort(Comparator.comparingLong(Session::getId));
+        for (var session : sessions) {
+            session.getTransactions().forEach(this::internTransaction);
+        }
+        // transactions that are not listed in any session
+        for (var txn : history.getTransactions().values()) {
+            if (transactionId(txn) == -1) {
+                internTransaction(txn);
+            }
+        }
+        versionKeys = Arrays.copyOf(versionKeys, versionValues.size());
+        operationOffsets = Arrays.copyOf(operationOffsets, transactions.size());
+        operationKeys = Arrays.copyOf(operationKeys, operations.size());
+        operationVersions = Arrays.copyOf(operationVersions, operations.size());
+    }
+
+    private void internTransaction(Transaction<KeyType, ValType> txn) {
+        int id = transactions.size();
+        if (!txn.intern(self, id)) {
+            transactionIds.put(txn, id);
+        }
+        transactions.add(txn);
+        if (id == operationOffsets.length) {
+            operationOffsets = Arrays.copyOf(operationOffsets, id * 2);
+        }
+        operationOffsets[id] = operations.size();
+
+        int count = operations.size() + txn.getOps().size();
+        if (count > operationKeys.length) {
+            operationKeys = Arrays.copyOf(operationKeys, Math.max(count, operationKeys.length * 2));
+            operationVersions = Arrays.copyOf(operationVersions, operationKeys.length);
+        }
+        for (var op : txn.getOps()) {
+            assert op.getId() == operations.size() - operationOffsets[id];
+            int keyId = internKey(op.getKey());
+            operationKeys[operations.size()] = keyId;
+            operationVersions[operations.size()] = internVersion(keyId, op.getKey(), op.getValue());
+            operations.add(op);
+        }
+    }
+
+    private int internKey(KeyType key) {
+        var id = keyIds.get(key);
+        if (id == null) {
+            id = keys.size();
+            keyIds.put(key, id);
+            keys.add(key);
+        }
+        return id;
+    }
+
+    private int internVersion(int keyId, KeyType key, ValType value) {
+        var id = versionIds.get(new Pair<>(key, value));
+        if (id == null) {
+            id = versionValues.size();
+            versionIds.put(new Pair<>(key, value), id);
+            versionValues.add(value);
+            if (id == versionKeys.length) {
+                versionKeys = Arrays.copyOf(versionKeys, id * 2);
+            }
+            versionKeys[id] = keyId;
+        }
+        return id;
+    }
+
+    public int keyCount() {
+        return keys.size();
+    }
+
+    public int versionCount() {
+        return versionValues.size();
+    }
+
+    public int transactionCount() {
+        return transactions.size();
+    }
+
+    public int operationCount() {
+        return operations.size();
+    }
+
+    /**
+     * @return the id of the key, or -1 if the key does not appear in the history
+     */
+    public int keyId(KeyType key) {
+        return keyIds.getOrDefault(key, -1);
+    }
+
+    /**
+     * @return the id of the version, or -1 if no operation reads or writes it
+     */
+    public int versionId(KeyType key, ValType value) {
+        return versionIds.getOrDefault(new Pair<>(key, value), -1);
+    }
+
+    /**
+     * @return the id of the transaction, or -1 if it is not in the history
+     */
+    public int transactionId(Transaction<KeyType, ValType> txn) {
+        int id = txn.internedId(self);
+        return id != -1 ? id : transactionIds.getOrDefault(txn, -1);
+    }
+
+    /**
+     * @return the id of the operation, which must be in the history
+     */
+    public int operationId(Operation<KeyType, ValType> op) {
+        return operationOffsets[transactionId(op.getTransaction())] + op.getId();
+    }
+
+    /**
+     * @return the id of the key of the operation, which must be in the history
+     */
+    public int keyIdOf(Operation<KeyType, ValType> op) {
+        return operationKeys[operationId(op)];
+    }
+
+    /**
+     * @return the id of the version read or written by the operation, which must be in the history
+     */
+    public int versionIdOf(Operation<KeyType, ValType> op) {
+        return operationVersions[operationId(op)];
+    }
+
+    public Transaction<KeyType, ValType> getTransaction(int denseId) {
+        return transactions.get(denseId);
+    }
+
+    public Operation<KeyType, ValType> getOperation(int denseId) {
+        return operations.get(denseId);
+    }
+}
@@ -1,11 +1,16 @@
 package history;
 
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 @Data
 @ToString(onlyExplicitlyIncluded = true)
@@ -23,4 +28,42 @@ public class Transaction <KeyType, ValType> {
     private boolean success;
 
     List<Operation<KeyType, ValType>> ops = new ArrayList<>();
+
+    // the interner that numbered this transaction first, while it is alive, and the id it gave; see
+    // HistoryInterner#transactionId
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile WeakReference<?> internedBy;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int internedId;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Transaction, WeakReference> INTERNED_BY =
+            AtomicReferenceFieldUpdater.newUpdater(Transaction.class, WeakReference.class, "internedBy");
+
+    /**
+     * Record the id an interner gives this transaction, unless an interner that is still alive numbered it first.
+     *
+     * @param interner the reference to itself the interner is known by
+     * @return true if the id is recorded
+     */
+    boolean intern(WeakReference<?> interner, int id) {
+        var current = internedBy;
+        if (current != null && current.get() != null) {
+            return false;
+        }
+        if (!INTERNED_BY.compareAndSet(this, current, interner)) {
+            return false;
+        }
+        internedId = id;
+        return true;
+    }
+
+    /**
+     * @return the id recorded by the interner, or -1 if another interner numbered this transaction
+     */
+    int internedId(WeakReference<?> interner) {
+        return internedBy == interner ? internedId : -1;
+    }
 }
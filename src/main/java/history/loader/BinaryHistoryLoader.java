@@ -0,0 +1,147 @@
+package history.loader;
+
+import history.BinaryHistoryFormat;
+import history.ColumnarHistory;
+import history.History;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads histories written by {@link history.serializer.BinaryHistorySerializer}.
+ *
+ * A compact binary loader rather than a zero-copy one: each section is memory-mapped and bulk-copied into the
+ * columns of a {@link ColumnarHistory}, which {@link #loadHistory} then turns into the object history, so the whole
+ * history ends up on the heap as it does with the text loader; what it saves over the text format is the parsing.
+ * Sections larger than a single mapping are read through consecutive windows.
+ */
+public class BinaryHistoryLoader implements HistoryLoader<Long, Long> {
+    private static final long MAX_MAPPING = 1L << 30;
+
+    @Override
+    public History<Long, Long> loadHistory(String path) {
+        return loadColumnarHistory(path).toHistory();
+    }
+
+    @SneakyThrows
+    public ColumnarHistory loadColumnarHistory(String path) {
+        try (var channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            if (channel.size() < BinaryHistoryFormat.HEADER_SIZE) {
+                throw corrupt(path, String.format("the file has %d bytes, fewer than the %d of the header",
+                        channel.size(), BinaryHistoryFormat.HEADER_SIZE));
+            }
+            var header = map(channel, 0, BinaryHistoryFormat.HEADER_SIZE);
+            if (header.getLong() != BinaryHistoryFormat.MAGIC) {
+                throw new RuntimeException(String.format("\"%s\" is not a binary history", path));
+            }
+            var version = header.getInt();
+            if (version != BinaryHistoryFormat.VERSION) {
+                throw new RuntimeException(String.format("Unsupported binary history version %d in \"%s\"", version, path));
+            }
+            int sessions = header.getInt();
+            int transactions = header.getInt();
+            int operations = header.getInt();
+            int aborted = header.getInt();
+            if (sessions < 0 || transactions < 0 || operations < 0 || aborted < 0
+                    || transactions == Integer.MAX_VALUE || sessions == Integer.MAX_VALUE) {
+                throw corrupt(path, String.format("invalid counts in the header: %d sessions, %d transactions, "
+                        + "%d operations, %d aborted writes", sessions, transactions, operations, aborted));
+            }
+
+            var offsets = BinaryHistoryFormat.sectionOffsets(sessions, transactions, operations, aborted);
+            if (channel.size() < offsets[offsets.length - 1]) {
+                throw corrupt(path, String.format("the header describes %d bytes but the file has %d",
+                        offsets[offsets.length - 1], channel.size()));
+            }
+
+            int section = 0;
+            var sessionIds = readLongs(channel, offsets[section++], sessions);
+            var sessionOffsets = readInts(channel, offsets[section++], sessions + 1);
+            var txnIds = readLongs(channel, offsets[section++], transactions);
+            var txnOffsets = readInts(channel, offsets[section++], transactions + 1);
+            var successBytes = readBytes(channel, offsets[section++], transactions);
+            var keys = readLongs(channel, offsets[section++], operations);
+            var values = readLongs(channel, offsets[section++], operations);
+            var types = readBytes(channel, offsets[section++], operations);
+            var abortedKeys = readLongs(channel, offsets[section++], aborted);
+            var abortedValues = readLongs(channel, offsets[section], aborted);
+            checkOffsets(path, "session", sessionOffsets, transactions);
+            checkOffsets(path, "transaction", txnOffsets, operations);
+            for (int o = 0; o < operations; o++) {
+                if (types[o] != ColumnarHistory.READ && types[o] != ColumnarHistory.WRITE) {
+                    throw corrupt(path, String.format("operation %d has unknown type %d", o, types[o]));
+                }
+            }
+
+            var txnSuccess = new boolean[transactions];
+            for (int t = 0; t < transactions; t++) {
+                txnSuccess[t] = successBytes[t] != 0;
+            }
+
+            return new ColumnarHistory(keys, values, types, txnOffsets, txnIds, txnSuccess,
+                    sessionOffsets, sessionIds, abortedKeys, abortedValues);
+        }
+    }
+
+    /**
+     * Check that the offsets of a section index start at 0, never decrease and end at the size of the section they
+     * index.
+     */
+    private static void checkOffsets(String path, String name, int[] offsets, int end) {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != end) {
+            throw corrupt(path, String.format("the %s offsets span [%d, %d] instead of [0, %d]", name, offsets[0],
+                    offsets[offsets.length - 1], end));
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                throw corrupt(path, String.format("the offset of %s %d is smaller than that of %s %d", name, i, name,
+                        i - 1));
+            }
+        }
+    }
+
+    private static RuntimeException corrupt(String path, String reason) {
+        return new RuntimeException(String.format("Corrupt binary history \"%s\": %s", path, reason));
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long[] readLongs(FileChannel channel, long position, int count) throws IOException {
+        var result = new long[count];
+        for (int done = 0; done < count; ) {
+            int n = (int) Math.min(count - done, MAX_MAPPING / Long.BYTES);
+            map(channel, position + (long) Long.BYTES * done, (long) Long.BYTES * n).asLongBuffer().get(result, done, n);
+            done += n;
+        }
+        return result;
+    }
+
+    private static int[] readInts(FileChannel channel, long position, int count) throws IOException {
+        var result = new int[count];
+        for (int done = 0; done < count; ) {
+            int n = (int) Math.min(count - done, MAX_MAPPING / Integer.BYTES);
+            map(channel, position + (long) Integer.BYTES * done, (long) Integer.BYTES * n).asIntBuffer().get(result, done, n);
+            done += n;
+        }
+        return result;
+    }
+
+    private static byte[] readBytes(FileChannel channel, long position, int count) throws IOException {
+        var result = new byte[count];
+        for (int done = 0; done < count; ) {
+            int n = (int) Math.min(count - done, MAX_MAPPING);
+            map(channel, position + done, n).get(result, done, n);
+            done += n;
+        }
+        return result;
+    }
+}
@@ -2,19 +2,20 @@ package history.loader;
 
 import history.History;
 import history.Operation;
-import lombok.AllArgsConstructor;
 import lombok.Data;
-import lombok.EqualsAndHashCode;
 import lombok.SneakyThrows;
 import org.apache.commons.lang3.tuple.Triple;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.nio.CharBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -25,22 +26,40 @@ import static java.util.Map.entry;
 public class ElleHistoryLoader implements HistoryLoader<Integer, ElleHistoryLoader.ElleValue> {
     private Map<Integer, Integer> sessionIdMap = new HashMap<>();
     private Integer minSessionId = 0;
+    // read lists of each key
+    private Map<Integer, ListTrie> readLists = new HashMap<>();
+    // elements of the list being parsed
+    private int[] listBuffer = new int[16];
 
     @Override
-    @SneakyThrows
     public History<Integer, ElleValue> loadHistory(String path) {
-        try (var in = new BufferedReader(new FileReader(path))) {
-            return parseFile(in);
-        }
+        var builder = new HistoryBuilder<Integer, ElleValue>();
+        stream(path, builder);
+        return builder.getHistory();
     }
 
-    private History<Integer, ElleHistoryLoader.ElleValue> parseFile(BufferedReader reader) {
-        var history = new History<Integer, ElleHistoryLoader.ElleValue>();
-        reader.lines().forEachOrdered(line -> parseLine(history, CharBuffer.wrap(line)));
-        return history;
+    /**
+     * Emits one transaction per committed entry, numbering transactions from 0 in file order, the way
+     * {@link #loadHistory} reads them.
+     */
+    @SneakyThrows
+    public void stream(String path, HistoryConsumer<Integer, ElleValue> consumer) {
+        try (var in = new BufferedReader(new FileReader(path))) {
+            long txnId = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (parseLine(consumer, CharBuffer.wrap(line), txnId)) {
+                    txnId++;
+                }
+            }
+        }
+        consumer.end();
     }
 
-    private void parseLine(History<Integer, ElleHistoryLoader.ElleValue> history, CharBuffer line) {
+    /**
+     * @return true if the line is a committed transaction
+     */
+    private boolean parseLine(HistoryConsumer<Integer, ElleValue> consumer, CharBuffer line, long txnId) {
         // todo: Handle timeout
         assertEq(line.charAt(0), '{');
         advance(line, 1);
@@ -62,7 +81,7 @@ public class ElleHistoryLoader implements HistoryLoader<Integer, ElleHistoryLoad
                 case ":type":
                     type = parseType(line);
                     if (type != LogType.OK && type != LogType.FAIL) {
-                        return;
+                        return false;
                     }
                     break;
                 case ":f":
@@ -104,19 +123,14 @@ public class ElleHistoryLoader implements HistoryLoader<Integer, ElleHistoryLoad
         if (type == LogType.FAIL) {
             txnValue.stream().
                     filter(v -> v.getLeft().equals(Operation.Type.WRITE))
-                    .forEach(v -> history.addAbortedWrite(v.getMiddle(), v.getRight()));
-            return;
-        }
-
-        var session = history.getSession(txnProcess);
-        if (session == null) {
-            session = history.addSession(txnProcess);
+                    .forEach(v -> consumer.abortedWrite(v.getMiddle(), v.getRight()));
+            return false;
         }
 
-        var txnId = history.getTransactions().size();
-        var txn = history.addTransaction(session, txnId);
-
-        txnValue.forEach(v -> history.addOperation(txn, v.getLeft(), v.getMiddle(), v.getRight()));
+        consumer.beginTransaction(txnProcess, txnId);
+        txnValue.forEach(v -> consumer.operation(v.getLeft(), v.getMiddle(), v.getRight()));
+        consumer.endTransaction();
+        return true;
     }
 
     private LogType parseType(CharBuffer s) {
@@ -173,9 +187,9 @@ public class ElleHistoryLoader implements HistoryLoader<Integer, ElleHistoryLoad
             advance(s, ":r ".length());
             var key = parseInt(s);
             skipCommaAndSpace(s);
-            var list = parseList(s);
-            result = Triple.of(Operation.Type.READ, key,
-                    new ElleValue(list.isEmpty() ? null : list.get(list.size() - 1), list));
+            int length = parseList(s);
+            var branch = readLists.computeIfAbsent(key, k -> new ListTrie()).intern(listBuffer, length);
+            result = Triple.of(Operation.Type.READ, key, new ElleValue(branch, length));
         } else if (startsWith(s, ":append ")) {
             advance(s, ":append ".length());
             var key = parseInt(s);
@@ -210,26 +224,34 @@ public class ElleHistoryLoader implements HistoryLoader<Integer, ElleHistoryLoad
         return parseIntegerType(s, (cs, i) -> Long.parseLong(cs, 0, i, 10));
     }
 
-    private List<Integer> parseList(CharBuffer s) {
+    /**
+     * Parse a list into listBuffer.
+     *
+     * @return the length of the list
+     */
+    private int parseList(CharBuffer s) {
         if (startsWith(s, "nil")) {
             advance(s, "nil".length());
-            return List.of();
+            return 0;
         }
 
         assertEq(s.charAt(0), '[');
         advance(s, 1);
 
-        var list = new ArrayList<Integer>();
+        int length = 0;
         while (true) {
             skipCommaAndSpace(s);
             if (s.charAt(0) == ']') {
                 advance(s, 1);
                 break;
             }
-            list.add(parseInt(s));
+            if (length == listBuffer.length) {
+                listBuffer = Arrays.copyOf(listBuffer, length * 2);
+            }
+            listBuffer[length++] = parseInt(s);
         }
 
-        return list;
+        return length;
     }
 
     private void parseErrorList(CharBuffer s) {
@@ -280,29 +302,102 @@ public class ElleHistoryLoader implements HistoryLoader<Integer, ElleHistoryLoad
         INVOKE, OK, FAIL, INFO
     }
 
-    @Data
-    @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-    @AllArgsConstructor
+    /**
+     * An appended element, or a read list, which is a length and a branch of the prefix trie of its key.
+     *
+     * Values are equal if their last elements are.
+     */
     public static class ElleValue {
-        @EqualsAndHashCode.Include
-        Integer lastElement;
+        // the appended element or the last element of the read list, none for an empty list or the initial write
+        private final int lastElement;
+        private final boolean hasLastElement;
+
+        // null for an append
+        private final ListTrie.Branch branch;
+        private final int length;
+
+        public ElleValue(Integer lastElement, List<Integer> list) {
+            this.lastElement = lastElement == null ? 0 : lastElement;
+            this.hasLastElement = lastElement != null;
+            this.branch = list == null ? null : ListTrie.of(list);
+            this.length = list == null ? 0 : list.size();
+        }
+
+        ElleValue(ListTrie.Branch branch, int length) {
+            this.lastElement = length == 0 ? 0 : branch.get(length - 1);
+            this.hasLastElement = length > 0;
+            this.branch = branch;
+            this.length = length;
+        }
+
+        public Integer getLastElement() {
+            return hasLastElement ? lastElement : null;
+        }
+
+        /**
+         * @return the read list, or null for an append
+         */
+        public List<Integer> getList() {
+            if (branch == null) {
+                return null;
+            }
+            return new AbstractList<>() {
+                @Override
+                public Integer get(int index) {
+                    Objects.checkIndex(index, length);
+                    return branch.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return length;
+                }
+            };
+        }
+
+        /**
+         * @return true if both values are read lists and this one is a prefix of the other one
+         */
+        public boolean isPrefixOf(ElleValue other) {
+            if (branch == null || other.branch == null || length > other.length) {
+                return false;
+            }
+            // lists of a trie are equal up to a position iff the same branch holds it
+            return length == 0 || other.branch.covering(length - 1) == branch;
+        }
 
-        List<Integer> list;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ElleValue)) {
+                return false;
+            }
+            var other = (ElleValue) o;
+            return hasLastElement == other.hasLastElement && lastElement == other.lastElement;
+        }
+
+        @Override
+        public int hashCode() {
+            // the hash Lombok gave the boxed last element, which keeps the iteration order of hash maps
+            return 59 + (hasLastElement ? lastElement : 43);
+        }
 
         @Override
         public String toString() {
-            if (list == null) {
-                return String.format("ElleAppend(%d)", lastElement);
+            if (branch == null) {
+                return String.format("ElleAppend(%d)", getLastElement());
             } else {
-                return String.format("ElleList(%s)", list);
+                return String.format("ElleList(%s)", getList());
             }
         }
 
         public String toEdn() {
-            if (list == null) {
-                return String.format("%d", lastElement);
+            if (branch == null) {
+                return String.format("%d", getLastElement());
             } else {
-                return String.format("[%s]", list.stream().map(Object::toString).collect(Collectors.joining(" ")));
+                return String.format("[%s]", getList().stream().map(Object::toString).collect(Collectors.joining(" ")));
             }
         }
     }
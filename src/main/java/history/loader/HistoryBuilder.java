@@ -0,0 +1,53 @@
+package history.loader;
+
+import history.History;
+import history.Operation;
+import history.Transaction;
+import lombok.Getter;
+
+/**
+ * A {@link HistoryConsumer} that adds the events it receives to a {@link History}.
+ */
+@Getter
+public class HistoryBuilder<KeyType, ValType> implements HistoryConsumer<KeyType, ValType> {
+    private final History<KeyType, ValType> history;
+
+    // the transaction being built, or the last one built
+    private Transaction<KeyType, ValType> transaction;
+
+    public HistoryBuilder() {
+        this(new History<>());
+    }
+
+    public HistoryBuilder(History<KeyType, ValType> history) {
+        this.history = history;
+    }
+
+    @Override
+    public void beginTransaction(long sessionId, long txnId) {
+        // a transaction whose operations are not contiguous is emitted once per run
+        transaction = history.getTransaction(txnId);
+        if (transaction != null) {
+            return;
+        }
+        var session = history.getSession(sessionId);
+        if (session == null) {
+            session = history.addSession(sessionId);
+        }
+        transaction = history.addTransaction(session, txnId);
+    }
+
+    @Override
+    public void operation(Operation.Type type, KeyType key, ValType value) {
+        history.addOperation(transaction, type, key, value);
+    }
+
+    @Override
+    public void endTransaction() {
+    }
+
+    @Override
+    public void abortedWrite(KeyType key, ValType value) {
+        history.addAbortedWrite(key, value);
+    }
+}
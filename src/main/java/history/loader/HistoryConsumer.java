@@ -0,0 +1,29 @@
+package history.loader;
+
+import history.Operation;
+
+/**
+ * Receives the lines of a history file as a loader parses them, see {@link TextHistoryLoader#stream} and
+ * {@link ElleHistoryLoader#stream}. It is the loaders' internal path into a {@link HistoryBuilder}; no checker
+ * consumes the events.
+ *
+ * Events follow the file rather than the transactions. The operations between {@link #beginTransaction(long, long)}
+ * and {@link #endTransaction()} belong to that transaction, but a transaction whose operations are not contiguous in
+ * the file is begun again with the same id for each run, so consumers merge the runs by transaction id. Aborted
+ * writes are not part of any transaction and may arrive between operations.
+ */
+public interface HistoryConsumer<KeyType, ValType> {
+    void beginTransaction(long sessionId, long txnId);
+
+    void operation(Operation.Type type, KeyType key, ValType value);
+
+    void endTransaction();
+
+    void abortedWrite(KeyType key, ValType value);
+
+    /**
+     * Called once after the last event.
+     */
+    default void end() {
+    }
+}
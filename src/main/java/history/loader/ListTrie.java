@@ -0,0 +1,115 @@
+package history.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read lists of one key of an Elle list-append history, stored as a prefix trie.
+ *
+ * Reads of a key are almost always prefixes of one another, so a read list is a branch of the trie and a length. A
+ * branch holds the elements from the position where it forks off its parent on, and grows in place while later reads
+ * extend it, so the lists along a branch share one int array.
+ */
+class ListTrie {
+    private final Branch root = new Branch(null, 0);
+
+    /**
+     * @return the branch whose lists start with the first size elements
+     */
+    Branch intern(int[] elements, int size) {
+        var branch = root;
+        int i = 0;
+        while (true) {
+            while (i < size && i - branch.base < branch.size && branch.elements[i - branch.base] == elements[i]) {
+                i++;
+            }
+            if (i == size) {
+                return branch;
+            }
+            var fork = branch.fork(i, elements[i]);
+            if (fork != null) {
+                branch = fork;
+                continue;
+            }
+            if (i - branch.base == branch.size) {
+                branch.append(elements, i, size);
+                return branch;
+            }
+            fork = new Branch(branch, i);
+            fork.append(elements, i, size);
+            if (branch.forks == null) {
+                branch.forks = new ArrayList<>(1);
+            }
+            branch.forks.add(fork);
+            return fork;
+        }
+    }
+
+    /**
+     * @return a branch of a trie of its own that holds the list
+     */
+    static Branch of(List<Integer> list) {
+        var branch = new Branch(null, 0);
+        branch.elements = list.stream().mapToInt(Integer::intValue).toArray();
+        branch.size = branch.elements.length;
+        return branch;
+    }
+
+    static final class Branch {
+        private static final int[] EMPTY = new int[0];
+
+        private final Branch parent;
+        // position of the first element of the branch in its lists
+        private final int base;
+        private int[] elements = EMPTY;
+        private int size = 0;
+        // branches forking off this one, null if none
+        private List<Branch> forks;
+
+        private Branch(Branch parent, int base) {
+            this.parent = parent;
+            this.base = base;
+        }
+
+        /**
+         * @return the i-th element of the lists through the branch
+         */
+        int get(int i) {
+            var branch = covering(i);
+            return branch.elements[i - branch.base];
+        }
+
+        /**
+         * @return the branch holding the i-th element of the lists through this branch
+         */
+        Branch covering(int i) {
+            var branch = this;
+            while (i < branch.base) {
+                branch = branch.parent;
+            }
+            return branch;
+        }
+
+        private Branch fork(int position, int element) {
+            if (forks == null) {
+                return null;
+            }
+            for (var fork : forks) {
+                if (fork.base == position && fork.elements[0] == element) {
+                    return fork;
+                }
+            }
+            return null;
+        }
+
+        private void append(int[] from, int start, int end) {
+            int length = end - start;
+            if (size + length > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(size + length, elements.length * 2));
+            }
+            System.arraycopy(from, start, elements, size, length);
+            size += length;
+        }
+    }
+}
@@ -2,66 +2,347 @@ package history.loader;
 
 import history.History;
 import history.Operation;
-import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-@AllArgsConstructor
+/**
+ * Loads histories of {@code r(key,value,session,txn)} and {@code w(key,value,session,txn)} lines.
+ *
+ * The file is split into chunks at line boundaries, and the chunks are parsed concurrently by a hand-written
+ * byte parser. Parsed chunks are emitted in file order, so sessions, transactions and operations keep the
+ * order in which they appear in the file. The events go straight into a {@link HistoryBuilder}, so no copy of the
+ * history other than the chunks in flight is kept while loading.
+ */
 public class TextHistoryLoader implements HistoryLoader<Long, Long> {
-    private static final Pattern regex = Pattern.compile("([rw])\\((\\d++),(\\d++),(\\d++),(-?\\d++)\\)");
+    private static final long CHUNK_SIZE = 32L << 20;
+    private static final byte READ = 0;
+    private static final byte WRITE = 1;
+
+    // bytes per chunk, before extending it to the end of its last line
+    private final long chunkSize;
+
+    public TextHistoryLoader() {
+        this(CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize the bytes per chunk, small in tests to split files of a few lines
+     */
+    public TextHistoryLoader(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
 
     @Override
-    @SneakyThrows
     public History<Long, Long> loadHistory(String path) {
-        var in = new BufferedReader(new FileReader(path));
-        var history = new History<Long, Long>();
-        var sessionIdMap = new HashMap<Long, Long>();
-        final long[] minSessionId = {0L};
-
-        in.lines().forEachOrdered((line) -> {
-            var match = regex.matcher(line);
-            if (!match.matches()) {
-                throw new Error("Invalid format");
+        var builder = new HistoryBuilder<Long, Long>();
+        stream(path, builder);
+        return builder.getHistory();
+    }
+
+    /**
+     * Emits the lines of the file in order, the way {@link #loadHistory} reads them. Consecutive operations with the
+     * same session and transaction form one run; a transaction whose operations are not contiguous is begun once per
+     * run, see {@link HistoryConsumer}.
+     */
+    @SneakyThrows
+    public void stream(String path, HistoryConsumer<Long, Long> consumer) {
+        var emitter = new Emitter(consumer);
+
+        try (var channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            var boundaries = splitAtLines(channel);
+            int chunks = boundaries.size() - 1;
+            if (chunks == 1) {
+                emitter.emit(parse(channel, boundaries.get(0), boundaries.get(1)));
+                emitter.end();
+                return;
             }
 
-            var op = match.group(1);
-            var key = Long.parseLong(match.group(2));
-            var value = Long.parseLong(match.group(3));
-            var session = Long.parseLong(match.group(4));
-            if (sessionIdMap.containsKey(session)) {
-                session = sessionIdMap.get(session);
-            } else {
-                sessionIdMap.put(session, minSessionId[0]);
-                session = minSessionId[0];
-                minSessionId[0]++;
+            int threads = Math.min(chunks, Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                // one chunk per thread plus the one being emitted are in flight, emitted in file order, so at most
+                // threads + 1 parsed chunks are held at once
+                var pending = new ArrayDeque<Future<Chunk>>();
+                int next = 0;
+                while (next < chunks || !pending.isEmpty()) {
+                    while (next < chunks && pending.size() < threads + 1) {
+                        long start = boundaries.get(next), end = boundaries.get(next + 1);
+                        pending.add(executor.submit(() -> parse(channel, start, end)));
+                        next++;
+                    }
+                    try {
+                        emitter.emit(pending.poll().get());
+                    } catch (ExecutionException e) {
+                        throw e.getCause();
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
             }
-            var txn = Long.parseLong(match.group(5));
+        }
+        emitter.end();
+    }
 
-            // txn == -1 => aborted
-            if (txn == -1) {
-                if (op.equals("w")) {
-                    history.addAbortedWrite(key, value);
+    /**
+     * @return chunk boundaries, each one (except the first and the last) just after a '\n'
+     */
+    private List<Long> splitAtLines(FileChannel channel) throws IOException {
+        var boundaries = new ArrayList<Long>();
+        long size = channel.size();
+        boundaries.add(0L);
+        var buffer = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            long boundary = -1;
+            while (boundary < 0 && position < size) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                for (int i = 0; i < n; i++) {
+                    if (buffer.get(i) == '\n') {
+                        boundary = position + i + 1;
+                        break;
+                    }
                 }
-                return;
+                position += n;
+            }
+            if (boundary < 0 || boundary >= size) {
+                break;
             }
+            boundaries.add(boundary);
+            position = boundary + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    private static Chunk parse(FileChannel channel, long start, long end) throws IOException {
+        var chunk = new Chunk((int) Math.max(16, (end - start) / 16));
+        if (start == end) {
+            return chunk;
+        }
+        new Parser(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)).parseInto(chunk);
+        return chunk;
+    }
+
+    /**
+     * The parsed lines of one chunk, in file order.
+     */
+    private static class Chunk {
+        byte[] types;
+        long[] keys;
+        long[] values;
+        long[] sessions;
+        long[] txns;
+        int size = 0;
+
+        Chunk(int capacity) {
+            types = new byte[capacity];
+            keys = new long[capacity];
+            values = new long[capacity];
+            sessions = new long[capacity];
+            txns = new long[capacity];
+        }
 
-            if (history.getSession(session) == null) {
-                history.addSession(session);
+        void add(byte type, long key, long value, long session, long txn) {
+            if (size == keys.length) {
+                int capacity = size * 2;
+                types = Arrays.copyOf(types, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                sessions = Arrays.copyOf(sessions, capacity);
+                txns = Arrays.copyOf(txns, capacity);
             }
+            types[size] = type;
+            keys[size] = key;
+            values[size] = value;
+            sessions[size] = session;
+            txns[size] = txn;
+            size++;
+        }
+    }
+
+    /**
+     * Parses lines of the form {@code ([rw])\((\d+),(\d+),(\d+),(-?\d+)\)}, terminated by '\n', '\r' or "\r\n".
+     */
+    private static class Parser {
+        private final MappedByteBuffer buffer;
+        private final int limit;
+        private int pos = 0;
+
+        Parser(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+        }
 
-            if (history.getTransaction(txn) == null) {
-                history.addTransaction(history.getSession(session), txn);
+        void parseInto(Chunk chunk) {
+            while (pos < limit) {
+                byte type;
+                switch (next()) {
+                    case 'r':
+                        type = READ;
+                        break;
+                    case 'w':
+                        type = WRITE;
+                        break;
+                    default:
+                        throw invalid();
+                }
+                expect('(');
+                long key = number(false);
+                expect(',');
+                long value = number(false);
+                expect(',');
+                long session = number(false);
+                expect(',');
+                long txn = number(true);
+                expect(')');
+                chunk.add(type, key, value, session, txn);
+
+                if (pos < limit) {
+                    byte terminator = next();
+                    if (terminator == '\r') {
+                        if (pos < limit && buffer.get(pos) == '\n') {
+                            pos++;
+                        }
+                    } else if (terminator != '\n') {
+                        throw invalid();
+                    }
+                }
             }
+        }
 
-            history.addOperation(history.getTransaction(txn),
-                    op.equals("r") ? Operation.Type.READ : Operation.Type.WRITE, key,
-                    value);
-        });
+        private byte next() {
+            if (pos >= limit) {
+                throw invalid();
+            }
+            return buffer.get(pos++);
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw invalid();
+            }
+        }
+
+        /**
+         * Same overflow handling as {@link Long#parseLong(String)}, accumulating negatively.
+         */
+        private long number(boolean signed) {
+            boolean negative = signed && pos < limit && buffer.get(pos) == '-';
+            if (negative) {
+                pos++;
+            }
+            long bound = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            long multiplyBound = bound / 10;
+            long result = 0;
+            int start = pos;
+            while (pos < limit) {
+                int digit = buffer.get(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (result < multiplyBound || result * 10 < bound + digit) {
+                    throw new NumberFormatException("Number out of range at byte " + pos);
+                }
+                result = result * 10 - digit;
+                pos++;
+            }
+            if (pos == start) {
+                throw invalid();
+            }
+            return negative ? result : -result;
+        }
+
+        private Error invalid() {
+            return new Error("Invalid format");
+        }
+    }
+
+    /**
+     * Turns parsed chunks into consumer events, remapping session ids in order of first appearance.
+     *
+     * The last seen session is memoized since the operations of a session are usually contiguous, which keeps
+     * the sequential part of loading to a few comparisons per line.
+     */
+    private static class Emitter {
+        private final HistoryConsumer<Long, Long> consumer;
+        private final HashMap<Long, Long> sessionIdMap = new HashMap<>();
+        private long minSessionId = 0;
+
+        private boolean hasLastSession = false;
+        private long lastRawSession;
+        private long lastSession;
 
-        return history;
+        private boolean inTxn = false;
+        private long txnSession;
+        private long txn;
+
+        Emitter(HistoryConsumer<Long, Long> consumer) {
+            this.consumer = consumer;
+        }
+
+        void emit(Chunk chunk) {
+            for (int i = 0; i < chunk.size; i++) {
+                long session = remapSession(chunk.sessions[i]);
+                long txnId = chunk.txns[i];
+
+                // txn == -1 => aborted
+                if (txnId == -1) {
+                    if (chunk.types[i] == WRITE) {
+                        consumer.abortedWrite(chunk.keys[i], chunk.values[i]);
+                    }
+                    continue;
+                }
+
+                if (!inTxn || txnId != txn || session != txnSession) {
+                    if (inTxn) {
+                        consumer.endTransaction();
+                    }
+                    consumer.beginTransaction(session, txnId);
+                    txnSession = session;
+                    txn = txnId;
+                    inTxn = true;
+                }
+                consumer.operation(chunk.types[i] == READ ? Operation.Type.READ : Operation.Type.WRITE, chunk.keys[i], chunk.values[i]);
+            }
+        }
+
+        void end() {
+            if (inTxn) {
+                consumer.endTransaction();
+                inTxn = false;
+            }
+            consumer.end();
+        }
+
+        private long remapSession(long rawSession) {
+            if (hasLastSession && rawSession == lastRawSession) {
+                return lastSession;
+            }
+            var session = sessionIdMap.get(rawSession);
+            if (session == null) {
+                session = minSessionId++;
+                sessionIdMap.put(rawSession, session);
+            }
+            lastRawSession = rawSession;
+            lastSession = session;
+            hasLastSession = true;
+            return session;
+        }
     }
 }
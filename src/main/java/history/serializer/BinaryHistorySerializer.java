@@ -0,0 +1,131 @@
+package history.serializer;
+
+import history.BinaryHistoryFormat;
+import history.ColumnarHistory;
+import history.History;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A serializer that writes a history in the fixed-width binary format described in {@link BinaryHistoryFormat}.
+ */
+public class BinaryHistorySerializer implements HistorySerializer<Long, Long> {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    @Override
+    @SneakyThrows
+    public void serializeHistory(History<Long, Long> history, String path) {
+        var columnar = ColumnarHistory.fromHistory(history);
+        int sessions = columnar.sessionCount();
+        int transactions = columnar.transactionCount();
+        int operations = columnar.operationCount();
+        int aborted = columnar.getAbortedKeys().length;
+        var offsets = BinaryHistoryFormat.sectionOffsets(sessions, transactions, operations, aborted);
+
+        try (var channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new Output(channel);
+            out.putLong(BinaryHistoryFormat.MAGIC);
+            out.putInt(BinaryHistoryFormat.VERSION);
+            out.putInt(sessions);
+            out.putInt(transactions);
+            out.putInt(operations);
+            out.putInt(aborted);
+            out.putInt(0);
+
+            int section = 0;
+            out.padTo(offsets[section++]);
+            out.putLongs(columnar.getSessionIds());
+            out.padTo(offsets[section++]);
+            out.putInts(columnar.getSessionOffsets());
+            out.padTo(offsets[section++]);
+            out.putLongs(columnar.getTxnIds());
+            out.padTo(offsets[section++]);
+            out.putInts(columnar.getTxnOffsets());
+            out.padTo(offsets[section++]);
+            for (var success : columnar.getTxnSuccess()) {
+                out.putByte((byte) (success ? 1 : 0));
+            }
+            out.padTo(offsets[section++]);
+            out.putLongs(columnar.getKeys());
+            out.padTo(offsets[section++]);
+            out.putLongs(columnar.getValues());
+            out.padTo(offsets[section++]);
+            for (var type : columnar.getTypes()) {
+                out.putByte(type);
+            }
+            out.padTo(offsets[section++]);
+            out.putLongs(columnar.getAbortedKeys());
+            out.padTo(offsets[section++]);
+            out.putLongs(columnar.getAbortedValues());
+            out.padTo(offsets[section]);
+            out.flush();
+        }
+    }
+
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = 0;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(Byte.BYTES);
+            buffer.put(value);
+            position += Byte.BYTES;
+        }
+
+        void putLongs(long[] values) throws IOException {
+            for (var value : values) {
+                putLong(value);
+            }
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (var value : values) {
+                putInt(value);
+            }
+        }
+
+        void padTo(long offset) throws IOException {
+            while (position < offset) {
+                putByte((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -7,6 +7,8 @@ import lombok.SneakyThrows;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Comparator;
 
 /**
@@ -21,15 +23,23 @@ public class TextHistorySerializer implements HistorySerializer<Long, Long> {
             txns.sort(Comparator.comparingLong(Transaction::getId));
             for (var txn : txns) {
                 for (var op : txn.getOps()) {
-                    String opType = op.getType() == Operation.Type.READ ? "r" : "w";
-                    long key = op.getKey();
-                    long value = op.getValue();
-                    long session = txn.getSession().getId();
-                    long txnId = txn.getId();
-
-                    out.write(String.format("%s(%d,%d,%d,%d)%n", opType, key, value, session, txnId));
+                    writeOperation(out, op.getType() == Operation.Type.READ, op.getKey(), op.getValue(),
+                            txn.getSession().getId(), txn.getId());
                 }
             }
         }
     }
+
+    private void writeOperation(Writer out, boolean read, long key, long value, long session, long txnId) throws IOException {
+        out.write(read ? "r(" : "w(");
+        out.write(Long.toString(key));
+        out.write(',');
+        out.write(Long.toString(value));
+        out.write(',');
+        out.write(Long.toString(session));
+        out.write(',');
+        out.write(Long.toString(txnId));
+        out.write(')');
+        out.write(System.lineSeparator());
+    }
 }
@@ -301,10 +301,14 @@ public class AnomalyInterpreter {
     }
 
     public static <KeyType, ValueType> String interpretSER(History<KeyType, ValueType> history) {
+        // the conflicts come from the solver
+        var totalOrderCheck = SERVerifier.isTotalOrderCheck();
+        SERVerifier.setTotalOrderCheck(false);
         Pruning.setEnablePruning(false);
         var verifier = new SERVerifier<>(history);
         verifier.audit();
         Pruning.setEnablePruning(true);
+        SERVerifier.setTotalOrderCheck(totalOrderCheck);
 
         var conflicts = verifier.getConflicts();
         if (conflicts == null) {
@@ -324,10 +328,14 @@ public class AnomalyInterpreter {
     }
 
     public static <KeyType, ValueType> String interpretSI(History<KeyType, ValueType> history) {
+        // the conflicts come from the solver
+        var totalOrderCheck = SIVerifier.isTotalOrderCheck();
+        SIVerifier.setTotalOrderCheck(false);
         Pruning.setEnablePruning(false);
         var verifier = new SIVerifier<>(history);
         verifier.audit();
         Pruning.setEnablePruning(true);
+        SIVerifier.setTotalOrderCheck(totalOrderCheck);
 
         var conflicts = verifier.getConflicts();
         if (conflicts == null) {
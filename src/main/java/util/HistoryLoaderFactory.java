@@ -1,5 +1,6 @@
 package util;
 
+import history.loader.BinaryHistoryLoader;
 import history.loader.ElleHistoryLoader;
 import history.loader.HistoryLoader;
 import history.loader.TextHistoryLoader;
@@ -11,6 +12,8 @@ public class HistoryLoaderFactory {
                 return new TextHistoryLoader();
             case "elle":
                 return new ElleHistoryLoader();
+            case "binary":
+                return new BinaryHistoryLoader();
             default:
                 throw new RuntimeException("Unknown history type");
         }
@@ -1,6 +1,7 @@
 package util;
 
 import exceptions.NotImplementedException;
+import history.serializer.BinaryHistorySerializer;
 import history.serializer.HistorySerializer;
 import history.serializer.TextHistorySerializer;
 
@@ -11,6 +12,8 @@ public class HistorySerializerFactory {
                 return new TextHistorySerializer();
             case "elle":
                 throw new NotImplementedException();
+            case "binary":
+                return new BinaryHistorySerializer();
             default:
                 throw new RuntimeException("Unknown history type");
         }
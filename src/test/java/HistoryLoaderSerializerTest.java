@@ -1,11 +1,24 @@
+import history.ColumnarHistory;
 import history.History;
+import history.loader.BinaryHistoryLoader;
+import history.loader.HistoryBuilder;
 import history.loader.TextHistoryLoader;
+import history.serializer.BinaryHistorySerializer;
 import history.serializer.TextHistorySerializer;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HistoryLoaderSerializerTest {
     @Test
@@ -26,4 +39,116 @@ public class HistoryLoaderSerializerTest {
         File tempFile = new File(tempFilePath);
         tempFile.delete();
     }
+
+    @Test
+    public void testColumnarHistory() {
+        String currentDirectory = System.getProperty("user.dir") + "/src/test/java/resources/";
+        String tempFilePath = currentDirectory + "temp_test_columnar_history.txt";
+
+        TextHistoryLoader historyLoader = new TextHistoryLoader();
+        History<Long, Long> history = historyLoader.loadHistory(currentDirectory + "sample_history.txt");
+        ColumnarHistory columnar = ColumnarHistory.fromHistory(history);
+
+        assertEquals(history.getOperations().size(), columnar.operationCount());
+        assertEquals(history.getTransactions().size(), columnar.transactionCount());
+        assertEquals(history.getSessions().size(), columnar.sessionCount());
+
+        // the object view round-trips through the columnar store
+        assertEquals(history, ColumnarHistory.fromHistory(history).toHistory());
+        new TextHistorySerializer().serializeHistory(history, tempFilePath);
+        History<Long, Long> loadedHistory = historyLoader.loadHistory(tempFilePath);
+        assertEquals(history.getSessions(), loadedHistory.getSessions());
+        assertEquals(history.getTransactions(), loadedHistory.getTransactions());
+
+        File tempFile = new File(tempFilePath);
+        tempFile.delete();
+    }
+
+    @Test
+    public void testChunkedHistoryLoader() throws IOException {
+        String currentDirectory = System.getProperty("user.dir") + "/src/test/java/resources/";
+        String tempFilePath = currentDirectory + "temp_test_chunked_history.txt";
+
+        // chunks of a few lines end in the middle of lines and of transactions
+        String samplePath = currentDirectory + "sample_history.txt";
+        assertEquals(new TextHistoryLoader().loadHistory(samplePath), new TextHistoryLoader(100).loadHistory(samplePath));
+
+        // sessions interleave and transaction 1 is split into two runs, with CRLF and a line longer than a chunk
+        Files.writeString(Path.of(tempFilePath), String.join("\n",
+                "w(1,1,7,1)", "w(2,1,8,2)\r", "r(2,1,7,1)", "w(3,1,9,3)", "r(1,1,8,2)",
+                "w(12345678901,12345678901,7,1)", "w(3,2,9,3)", "w(4,1,7,-1)", "r(3,2,8,4)") + "\n");
+        for (var chunkSize : new long[]{1, 5, 11, 1 << 20}) {
+            History<Long, Long> history = new TextHistoryLoader(chunkSize).loadHistory(tempFilePath);
+
+            assertEquals(3, history.getSessions().size());
+            assertEquals(4, history.getTransactions().size());
+            assertEquals(3, history.getTransaction(1).getOps().size());
+            assertEquals(12345678901L, history.getTransaction(1).getOps().get(2).getKey());
+            assertEquals(2, history.getTransaction(2).getOps().size());
+            assertEquals(2, history.getTransaction(3).getOps().size());
+            assertEquals(history.getTransaction(2).getSession(), history.getTransaction(4).getSession());
+            assertEquals(1, history.getAbortedWrites().size());
+
+            // a streamed consumer gets the runs of transaction 1 as one transaction as well
+            HistoryBuilder<Long, Long> builder = new HistoryBuilder<>();
+            new TextHistoryLoader(chunkSize).stream(tempFilePath, builder);
+            assertEquals(history, builder.getHistory());
+        }
+
+        File tempFile = new File(tempFilePath);
+        tempFile.delete();
+    }
+
+    @Test
+    public void testBinaryHistoryLoaderAndSerializer() {
+        String currentDirectory = System.getProperty("user.dir") + "/src/test/java/resources/";
+        String tempFilePath = currentDirectory + "temp_test_history.bin";
+
+        History<Long, Long> history = new TextHistoryLoader().loadHistory(currentDirectory + "sample_history.txt");
+        history.addAbortedWrite(-1L, -1L);
+
+        new BinaryHistorySerializer().serializeHistory(history, tempFilePath);
+        History<Long, Long> loadedHistory = new BinaryHistoryLoader().loadHistory(tempFilePath);
+
+        assertEquals(history, loadedHistory);
+
+        File tempFile = new File(tempFilePath);
+        tempFile.delete();
+    }
+
+    @Test
+    public void testCorruptBinaryHistory() throws IOException {
+        String currentDirectory = System.getProperty("user.dir") + "/src/test/java/resources/";
+        String tempFilePath = currentDirectory + "temp_test_corrupt_history.bin";
+
+        History<Long, Long> history = new TextHistoryLoader().loadHistory(currentDirectory + "sample_history.txt");
+        new BinaryHistorySerializer().serializeHistory(history, tempFilePath);
+        try (var channel = FileChannel.open(Path.of(tempFilePath), StandardOpenOption.WRITE)) {
+            // a negative operation count
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(-1).flip(), 20);
+        }
+        var e = assertThrows(RuntimeException.class, () -> new BinaryHistoryLoader().loadHistory(tempFilePath));
+        assertTrue(e.getMessage().startsWith("Corrupt binary history"), e.getMessage());
+
+        new BinaryHistorySerializer().serializeHistory(history, tempFilePath);
+        try (var channel = FileChannel.open(Path.of(tempFilePath), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+        e = assertThrows(RuntimeException.class, () -> new BinaryHistoryLoader().loadHistory(tempFilePath));
+        assertTrue(e.getMessage().startsWith("Corrupt binary history"), e.getMessage());
+
+        File tempFile = new File(tempFilePath);
+        tempFile.delete();
+    }
+
+    @Test
+    public void testStreamHistory() {
+        String currentDirectory = System.getProperty("user.dir") + "/src/test/java/resources/";
+
+        TextHistoryLoader historyLoader = new TextHistoryLoader();
+        HistoryBuilder<Long, Long> builder = new HistoryBuilder<>();
+        historyLoader.stream(currentDirectory + "sample_history.txt", builder);
+
+        assertEquals(historyLoader.loadHistory(currentDirectory + "sample_history.txt"), builder.getHistory());
+    }
 }
@@ -0,0 +1,72 @@
+import checker.C4.C4;
+import checker.ComponentChecker;
+import checker.IsolationLevel;
+import config.Config;
+import history.History;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static history.Operation.Type.READ;
+import static history.Operation.Type.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestComponentChecker {
+	// sessions 1 and 2 only access x, sessions 3 and 4 only access y and z
+	private static History<String, Long> twoComponents(long readY) {
+		var h = new History<String, Long>();
+		var t1 = h.addTransaction(h.addSession(1), 1);
+		h.addOperation(t1, WRITE, "x", 1L);
+		var t2 = h.addTransaction(h.addSession(2), 2);
+		h.addOperation(t2, READ, "x", 1L);
+		h.addOperation(t2, READ, "x", 1L);
+		var t3 = h.addTransaction(h.addSession(3), 3);
+		h.addOperation(t3, WRITE, "y", 1L);
+		h.addOperation(t3, WRITE, "y", 2L);
+		var t4 = h.addTransaction(h.addSession(4), 4);
+		h.addOperation(t4, READ, "y", readY);
+		h.addOperation(t4, READ, "z", 0L);
+		h.addInitSession();
+		h.getTransactions().values().forEach(t -> t.setSuccess(true));
+		return h;
+	}
+
+	private static Properties config() {
+		var config = new Properties();
+		config.setProperty(Config.CHECKER_ISOLATION, IsolationLevel.CAUSAL_CONSISTENCY.name());
+		return config;
+	}
+
+	@Test
+	void splitAroundInit() {
+		var components = ComponentChecker.components(twoComponents(2));
+		assertEquals(2, components.size());
+
+		var x = components.get(0);
+		assertEquals(3, x.getTransactions().size());
+		assertEquals(1, x.getTransaction(0).getOps().size());
+		assertEquals("x", x.getTransaction(0).getOps().get(0).getKey());
+
+		var yz = components.get(1);
+		assertEquals(3, yz.getTransactions().size());
+		assertEquals(2, yz.getTransaction(0).getOps().size());
+		assertTrue(yz.getTransaction(0).isSuccess());
+	}
+
+	@Test
+	void verdictsPreserved() {
+		// t4 reads the final write of t3 and the init value of z
+		assertTrue(new C4<String, Long>(config()).verify(twoComponents(2)));
+		var valid = new ComponentChecker<String, Long>(C4.class, config());
+		assertTrue(valid.verify(twoComponents(2)));
+		assertEquals(2, valid.getComponentCount());
+
+		// t4 reads an intermediate write of t3
+		assertFalse(new C4<String, Long>(config()).verify(twoComponents(1)));
+		var invalid = new ComponentChecker<String, Long>(C4.class, config());
+		assertFalse(invalid.verify(twoComponents(1)));
+		assertEquals(2, invalid.getComponentCount());
+	}
+}
@@ -0,0 +1,38 @@
+import history.History;
+import history.Operation;
+import history.loader.ElleHistoryLoader.ElleValue;
+import history.loader.HistoryLoader;
+import lombok.AllArgsConstructor;
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a list-append history: a write appends the single element of its list, a read returns its list.
+ */
+@AllArgsConstructor
+public class TestElleLoader implements HistoryLoader<String, ElleValue> {
+	final Set<Integer> sessions;
+	final Map<Integer, List<Integer>> transactions;
+	final Map<Integer, List<Triple<Operation.Type, String, List<Integer>>>> events;
+
+	@Override
+	public History<String, ElleValue> loadHistory(String path) {
+		var history = new History<String, ElleValue>();
+		sessions.forEach(history::addSession);
+		transactions.forEach((sess, txns) -> txns.forEach(t -> history.addTransaction(history.getSession(sess), t)));
+		events.forEach((txn, ops) -> ops.forEach(op -> history.addOperation(history.getTransaction(txn), op.getLeft(),
+				op.getMiddle(), value(op.getLeft(), op.getRight()))));
+		history.addInitSessionElle();
+		return history;
+	}
+
+	private static ElleValue value(Operation.Type type, List<Integer> list) {
+		if (type == Operation.Type.WRITE) {
+			return new ElleValue(list.get(0), null);
+		}
+		return new ElleValue(list.isEmpty() ? null : list.get(list.size() - 1), list);
+	}
+}
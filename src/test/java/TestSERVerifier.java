@@ -1,3 +1,4 @@
+import checker.PolySI.graph.KnownGraph;
 import checker.PolySI.verifier.SERVerifier;
 import org.apache.commons.lang3.tuple.Triple;
 import org.junit.jupiter.api.Test;
@@ -9,6 +10,7 @@ import java.util.Set;
 import static history.Operation.Type.READ;
 import static history.Operation.Type.WRITE;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestSERVerifier {
 	@Test
@@ -321,4 +323,97 @@ public class TestSERVerifier {
 
         assertFalse(new SERVerifier<>(loader.loadHistory(null)).audit());
     }
+
+    private static boolean auditElle(TestElleLoader loader) {
+        KnownGraph.setElleHistory(true);
+        try {
+            return new SERVerifier<>(loader.loadHistory(null)).audit();
+        } finally {
+            KnownGraph.setElleHistory(false);
+        }
+    }
+
+    @Test
+    void totalOrderLinear() {
+        // the append of t1 is never read, so the version order is linear but not total
+        var loader = new TestElleLoader(
+            Set.of(0, 1, 2),
+            Map.of(
+                0, List.of(0),
+                1, List.of(1),
+                2, List.of(2)
+            ),
+            Map.of(
+                0, List.of(Triple.of(WRITE, "x", List.of(1))),
+                1, List.of(Triple.of(WRITE, "x", List.of(2))),
+                2, List.of(Triple.of(READ, "x", List.of(1)))
+            )
+        );
+
+        assertTrue(auditElle(loader));
+    }
+
+    @Test
+    void totalOrderCycle() {
+        // lost update: both appends are read, so the version order is total
+        var loader = new TestElleLoader(
+            Set.of(0, 1, 2),
+            Map.of(
+                0, List.of(0),
+                1, List.of(1),
+                2, List.of(2)
+            ),
+            Map.of(
+                0, List.of(
+                    Triple.of(READ, "x", List.of()),
+                    Triple.of(WRITE, "x", List.of(1))
+                ),
+                1, List.of(
+                    Triple.of(READ, "x", List.of()),
+                    Triple.of(WRITE, "x", List.of(2))
+                ),
+                2, List.of(Triple.of(READ, "x", List.of(1, 2)))
+            )
+        );
+
+        assertFalse(auditElle(loader));
+    }
+
+    @Test
+    void totalOrderFallThrough() {
+        // t1 -> t3 -> t2 -> t1 are RW edges, a cycle under SER whatever the order of the unread appends to z, so the
+        // guess fails and the solver rejects the history too
+        var loader = new TestElleLoader(
+            Set.of(1, 2, 3, 4),
+            Map.of(
+                1, List.of(1),
+                2, List.of(2),
+                3, List.of(3),
+                4, List.of(4)
+            ),
+            Map.of(
+                1, List.of(
+                    Triple.of(READ, "y", List.of()),
+                    Triple.of(WRITE, "x", List.of(1)),
+                    Triple.of(WRITE, "z", List.of(10))
+                ),
+                2, List.of(
+                    Triple.of(READ, "x", List.of()),
+                    Triple.of(WRITE, "w", List.of(2)),
+                    Triple.of(WRITE, "z", List.of(20))
+                ),
+                3, List.of(
+                    Triple.of(READ, "w", List.of()),
+                    Triple.of(WRITE, "y", List.of(3))
+                ),
+                4, List.of(
+                    Triple.of(READ, "x", List.of(1)),
+                    Triple.of(READ, "y", List.of(3)),
+                    Triple.of(READ, "w", List.of(2))
+                )
+            )
+        );
+
+        assertFalse(auditElle(loader));
+    }
 }
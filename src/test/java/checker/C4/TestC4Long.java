@@ -0,0 +1,101 @@
+package checker.C4;
+
+import checker.IsolationLevel;
+import config.Config;
+import history.History;
+import history.Operation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestC4Long {
+    // a history of a few sessions on a few keys, with an init transaction in session 0; reads mostly read a version
+    // written so far, sometimes one written later, the initial value or a value nobody writes
+    private static History<Long, Long> randomHistory(long seed) {
+        var random = new Random(seed);
+        var history = new History<Long, Long>();
+        int keys = 1 + random.nextInt(4);
+        int sessions = 1 + random.nextInt(8);
+        var init = history.addTransaction(history.addSession(0), 0);
+        for (long k = 1; k <= keys; k++) {
+            history.addOperation(init, Operation.Type.WRITE, k, 0L);
+        }
+        init.setSuccess(true);
+
+        var written = new HashMap<Long, List<Long>>();
+        var sessionList = new ArrayList<history.Session<Long, Long>>();
+        for (int s = 1; s <= sessions; s++) {
+            sessionList.add(history.addSession(s));
+        }
+        long nextValue = 1;
+        int transactions = 1 + random.nextInt(20);
+        for (int t = 1; t <= transactions; t++) {
+            var txn = history.addTransaction(sessionList.get(random.nextInt(sessions)), t);
+            txn.setSuccess(true);
+            int ops = 1 + random.nextInt(4);
+            for (int o = 0; o < ops; o++) {
+                long key = 1 + random.nextInt(keys);
+                if (random.nextBoolean()) {
+                    history.addOperation(txn, Operation.Type.WRITE, key, nextValue);
+                    written.computeIfAbsent(key, k -> new ArrayList<>()).add(nextValue);
+                    nextValue++;
+                } else {
+                    var values = written.getOrDefault(key, List.of());
+                    long value;
+                    int choice = random.nextInt(10);
+                    if (choice < 6 && !values.isEmpty()) {
+                        value = values.get(random.nextInt(values.size()));
+                    } else if (choice < 8) {
+                        value = 0;
+                    } else if (choice < 9) {
+                        // a version written later, or never
+                        value = nextValue + random.nextInt(3);
+                    } else {
+                        value = 1000 + random.nextInt(3);
+                    }
+                    history.addOperation(txn, Operation.Type.READ, key, value);
+                }
+            }
+        }
+        if (random.nextInt(4) == 0) {
+            history.addAbortedWrite(1L, 1000L);
+        }
+        return history;
+    }
+
+    private static Properties config(IsolationLevel level, String clock) {
+        var config = new Properties();
+        config.setProperty(Config.CHECKER_ISOLATION, level.name());
+        config.setProperty(Config.CHECKER_CLOCK, clock);
+        config.setProperty(Config.CHECKER_PARALLELISM, "1");
+        return config;
+    }
+
+    @Test
+    void sameAsGenericPath() {
+        var levels = new IsolationLevel[]{IsolationLevel.READ_COMMITTED, IsolationLevel.READ_ATOMICITY,
+                IsolationLevel.CAUSAL_CONSISTENCY};
+        for (long seed = 0; seed < 500; seed++) {
+            for (var level : levels) {
+                for (var clock : new String[]{"tree", "sparse", "vector"}) {
+                    var config = config(level, clock);
+                    // an anonymous subclass keeps C4 from handing Long histories to C4Long
+                    var generic = new C4<Long, Long>(config) {
+                    };
+                    var expected = generic.verify(randomHistory(seed));
+                    var checker = new C4Long(config);
+                    var message = String.format("seed %d, %s, %s clocks", seed, level, clock);
+                    assertEquals(expected, checker.verify(randomHistory(seed)), message);
+                    assertEquals(generic.getTapCount(), checker.getTapCount(), message);
+                    assertEquals(generic.getFoundTapCount(), checker.getFoundTapCount(), message);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package checker.PolySI.graph;
+
+import com.google.common.graph.EndpointPair;
+import com.google.common.graph.Graph;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.MutableGraph;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMatrixGraph {
+    private static MutableGraph<Integer> randomGraph(int n, double p, boolean acyclic, boolean selfLoops, long seed) {
+        var random = new Random(seed);
+        var graph = GraphBuilder.directed().allowsSelfLoops(true).<Integer>build();
+        for (int i = 0; i < n; i++) {
+            graph.addNode(i);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if ((i < j || !acyclic && i > j) && random.nextDouble() < p) {
+                    graph.putEdge(i, j);
+                }
+            }
+            if (selfLoops && random.nextDouble() < 0.1) {
+                graph.putEdge(i, i);
+            }
+        }
+        return graph;
+    }
+
+    // the pairs of nodes with a path of zero edges or more, by breadth-first search
+    private static Set<EndpointPair<Integer>> bfsReachability(Graph<Integer> graph) {
+        var result = new HashSet<EndpointPair<Integer>>();
+        for (var source : graph.nodes()) {
+            var visited = new HashSet<Integer>();
+            var queue = new ArrayDeque<Integer>();
+            visited.add(source);
+            queue.add(source);
+            while (!queue.isEmpty()) {
+                for (var next : graph.successors(queue.poll())) {
+                    if (visited.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+            visited.forEach(target -> result.add(EndpointPair.ordered(source, target)));
+        }
+        return result;
+    }
+
+    private static void assertReachability(Graph<Integer> graph) {
+        var expected = bfsReachability(graph);
+        var parallelism = MatrixGraph.getParallelism();
+        try {
+            for (var threads : new int[]{1, 4}) {
+                MatrixGraph.setParallelism(threads);
+                assertEquals(expected, new MatrixGraph<>(graph).reachability().edges());
+            }
+        } finally {
+            MatrixGraph.setParallelism(parallelism);
+        }
+    }
+
+    @Test
+    void reachabilityAcyclic() {
+        for (long seed = 0; seed < 5; seed++) {
+            assertReachability(randomGraph(200, 0.02, true, false, seed));
+        }
+    }
+
+    @Test
+    void reachabilityCyclic() {
+        for (long seed = 0; seed < 5; seed++) {
+            assertReachability(randomGraph(200, 0.005, false, false, seed));
+        }
+    }
+
+    @Test
+    void reachabilitySelfLoops() {
+        for (long seed = 0; seed < 5; seed++) {
+            assertReachability(randomGraph(200, 0.01, true, true, seed));
+            assertReachability(randomGraph(200, 0.005, false, true, seed));
+        }
+
+        // a self-loop is the only cycle, with a chain into and out of it
+        var graph = GraphBuilder.directed().allowsSelfLoops(true).<Integer>build();
+        graph.putEdge(0, 1);
+        graph.putEdge(1, 1);
+        graph.putEdge(1, 2);
+        graph.addNode(3);
+        assertReachability(graph);
+    }
+
+    // the predecessors of each node by its successors
+    private static void assertPredecessors(MatrixGraph<Integer> graph) {
+        for (var node : graph.nodes()) {
+            var expected = new HashSet<Integer>();
+            for (var other : graph.nodes()) {
+                if (graph.successors(other).contains(node)) {
+                    expected.add(other);
+                }
+            }
+            assertEquals(expected, new HashSet<>(graph.predecessors(node)));
+            assertEquals(expected.size(), graph.inDegree(node));
+
+            var visited = new HashSet<Integer>();
+            graph.forEachPredecessor(graph.nodeId(node), id -> visited.add(graph.node(id)));
+            assertEquals(expected, visited);
+        }
+    }
+
+    @Test
+    void predecessorsAfterChanges() {
+        var random = new Random(0);
+        var graph = new MatrixGraph<>(randomGraph(50, 0.05, false, true, 0));
+        // build the predecessor index first, and keep a view of it
+        var view = graph.predecessors(0);
+        assertPredecessors(graph);
+
+        for (int round = 0; round < 200; round++) {
+            int i = random.nextInt(50), j = random.nextInt(50);
+            switch (random.nextInt(3)) {
+            case 0:
+                graph.putEdge(i, j);
+                break;
+            case 1:
+                graph.removeEdge(i, j);
+                break;
+            default:
+                var targets = new RoaringBitmap();
+                for (int k = 0; k < 5; k++) {
+                    targets.add(random.nextInt(50));
+                }
+                graph.addEdges(i, targets);
+                break;
+            }
+            assertPredecessors(graph);
+        }
+
+        var expected = new HashSet<Integer>();
+        for (var node : graph.nodes()) {
+            if (graph.hasEdgeConnecting(node, 0)) {
+                expected.add(node);
+            }
+        }
+        assertEquals(expected, new HashSet<>(view));
+    }
+
+    @Test
+    void successorsView() {
+        var graph = new MatrixGraph<>(randomGraph(10, 0, true, false, 0));
+        var view = graph.successors(3);
+        assertTrue(view.isEmpty());
+        graph.putEdge(3, 5);
+        graph.putEdge(3, 7);
+        assertEquals(Set.of(5, 7), new HashSet<>(view));
+        assertTrue(view.contains(5));
+        graph.removeEdge(3, 5);
+        assertEquals(Set.of(7), new HashSet<>(view));
+        assertFalse(view.contains(5));
+    }
+}
@@ -0,0 +1,66 @@
+package checker.PolySI.verifier;
+
+import checker.PolySI.graph.EdgeType;
+import checker.PolySI.graph.MatrixGraph;
+import com.google.common.graph.GraphBuilder;
+import history.History;
+import history.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPruning {
+    @Test
+    void incrementalReachability() {
+        // sessions 1: t1 t2, 2: t3 t4, 3: t5 t6
+        var history = new History<String, Long>();
+        for (long s = 1; s <= 3; s++) {
+            var session = history.addSession(s);
+            history.addTransaction(session, 2 * s - 1);
+            history.addTransaction(session, 2 * s);
+        }
+        var t = new Transaction[7];
+        history.getTransactions().forEach((id, txn) -> t[(int) (long) id] = txn);
+
+        var a = GraphBuilder.directed().<Transaction<String, Long>>build();
+        var b = GraphBuilder.directed().<Transaction<String, Long>>build();
+        history.getTransactions().values().forEach(txn -> {
+            a.addNode(txn);
+            b.addNode(txn);
+        });
+        a.putEdge(t[1], t[2]);
+        a.putEdge(t[3], t[4]);
+        a.putEdge(t[5], t[6]);
+        a.putEdge(t[1], t[3]);
+        b.putEdge(t[4], t[5]);
+
+        var graphA = new MatrixGraph<>(a);
+        var graphB = new MatrixGraph<>(b, graphA.getNodeMap());
+        var reachability = Pruning.buildReachability(graphA, graphB, history);
+        assertNotNull(reachability);
+        assertEquals(graphA.union(graphA.composition(graphB)).reachability(), reachability.getClosure());
+
+        // the last RW edge adds t4 -> t3 to A;B, closing a cycle with t3 -> t4
+        var edges = List.of(
+                new SIEdge<String, Long>(t[2], t[5], EdgeType.WW, "x"),
+                new SIEdge<String, Long>(t[2], t[4], EdgeType.RW, "y"),
+                new SIEdge<String, Long>(t[4], t[6], EdgeType.WW, "z"),
+                new SIEdge<String, Long>(t[6], t[3], EdgeType.RW, "z"));
+        for (int i = 0; i < edges.size(); i++) {
+            var edge = edges.get(i);
+            (edge.getType() == EdgeType.WW ? graphA : graphB).putEdge(edge.getFrom(), edge.getTo());
+            var hasCycle = Pruning.updateReachability(reachability, graphA, graphB, List.of(edge));
+            if (i < edges.size() - 1) {
+                assertFalse(hasCycle);
+            } else {
+                assertTrue(hasCycle);
+            }
+            assertEquals(graphA.union(graphA.composition(graphB)).reachability(), reachability.getClosure());
+        }
+    }
+}